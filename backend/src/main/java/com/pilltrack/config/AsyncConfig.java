@@ -101,6 +101,25 @@ public class AsyncConfig implements AsyncConfigurer {
         return executor;
     }
 
+    /**
+     * Single worker draining the payment callback queue, so callbacks are applied one at a time.
+     * Callbacks rejected when the queue is full stay stored and are picked up by the sweep.
+     */
+    @Bean(name = "paymentCallbackExecutor")
+    public ThreadPoolTaskExecutor paymentCallbackExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("PillTrack-PaymentCallback-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        
+        log.info("Payment Callback Executor initialized");
+        return executor;
+    }
+
     @Override
     public Executor getAsyncExecutor() {
         return taskExecutor();
@@ -1,8 +1,13 @@
 package com.pilltrack.config;
 
+import com.pilltrack.job.AdherenceRollupBackfillJob;
+import com.pilltrack.job.DoseLogPlanningJob;
 import com.pilltrack.job.LowStockAlertJob;
 import com.pilltrack.job.MedicationReminderJob;
 import com.pilltrack.job.MissedDoseJob;
+import com.pilltrack.job.OrderArchivalJob;
+import com.pilltrack.job.PaymentReconciliationJob;
+import com.pilltrack.job.ShopExpiryAlertJob;
 import org.quartz.*;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,7 +15,7 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class QuartzConfig {
     
-    // Medication Reminder Job - Runs every 5 minutes
+    // Medication Reminder Job - Runs every minute, one trigger per shard (ShardedJobTriggers)
     @Bean
     public JobDetail medicationReminderJobDetail() {
         return JobBuilder.newJob(MedicationReminderJob.class)
@@ -20,53 +25,123 @@ public class QuartzConfig {
                 .build();
     }
     
+    // Low Stock Alert Job - Runs daily at 9 AM, one trigger per shard (ShardedJobTriggers)
     @Bean
-    public Trigger medicationReminderTrigger(JobDetail medicationReminderJobDetail) {
+    public JobDetail lowStockAlertJobDetail() {
+        return JobBuilder.newJob(LowStockAlertJob.class)
+                .withIdentity("lowStockAlertJob")
+                .withDescription("Sends low stock alerts to users")
+                .storeDurably()
+                .build();
+    }
+    
+    // Missed Dose Job - Runs every hour, one trigger per shard (ShardedJobTriggers)
+    @Bean
+    public JobDetail missedDoseJobDetail() {
+        return JobBuilder.newJob(MissedDoseJob.class)
+                .withIdentity("missedDoseJob")
+                .withDescription("Marks missed doses")
+                .storeDurably()
+                .build();
+    }
+    
+    // Shop Expiry Alert Job - Runs daily at 8 AM
+    @Bean
+    public JobDetail shopExpiryAlertJobDetail() {
+        return JobBuilder.newJob(ShopExpiryAlertJob.class)
+                .withIdentity("shopExpiryAlertJob")
+                .withDescription("Alerts shop owners about batches nearing expiry")
+                .storeDurably()
+                .build();
+    }
+    
+    @Bean
+    public Trigger shopExpiryAlertTrigger(JobDetail shopExpiryAlertJobDetail) {
         return TriggerBuilder.newTrigger()
-                .forJob(medicationReminderJobDetail)
-                .withIdentity("medicationReminderTrigger")
-                .withDescription("Trigger for medication reminder job")
-                .withSchedule(CronScheduleBuilder.cronSchedule("0 */5 * * * ?")) // Every 5 minutes
+                .forJob(shopExpiryAlertJobDetail)
+                .withIdentity("shopExpiryAlertTrigger")
+                .withDescription("Trigger for shop expiry alert job")
+                .withSchedule(CronScheduleBuilder.cronSchedule("0 0 8 * * ?")) // Daily at 8 AM
                 .build();
     }
     
-    // Low Stock Alert Job - Runs daily at 9 AM
+    // Payment Reconciliation Job - Runs every 15 minutes
     @Bean
-    public JobDetail lowStockAlertJobDetail() {
-        return JobBuilder.newJob(LowStockAlertJob.class)
-                .withIdentity("lowStockAlertJob")
-                .withDescription("Sends low stock alerts to users")
+    public JobDetail paymentReconciliationJobDetail() {
+        return JobBuilder.newJob(PaymentReconciliationJob.class)
+                .withIdentity("paymentReconciliationJob")
+                .withDescription("Settles stale PENDING payments against the payment gateway")
                 .storeDurably()
                 .build();
     }
     
     @Bean
-    public Trigger lowStockAlertTrigger(JobDetail lowStockAlertJobDetail) {
+    public Trigger paymentReconciliationTrigger(JobDetail paymentReconciliationJobDetail) {
         return TriggerBuilder.newTrigger()
-                .forJob(lowStockAlertJobDetail)
-                .withIdentity("lowStockAlertTrigger")
-                .withDescription("Trigger for low stock alert job")
-                .withSchedule(CronScheduleBuilder.cronSchedule("0 0 9 * * ?")) // Daily at 9 AM
+                .forJob(paymentReconciliationJobDetail)
+                .withIdentity("paymentReconciliationTrigger")
+                .withDescription("Trigger for payment reconciliation job")
+                .withSchedule(CronScheduleBuilder.cronSchedule("0 */15 * * * ?")) // Every 15 minutes
                 .build();
     }
     
-    // Missed Dose Job - Runs every hour
+    // Order Archival Job - Runs daily at 3:30 AM
     @Bean
-    public JobDetail missedDoseJobDetail() {
-        return JobBuilder.newJob(MissedDoseJob.class)
-                .withIdentity("missedDoseJob")
-                .withDescription("Marks missed doses")
+    public JobDetail orderArchivalJobDetail() {
+        return JobBuilder.newJob(OrderArchivalJob.class)
+                .withIdentity("orderArchivalJob")
+                .withDescription("Moves closed orders past the retention period into archived_orders")
+                .storeDurably()
+                .build();
+    }
+    
+    @Bean
+    public Trigger orderArchivalTrigger(JobDetail orderArchivalJobDetail) {
+        return TriggerBuilder.newTrigger()
+                .forJob(orderArchivalJobDetail)
+                .withIdentity("orderArchivalTrigger")
+                .withDescription("Trigger for order archival job")
+                .withSchedule(CronScheduleBuilder.cronSchedule("0 30 3 * * ?")) // Daily at 3:30 AM
+                .build();
+    }
+    
+    // Dose Log Planning Job - Runs hourly at minute 10
+    @Bean
+    public JobDetail doseLogPlanningJobDetail() {
+        return JobBuilder.newJob(DoseLogPlanningJob.class)
+                .withIdentity("doseLogPlanningJob")
+                .withDescription("Materializes pending dose logs for the planning horizon")
+                .storeDurably()
+                .build();
+    }
+    
+    @Bean
+    public Trigger doseLogPlanningTrigger(JobDetail doseLogPlanningJobDetail) {
+        return TriggerBuilder.newTrigger()
+                .forJob(doseLogPlanningJobDetail)
+                .withIdentity("doseLogPlanningTrigger")
+                .withDescription("Trigger for dose log planning job")
+                .withSchedule(CronScheduleBuilder.cronSchedule("0 10 * * * ?")) // Hourly at minute 10
+                .build();
+    }
+    
+    // Adherence Rollup Backfill Job - Runs weekly on Sunday at 4:15 AM (also from the admin API)
+    @Bean
+    public JobDetail adherenceRollupBackfillJobDetail() {
+        return JobBuilder.newJob(AdherenceRollupBackfillJob.class)
+                .withIdentity("adherenceRollupBackfillJob")
+                .withDescription("Rebuilds the adherence rollups from dose logs")
                 .storeDurably()
                 .build();
     }
     
     @Bean
-    public Trigger missedDoseTrigger(JobDetail missedDoseJobDetail) {
+    public Trigger adherenceRollupBackfillTrigger(JobDetail adherenceRollupBackfillJobDetail) {
         return TriggerBuilder.newTrigger()
-                .forJob(missedDoseJobDetail)
-                .withIdentity("missedDoseTrigger")
-                .withDescription("Trigger for missed dose job")
-                .withSchedule(CronScheduleBuilder.cronSchedule("0 0 * * * ?")) // Every hour
+                .forJob(adherenceRollupBackfillJobDetail)
+                .withIdentity("adherenceRollupBackfillTrigger")
+                .withDescription("Trigger for adherence rollup backfill job")
+                .withSchedule(CronScheduleBuilder.cronSchedule("0 15 4 ? * SUN")) // Sundays at 4:15 AM
                 .build();
     }
 }
@@ -3,6 +3,7 @@ package com.pilltrack.config;
 import com.pilltrack.security.CustomAccessDeniedHandler;
 import com.pilltrack.security.JwtAuthenticationEntryPoint;
 import com.pilltrack.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -65,6 +66,9 @@ public class SecurityConfig {
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 .authorizeHttpRequests(auth -> auth
+                        // Async results (e.g. payment initiation) were authorized on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        
                         // Public endpoints
                         .requestMatchers(PUBLIC_URLS).permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/v1/medicines/**").permitAll()
@@ -87,8 +91,14 @@ public class SecurityConfig {
                         // Shop owner endpoints
                         .requestMatchers("/api/v1/shop/**").hasAnyRole("SHOP_OWNER", "ADMIN")
                         
-                        // Payment callback endpoints (allow from payment gateway)
+                        // Payment callback endpoints (allow from payment gateway); success is validated by
+                        // val_id, fail and cancel against the transaction query API before they apply
                         .requestMatchers("/api/v1/payments/callback/**").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/v1/payments/success", "/api/v1/payments/fail",
+                                "/api/v1/payments/cancel", "/api/v1/payments/ipn").permitAll()
+                        
+                        // Local payment gateway stub (only mapped with the gateway-stub profile)
+                        .requestMatchers("/stub/sslcommerz/**").permitAll()
                         
                         // All other endpoints require authentication
                         .anyRequest().authenticated()
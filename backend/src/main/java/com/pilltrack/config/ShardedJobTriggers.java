@@ -0,0 +1,96 @@
+package com.pilltrack.config;
+
+import com.pilltrack.service.ShardLeaseManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.CronTrigger;
+import org.quartz.ObjectAlreadyExistsException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Triggers of the user-sharded jobs: one per shard, named "<trigger>-<shard>" in group "sharded",
+ * with the shard in the job data. The job details are declared in QuartzConfig.
+ * The clustered job store's schema is created once (db/quartz/tables_postgres.sql) and never
+ * re-initialized at startup, so triggers survive restarts and on startup this only adds missing
+ * shards, applies changed schedules, and removes shards beyond app.sharding.shards as well as the
+ * single triggers these jobs had before they were sharded.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShardedJobTriggers {
+    
+    private static final String GROUP = "sharded";
+    
+    private record ShardedJob(String jobName, String triggerName, String cron) {
+    }
+    
+    private static final List<ShardedJob> JOBS = List.of(
+            new ShardedJob("medicationReminderJob", "medicationReminderTrigger", "0 * * * * ?"), // Every minute
+            new ShardedJob("lowStockAlertJob", "lowStockAlertTrigger", "0 0 9 * * ?"), // Daily at 9 AM
+            new ShardedJob("missedDoseJob", "missedDoseTrigger", "0 0 * * * ?") // Every hour
+    );
+    
+    private final ObjectProvider<Scheduler> schedulerProvider;
+    private final ShardLeaseManager shardLeases;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleShards() {
+        Scheduler scheduler = schedulerProvider.getIfAvailable();
+        if (scheduler == null) {
+            // Quartz is disabled (local profile)
+            return;
+        }
+        int shards = shardLeases.shardCount();
+        try {
+            for (ShardedJob job : JOBS) {
+                scheduler.unscheduleJob(TriggerKey.triggerKey(job.triggerName()));
+                for (int shard = 0; shard < shards; shard++) {
+                    schedule(scheduler, job, shard);
+                }
+            }
+            for (TriggerKey key : scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(GROUP))) {
+                int shard = Integer.parseInt(key.getName().substring(key.getName().lastIndexOf('-') + 1));
+                if (shard >= shards) {
+                    scheduler.unscheduleJob(key);
+                }
+            }
+            log.info("Scheduled {} sharded jobs over {} shards", JOBS.size(), shards);
+        } catch (SchedulerException e) {
+            log.error("Failed to schedule sharded job triggers", e);
+        }
+    }
+    
+    private void schedule(Scheduler scheduler, ShardedJob job, int shard) throws SchedulerException {
+        TriggerKey key = TriggerKey.triggerKey(job.triggerName() + "-" + shard, GROUP);
+        Trigger trigger = TriggerBuilder.newTrigger()
+                .forJob(job.jobName())
+                .withIdentity(key)
+                .withDescription("Trigger for shard " + shard + " of " + job.jobName())
+                .usingJobData(ShardLeaseManager.SHARD_KEY, String.valueOf(shard))
+                .withSchedule(CronScheduleBuilder.cronSchedule(job.cron()))
+                .build();
+        Trigger existing = scheduler.getTrigger(key);
+        if (existing == null) {
+            try {
+                scheduler.scheduleJob(trigger);
+            } catch (ObjectAlreadyExistsException e) {
+                // Another node starting at the same time added it
+            }
+        } else if (!(existing instanceof CronTrigger cronTrigger && cronTrigger.getCronExpression().equals(job.cron()))) {
+            scheduler.rescheduleJob(key, trigger);
+        }
+    }
+}
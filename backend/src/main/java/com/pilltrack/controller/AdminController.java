@@ -7,8 +7,19 @@ import com.pilltrack.dto.response.MedicineShopResponse;
 import com.pilltrack.dto.response.OrderResponse;
 import com.pilltrack.model.enums.OrderStatus;
 import com.pilltrack.model.enums.ShopStatus;
+import com.pilltrack.service.AdherenceRollupService;
+import com.pilltrack.service.CartService;
+import com.pilltrack.service.ChunkedJobRunner;
+import com.pilltrack.service.DoseLogPlanner;
 import com.pilltrack.service.MedicineShopService;
+import com.pilltrack.service.OrderArchiveService;
 import com.pilltrack.service.OrderService;
+import com.pilltrack.service.PaymentCallbackProcessor;
+import com.pilltrack.service.PaymentReconciliationService;
+import com.pilltrack.service.PaymentService;
+import com.pilltrack.service.PriceCatalog;
+import com.pilltrack.service.ReminderWheel;
+import com.pilltrack.service.ShardLeaseManager;
 import com.pilltrack.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -36,6 +47,17 @@ public class AdminController {
     private final UserService userService;
     private final MedicineShopService shopService;
     private final OrderService orderService;
+    private final CartService cartService;
+    private final PaymentService paymentService;
+    private final PaymentCallbackProcessor paymentCallbackProcessor;
+    private final PaymentReconciliationService paymentReconciliationService;
+    private final PriceCatalog priceCatalog;
+    private final OrderArchiveService orderArchiveService;
+    private final ReminderWheel reminderWheel;
+    private final DoseLogPlanner doseLogPlanner;
+    private final ShardLeaseManager shardLeaseManager;
+    private final ChunkedJobRunner chunkedJobRunner;
+    private final AdherenceRollupService adherenceRollupService;
     
     @GetMapping("/dashboard/stats")
     @Operation(summary = "Get admin dashboard statistics")
@@ -48,6 +70,16 @@ public class AdminController {
         stats.put("totalOrders", orderService.getTotalOrderCount());
         stats.put("pendingOrders", orderService.getOrderCountByStatus(OrderStatus.PENDING));
         stats.put("totalRevenue", orderService.getTotalRevenue());
+        stats.put("cartWriteBehind", cartService.getWriteBehindStats());
+        stats.put("priceCatalog", priceCatalog.getStats());
+        stats.put("paymentGateway", paymentService.getGatewayStats());
+        stats.put("paymentCallbacks", paymentCallbackProcessor.getStats());
+        stats.put("paymentReconciliation", paymentReconciliationService.getStats());
+        stats.put("orderArchive", orderArchiveService.getStats());
+        stats.put("reminderWheel", reminderWheel.getStats());
+        stats.put("doseLogPlan", doseLogPlanner.getStats());
+        stats.put("shardLeases", shardLeaseManager.getStats());
+        stats.put("chunkedJobs", chunkedJobRunner.getStats());
         
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
@@ -127,4 +159,25 @@ public class AdminController {
         PageResponse<OrderResponse> response = orderService.getOrdersByStatus(status, pageable);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+    
+    @PostMapping("/payments/reconcile")
+    @Operation(summary = "Run a payment reconciliation pass now")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> reconcilePayments() {
+        paymentReconciliationService.reconcile();
+        return ResponseEntity.ok(ApiResponse.success(paymentReconciliationService.getStats(), "Reconciliation completed"));
+    }
+    
+    @PostMapping("/orders/archive")
+    @Operation(summary = "Run an order archival pass now")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> archiveOrders() {
+        orderArchiveService.archive();
+        return ResponseEntity.ok(ApiResponse.success(orderArchiveService.getStats(), "Archival completed"));
+    }
+    
+    @PostMapping("/adherence-rollups/rebuild")
+    @Operation(summary = "Rebuild the adherence rollups from dose logs now")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebuildAdherenceRollups() {
+        int rows = adherenceRollupService.rebuild();
+        return ResponseEntity.ok(ApiResponse.success(Map.of("rollupRows", rows), "Adherence rollups rebuilt"));
+    }
 }
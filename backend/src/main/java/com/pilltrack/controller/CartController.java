@@ -2,6 +2,7 @@ package com.pilltrack.controller;
 
 import com.pilltrack.dto.request.CartItemRequest;
 import com.pilltrack.dto.response.ApiResponse;
+import com.pilltrack.dto.response.CartDeltaResponse;
 import com.pilltrack.dto.response.CartResponse;
 import com.pilltrack.service.CartService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -35,6 +36,13 @@ public class CartController {
         return ResponseEntity.ok(ApiResponse.success(response, "Item added to cart"));
     }
     
+    @PostMapping(value = "/items", params = "compact=true")
+    @Operation(summary = "Add item to cart, returning only the changed line and new totals")
+    public ResponseEntity<ApiResponse<CartDeltaResponse>> addToCartCompact(@Valid @RequestBody CartItemRequest request) {
+        CartDeltaResponse response = cartService.addToCartCompact(request);
+        return ResponseEntity.ok(ApiResponse.success(response, "Item added to cart"));
+    }
+    
     @PutMapping("/items/{itemId}")
     @Operation(summary = "Update cart item quantity")
     public ResponseEntity<ApiResponse<CartResponse>> updateCartItem(
@@ -44,6 +52,15 @@ public class CartController {
         return ResponseEntity.ok(ApiResponse.success(response, "Cart item updated"));
     }
     
+    @PutMapping(value = "/items/{itemId}", params = "compact=true")
+    @Operation(summary = "Update cart item quantity, returning only the changed line and new totals")
+    public ResponseEntity<ApiResponse<CartDeltaResponse>> updateCartItemCompact(
+            @PathVariable Long itemId,
+            @RequestParam int quantity) {
+        CartDeltaResponse response = cartService.updateCartItemBuffered(itemId, quantity);
+        return ResponseEntity.ok(ApiResponse.success(response, "Cart item updated"));
+    }
+    
     @DeleteMapping("/items/{itemId}")
     @Operation(summary = "Remove item from cart")
     public ResponseEntity<ApiResponse<CartResponse>> removeFromCart(@PathVariable Long itemId) {
@@ -51,6 +68,13 @@ public class CartController {
         return ResponseEntity.ok(ApiResponse.success(response, "Item removed from cart"));
     }
     
+    @DeleteMapping(value = "/items/{itemId}", params = "compact=true")
+    @Operation(summary = "Remove item from cart, returning only the new totals")
+    public ResponseEntity<ApiResponse<CartDeltaResponse>> removeFromCartCompact(@PathVariable Long itemId) {
+        CartDeltaResponse response = cartService.removeFromCartCompact(itemId);
+        return ResponseEntity.ok(ApiResponse.success(response, "Item removed from cart"));
+    }
+    
     @DeleteMapping("/clear")
     @Operation(summary = "Clear cart")
     public ResponseEntity<ApiResponse<Void>> clearCart() {
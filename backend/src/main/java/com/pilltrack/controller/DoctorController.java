@@ -234,6 +234,21 @@ public class DoctorController {
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
+    @GetMapping("/me/patients/adherence")
+    @PreAuthorize("hasRole('DOCTOR')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Get adherence of all my patients, worst first by default",
+            description = "sort: adherence (default), missedStreak, lastDose or name. Defaults to the last 30 days.")
+    public ResponseEntity<ApiResponse<List<PatientAdherenceResponse>>> getPatientsAdherence(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "adherence") String sort) {
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        LocalDate start = startDate != null ? startDate : end.minusDays(29);
+        List<PatientAdherenceResponse> adherence = doctorPatientService.getPatientsAdherence(start, end, sort);
+        return ResponseEntity.ok(ApiResponse.success(adherence));
+    }
+    
     @GetMapping("/me/patients/{patientId}/adherence")
     @PreAuthorize("hasRole('DOCTOR')")
     @SecurityRequirement(name = "bearerAuth")
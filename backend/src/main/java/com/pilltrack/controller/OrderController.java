@@ -1,11 +1,16 @@
 package com.pilltrack.controller;
 
+import com.pilltrack.dto.request.BulkOrderStatusRequest;
+import com.pilltrack.dto.request.CheckoutRequest;
 import com.pilltrack.dto.request.OrderRequest;
 import com.pilltrack.dto.request.OrderStatusUpdateRequest;
 import com.pilltrack.dto.response.ApiResponse;
+import com.pilltrack.dto.response.BulkOrderStatusResponse;
+import com.pilltrack.dto.response.CheckoutResponse;
 import com.pilltrack.dto.response.OrderResponse;
 import com.pilltrack.dto.response.PageResponse;
 import com.pilltrack.model.enums.OrderStatus;
+import com.pilltrack.service.OrderExportService;
 import com.pilltrack.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -16,13 +21,17 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/v1/orders")
@@ -32,6 +41,7 @@ import java.util.List;
 public class OrderController {
     
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
     
     @GetMapping
     @Operation(summary = "Get current user's orders")
@@ -57,8 +67,10 @@ public class OrderController {
     
     @GetMapping("/status/{status}")
     @Operation(summary = "Get orders by status")
-    public ResponseEntity<ApiResponse<List<OrderResponse>>> getOrdersByStatus(@PathVariable OrderStatus status) {
-        List<OrderResponse> response = orderService.getCurrentUserOrdersByStatus(status);
+    public ResponseEntity<ApiResponse<PageResponse<OrderResponse>>> getOrdersByStatus(
+            @PathVariable OrderStatus status,
+            @PageableDefault(size = 10) Pageable pageable) {
+        PageResponse<OrderResponse> response = orderService.getCurrentUserOrdersByStatus(status, pageable);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
     
@@ -80,6 +92,15 @@ public class OrderController {
                 .body(ApiResponse.created(response, "Order placed successfully"));
     }
     
+    @PostMapping("/checkout")
+    @Operation(summary = "Check out the cart into one order per shop with a single payment")
+    public ResponseEntity<ApiResponse<CheckoutResponse>> checkout(@Valid @RequestBody CheckoutRequest request) {
+        CheckoutResponse response = orderService.checkoutCart(request);
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(ApiResponse.created(response, "Checkout completed successfully"));
+    }
+    
     @PostMapping("/{id}/cancel")
     @Operation(summary = "Cancel an order")
     public ResponseEntity<ApiResponse<OrderResponse>> cancelOrder(@PathVariable Long id) {
@@ -87,6 +108,14 @@ public class OrderController {
         return ResponseEntity.ok(ApiResponse.success(response, "Order cancelled successfully"));
     }
     
+    @GetMapping("/archived")
+    @Operation(summary = "Get current user's archived orders")
+    public ResponseEntity<ApiResponse<PageResponse<OrderResponse>>> getMyArchivedOrders(
+            @PageableDefault(size = 10) Pageable pageable) {
+        PageResponse<OrderResponse> response = orderService.getCurrentUserArchivedOrders(pageable);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+    
     // Shop Owner Endpoints
     @GetMapping("/shop")
     @PreAuthorize("hasRole('SHOP_OWNER')")
@@ -100,11 +129,24 @@ public class OrderController {
     @GetMapping("/shop/status/{status}")
     @PreAuthorize("hasRole('SHOP_OWNER')")
     @Operation(summary = "Get shop orders by status")
-    public ResponseEntity<ApiResponse<List<OrderResponse>>> getShopOrdersByStatus(@PathVariable OrderStatus status) {
-        List<OrderResponse> response = orderService.getShopOrdersByStatus(status);
+    public ResponseEntity<ApiResponse<PageResponse<OrderResponse>>> getShopOrdersByStatus(
+            @PathVariable OrderStatus status,
+            @PageableDefault(size = 10) Pageable pageable) {
+        PageResponse<OrderResponse> response = orderService.getShopOrdersByStatus(status, pageable);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
     
+    @GetMapping("/shop/export")
+    @PreAuthorize("hasRole('SHOP_OWNER')")
+    @Operation(summary = "Stream the shop's orders or sales in a date range as CSV")
+    public ResponseEntity<StreamingResponseBody> exportShopOrders(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "ORDERS") OrderExportService.ExportType type,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export(type, startDate, endDate, orderExportService.getCurrentShopId(), gzip);
+    }
+    
     @PatchMapping("/{id}/status")
     @PreAuthorize("hasRole('SHOP_OWNER') or hasRole('ADMIN')")
     @Operation(summary = "Update order status")
@@ -115,6 +157,16 @@ public class OrderController {
         return ResponseEntity.ok(ApiResponse.success(response, "Order status updated successfully"));
     }
     
+    @PatchMapping("/status")
+    @PreAuthorize("hasRole('SHOP_OWNER') or hasRole('ADMIN')")
+    @Operation(summary = "Update the status of many orders at once")
+    public ResponseEntity<ApiResponse<BulkOrderStatusResponse>> updateOrderStatuses(
+            @Valid @RequestBody BulkOrderStatusRequest request) {
+        BulkOrderStatusResponse response = orderService.updateOrderStatuses(request);
+        return ResponseEntity.ok(ApiResponse.success(response,
+                response.getUpdatedIds().size() + " orders updated"));
+    }
+    
     // Admin Endpoints
     @GetMapping("/admin/all")
     @PreAuthorize("hasRole('ADMIN')")
@@ -125,6 +177,18 @@ public class OrderController {
         return ResponseEntity.ok(ApiResponse.success(response));
     }
     
+    @GetMapping("/admin/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Stream orders or sales in a date range as CSV (Admin)")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "ORDERS") OrderExportService.ExportType type,
+            @RequestParam(required = false) Long shopId,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export(type, startDate, endDate, shopId, gzip);
+    }
+    
     @GetMapping("/admin/date-range")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Get orders by date range (Admin)")
@@ -134,4 +198,23 @@ public class OrderController {
         List<OrderResponse> response = orderService.getOrdersByDateRange(startDate, endDate);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+    
+    // Rows are written while they are read; nothing is buffered beyond the writer
+    private ResponseEntity<StreamingResponseBody> export(OrderExportService.ExportType type, LocalDate startDate,
+                                                         LocalDate endDate, Long shopId, boolean gzip) {
+        String filename = type.name().toLowerCase() + "-" + startDate + "-to-" + endDate + (gzip ? ".csv.gz" : ".csv");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192);
+                orderExportService.writeCsv(gzipOut, type, startDate.atStartOfDay(), endDate.atTime(23, 59, 59), shopId);
+                gzipOut.finish();
+            } else {
+                orderExportService.writeCsv(out, type, startDate.atStartOfDay(), endDate.atTime(23, 59, 59), shopId);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("text/csv"))
+                .body(body);
+    }
 }
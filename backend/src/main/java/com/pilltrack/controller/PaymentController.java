@@ -2,6 +2,8 @@ package com.pilltrack.controller;
 
 import com.pilltrack.dto.response.ApiResponse;
 import com.pilltrack.dto.response.PaymentResponse;
+import com.pilltrack.model.enums.PaymentCallbackType;
+import com.pilltrack.service.PaymentCallbackProcessor;
 import com.pilltrack.service.PaymentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -11,6 +13,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/payments")
@@ -19,19 +22,21 @@ import java.util.Map;
 public class PaymentController {
     
     private final PaymentService paymentService;
+    private final PaymentCallbackProcessor callbackProcessor;
     
     @PostMapping("/initiate/{orderId}")
     @SecurityRequirement(name = "bearerAuth")
     @Operation(summary = "Initiate payment for an order")
-    public ResponseEntity<ApiResponse<Map<String, Object>>> initiatePayment(@PathVariable Long orderId) {
-        Map<String, Object> response = paymentService.initiatePayment(orderId);
-        return ResponseEntity.ok(ApiResponse.success(response, "Payment initiated"));
+    public CompletableFuture<ResponseEntity<ApiResponse<Map<String, Object>>>> initiatePayment(@PathVariable Long orderId) {
+        // The servlet thread is released while the gateway call is in flight
+        return paymentService.initiatePaymentAsync(orderId)
+                .thenApply(response -> ResponseEntity.ok(ApiResponse.success(response, "Payment initiated")));
     }
     
     @PostMapping("/success")
     @Operation(summary = "Payment success callback from SSLCommerz")
     public ResponseEntity<String> paymentSuccess(@RequestParam Map<String, String> params) {
-        paymentService.handlePaymentSuccess(params);
+        callbackProcessor.accept(PaymentCallbackType.SUCCESS, params);
         // Redirect to frontend success page
         return ResponseEntity.ok("Payment successful! Redirecting...");
     }
@@ -39,7 +44,7 @@ public class PaymentController {
     @PostMapping("/fail")
     @Operation(summary = "Payment failure callback from SSLCommerz")
     public ResponseEntity<String> paymentFail(@RequestParam Map<String, String> params) {
-        paymentService.handlePaymentFailure(params);
+        callbackProcessor.accept(PaymentCallbackType.FAIL, params);
         // Redirect to frontend failure page
         return ResponseEntity.ok("Payment failed! Redirecting...");
     }
@@ -47,7 +52,7 @@ public class PaymentController {
     @PostMapping("/cancel")
     @Operation(summary = "Payment cancel callback from SSLCommerz")
     public ResponseEntity<String> paymentCancel(@RequestParam Map<String, String> params) {
-        paymentService.handlePaymentCancel(params);
+        callbackProcessor.accept(PaymentCallbackType.CANCEL, params);
         // Redirect to frontend cancel page
         return ResponseEntity.ok("Payment cancelled! Redirecting...");
     }
@@ -55,7 +60,8 @@ public class PaymentController {
     @PostMapping("/ipn")
     @Operation(summary = "IPN (Instant Payment Notification) callback from SSLCommerz")
     public ResponseEntity<String> ipn(@RequestParam Map<String, String> params) {
-        paymentService.handleIpn(params);
+        // Stored and queued; repeats of an accepted IPN are acknowledged without reprocessing
+        callbackProcessor.accept(PaymentCallbackType.IPN, params);
         return ResponseEntity.ok("IPN received");
     }
     
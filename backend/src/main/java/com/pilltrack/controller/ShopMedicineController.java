@@ -1,23 +1,30 @@
 package com.pilltrack.controller;
 
+import com.pilltrack.dto.request.ShopMedicineBatchRequest;
 import com.pilltrack.dto.request.ShopMedicineRequest;
 import com.pilltrack.dto.response.ApiResponse;
+import com.pilltrack.dto.response.InventoryImportResponse;
 import com.pilltrack.dto.response.PageResponse;
 import com.pilltrack.dto.response.ShopMedicineResponse;
+import com.pilltrack.service.ShopMedicineImportService;
 import com.pilltrack.service.ShopMedicineService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -27,6 +34,7 @@ import java.util.List;
 public class ShopMedicineController {
     
     private final ShopMedicineService shopMedicineService;
+    private final ShopMedicineImportService shopMedicineImportService;
     
     @GetMapping("/shop/{shopId}")
     @Operation(summary = "Get all medicines for a shop")
@@ -102,6 +110,30 @@ public class ShopMedicineController {
         return ResponseEntity.ok(ApiResponse.success(response, "Medicine updated successfully"));
     }
     
+    @PostMapping(value = "/bulk", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE})
+    @PreAuthorize("hasRole('SHOP_OWNER')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Bulk upsert inventory from a streamed CSV or JSON array body")
+    public ResponseEntity<ApiResponse<InventoryImportResponse>> bulkImportInventory(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request) throws IOException {
+        InventoryImportResponse response = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_JSON)
+                ? shopMedicineImportService.importJson(request.getInputStream())
+                : shopMedicineImportService.importCsv(request.getInputStream());
+        return ResponseEntity.ok(ApiResponse.success(response, "Inventory import completed"));
+    }
+    
+    @PostMapping("/{id}/batches")
+    @PreAuthorize("hasRole('SHOP_OWNER')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Receive a new stock batch")
+    public ResponseEntity<ApiResponse<ShopMedicineResponse>> receiveBatch(
+            @PathVariable Long id,
+            @Valid @RequestBody ShopMedicineBatchRequest request) {
+        ShopMedicineResponse response = shopMedicineService.receiveBatch(id, request);
+        return ResponseEntity.ok(ApiResponse.success(response, "Batch received successfully"));
+    }
+    
     @PatchMapping("/{id}/stock")
     @PreAuthorize("hasRole('SHOP_OWNER')")
     @SecurityRequirement(name = "bearerAuth")
@@ -0,0 +1,108 @@
+package com.pilltrack.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Local stand-in for the SSLCommerz session and validation APIs, for load-testing gateway latency offline.
+ * Enabled with the gateway-stub profile, which also points the sslcommerz URLs here.
+ * Responses are delayed without holding a servlet thread.
+ */
+@RestController
+@RequestMapping("/stub/sslcommerz")
+@Profile("gateway-stub")
+public class SslCommerzStubController {
+    
+    @Value("${app.gateway-stub.latency-ms:300}")
+    private long latencyMs;
+    
+    @Value("${app.gateway-stub.jitter-ms:200}")
+    private long jitterMs;
+    
+    // Share of calls answered with HTTP 503, to exercise the circuit breaker
+    @Value("${app.gateway-stub.failure-rate:0.0}")
+    private double failureRate;
+    
+    // Amount and currency of each session by tran_id, reported back by the transaction query API
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    
+    @PostMapping("/gwprocess/v4/api.php")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> createSession(@RequestParam Map<String, String> params) {
+        if (params.get("tran_id") != null) {
+            sessions.put(params.get("tran_id"), Map.of(
+                    "amount", params.getOrDefault("total_amount", ""), "currency", params.getOrDefault("currency", "")));
+        }
+        return delayed(() -> {
+            String sessionKey = UUID.randomUUID().toString().replace("-", "").toUpperCase();
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("status", "SUCCESS");
+            body.put("failedreason", "");
+            body.put("sessionkey", sessionKey);
+            body.put("GatewayPageURL", "http://localhost/stub/sslcommerz/gwprocess/v4/gw.php?Q=pay&SESSIONKEY=" + sessionKey);
+            body.put("tran_id", params.get("tran_id"));
+            return body;
+        });
+    }
+    
+    @GetMapping("/validator/api/validationserverAPI.php")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> validate(@RequestParam("val_id") String valId) {
+        return delayed(() -> {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("status", "VALID");
+            body.put("val_id", valId);
+            return body;
+        });
+    }
+    
+    // Status reported by the transaction query API, for reconciliation runs
+    @Value("${app.gateway-stub.transaction-status:VALID}")
+    private String transactionStatus;
+    
+    @GetMapping("/validator/api/merchantTransIDvalidationAPI.php")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> queryTransaction(@RequestParam("tran_id") String tranId) {
+        return delayed(() -> {
+            Map<String, Object> element = new LinkedHashMap<>();
+            element.put("tran_id", tranId);
+            element.put("val_id", "STUB-" + tranId);
+            element.put("status", transactionStatus);
+            element.put("bank_tran_id", "STUB-BANK-" + tranId);
+            element.put("card_type", "STUB-CARD");
+            Map<String, String> session = sessions.get(tranId);
+            if (session != null) {
+                element.put("amount", session.get("amount"));
+                element.put("currency", session.get("currency"));
+            }
+            
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("APIConnect", "DONE");
+            body.put("no_of_trans_found", 1);
+            body.put("element", List.of(element));
+            return body;
+        });
+    }
+    
+    private CompletableFuture<ResponseEntity<Map<String, Object>>> delayed(
+            Supplier<Map<String, Object>> body) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+        boolean fail = random.nextDouble() < failureRate;
+        
+        return CompletableFuture.supplyAsync(
+                () -> fail ? ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).<Map<String, Object>>build()
+                        : ResponseEntity.ok(body.get()),
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+    }
+}
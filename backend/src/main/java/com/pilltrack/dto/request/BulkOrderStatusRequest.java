@@ -0,0 +1,26 @@
+package com.pilltrack.dto.request;
+
+import com.pilltrack.model.enums.OrderStatus;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkOrderStatusRequest {
+    
+    @NotEmpty(message = "Order ids are required")
+    @Size(max = 500, message = "At most 500 orders can be updated at once")
+    private List<Long> orderIds;
+    
+    @NotNull(message = "Status is required")
+    private OrderStatus status;
+}
@@ -0,0 +1,42 @@
+package com.pilltrack.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Shipping details for checking out the current cart. The items come from the cart.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CheckoutRequest {
+    
+    @NotBlank(message = "Shipping name is required")
+    @Size(max = 100, message = "Shipping name must not exceed 100 characters")
+    private String shippingName;
+    
+    @NotBlank(message = "Shipping phone is required")
+    @Size(max = 20, message = "Shipping phone must not exceed 20 characters")
+    private String shippingPhone;
+    
+    @NotBlank(message = "Shipping address is required")
+    private String shippingAddress;
+    
+    @NotBlank(message = "Shipping city is required")
+    @Size(max = 100, message = "Shipping city must not exceed 100 characters")
+    private String shippingCity;
+    
+    @Size(max = 100, message = "Shipping area must not exceed 100 characters")
+    private String shippingArea;
+    
+    @Size(max = 20, message = "Shipping postal code must not exceed 20 characters")
+    private String shippingPostalCode;
+    
+    @Size(max = 500, message = "Customer notes must not exceed 500 characters")
+    private String customerNotes;
+}
@@ -0,0 +1,32 @@
+package com.pilltrack.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class InventoryImportRow {
+    
+    // Medicine reference - brand id takes precedence over slug
+    private Integer brandId;
+    private String slug;
+    
+    private BigDecimal price;
+    private BigDecimal discountPrice;
+    private Integer stockQuantity;
+    private Integer minStockAlert;
+    private Boolean isAvailable;
+    
+    private String batchNumber;
+    private LocalDate expiryDate;
+    private LocalDate manufactureDate;
+}
@@ -1,6 +1,7 @@
 package com.pilltrack.dto.request;
 
 import com.pilltrack.model.enums.MedicationType;
+import com.pilltrack.model.enums.ReminderType;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -64,9 +65,16 @@ public class MedicationRequest {
     @Size(max = 500, message = "Image URL must not exceed 500 characters")
     private String imageUrl;
     
-    // Reminder times in HH:mm format
+    // FIXED_TIME (default): times in HH:mm format; MEAL_BASED: meal rules such as BREAKFAST-30 or DINNER+15;
+    // INTERVAL_BASED: the first dose time in HH:mm format
     private List<String> reminderTimes;
     
+    private ReminderType reminderType;
+    
+    // Minutes between doses for INTERVAL_BASED reminders
+    @Min(value = 30, message = "Reminder interval must be at least 30 minutes")
+    private Integer reminderIntervalMinutes;
+    
     // Minutes before the scheduled time to send reminder (5, 10, 15, 30)
     @Min(value = 0, message = "Reminder minutes must be non-negative")
     private Integer reminderMinutesBefore;
@@ -0,0 +1,28 @@
+package com.pilltrack.dto.request;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ShopMedicineBatchRequest {
+    
+    @Size(max = 50, message = "Batch number must not exceed 50 characters")
+    private String batchNumber;
+    
+    @NotNull(message = "Quantity is required")
+    @Min(value = 1, message = "Quantity must be at least 1")
+    private Integer quantity;
+    
+    private LocalDate expiryDate;
+    private LocalDate manufactureDate;
+}
@@ -0,0 +1,17 @@
+package com.pilltrack.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkOrderStatusError {
+    
+    private Long orderId;
+    
+    private String message;
+}
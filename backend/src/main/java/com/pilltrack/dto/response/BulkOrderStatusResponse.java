@@ -0,0 +1,24 @@
+package com.pilltrack.dto.response;
+
+import com.pilltrack.model.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkOrderStatusResponse {
+    
+    private OrderStatus status;
+    
+    private int requested;
+    private List<Long> updatedIds;
+    
+    // Orders left unchanged, with the reason
+    private List<BulkOrderStatusError> skipped;
+}
@@ -0,0 +1,27 @@
+package com.pilltrack.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartDeltaResponse {
+    
+    private Long cartId;
+    
+    // The line that was added or updated; null when a line was removed
+    private CartItemResponse changedItem;
+    private Long removedItemId;
+    
+    // New cart totals
+    private Integer totalItems;
+    private BigDecimal subtotal;
+    private BigDecimal discount;
+    private BigDecimal total;
+}
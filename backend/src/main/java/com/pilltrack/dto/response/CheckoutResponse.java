@@ -0,0 +1,27 @@
+package com.pilltrack.dto.response;
+
+import com.pilltrack.model.enums.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CheckoutResponse {
+    
+    private String checkoutReference;
+    
+    // One order per shop in the cart
+    private List<OrderResponse> orders;
+    
+    // Combined payment for all orders
+    private Long paymentId;
+    private PaymentStatus paymentStatus;
+    private BigDecimal totalAmount;
+}
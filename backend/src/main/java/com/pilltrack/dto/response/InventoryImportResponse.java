@@ -0,0 +1,26 @@
+package com.pilltrack.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryImportResponse {
+    
+    private Long shopId;
+    
+    // Row counts
+    private long totalRows;
+    private long upsertedRows;
+    private long failedRows;
+    
+    // Per-row failures, capped so the report stays small for very large files
+    private List<InventoryImportRowError> errors;
+    private boolean errorsTruncated;
+}
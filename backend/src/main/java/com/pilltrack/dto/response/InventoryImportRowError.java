@@ -0,0 +1,21 @@
+package com.pilltrack.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryImportRowError {
+    
+    // 1-based data row number (header excluded)
+    private long rowNumber;
+    
+    // Brand id or slug as given in the row
+    private String reference;
+    
+    private String message;
+}
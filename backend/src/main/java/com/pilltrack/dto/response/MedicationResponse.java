@@ -2,6 +2,7 @@ package com.pilltrack.dto.response;
 
 import com.pilltrack.model.enums.MedicationStatus;
 import com.pilltrack.model.enums.MedicationType;
+import com.pilltrack.model.enums.ReminderType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -37,6 +38,8 @@ public class MedicationResponse {
     private String imageUrl;
     private Boolean isActive;
     private List<String> reminderTimes;
+    private ReminderType reminderType;
+    private Integer reminderIntervalMinutes;
     private Integer reminderMinutesBefore;
     private Integer quantityPerDose;
     private LocalDateTime createdAt;
@@ -18,6 +18,7 @@ public class OrderResponse {
     
     private Long id;
     private String orderNumber;
+    private String checkoutReference;
     
     // User
     private Long userId;
@@ -70,4 +71,7 @@ public class OrderResponse {
     private LocalDateTime cancelledAt;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    
+    // Served from the order archive: no item ids and no shipping contact details
+    private Boolean archived;
 }
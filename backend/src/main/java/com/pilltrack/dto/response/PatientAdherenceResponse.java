@@ -0,0 +1,28 @@
+package com.pilltrack.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientAdherenceResponse {
+    private Long patientId;
+    private String name;
+    private String email;
+    private String avatarUrl;
+    private Long taken;
+    private Long skipped;
+    private Long missed;
+    private Long pending;
+    // Share of settled (taken, skipped or missed) doses that were taken; null without settled doses
+    private Double adherencePercentage;
+    // Most recent days with settled doses on which a dose was missed, in a row
+    private Integer missedStreak;
+    private LocalDateTime lastDoseTime;
+}
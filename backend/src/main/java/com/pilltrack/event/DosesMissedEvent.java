@@ -0,0 +1,23 @@
+package com.pilltrack.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Published for each chunk of pending doses the missed-dose job has marked MISSED.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class DosesMissedEvent {
+    
+    public record MissedDose(Long doseLogId, Long medicationId, String medicationName, Long userId, String userName,
+                             LocalDateTime scheduledTime) {
+    }
+    
+    private final List<MissedDose> doses;
+}
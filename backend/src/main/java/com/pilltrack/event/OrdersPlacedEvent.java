@@ -0,0 +1,22 @@
+package com.pilltrack.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Published when a checkout has created its orders, one per shop.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class OrdersPlacedEvent {
+    
+    public record PlacedOrder(Long shopOwnerId, String orderNumber, String status) {
+    }
+    
+    private final String checkoutReference;
+    private final List<PlacedOrder> orders;
+}
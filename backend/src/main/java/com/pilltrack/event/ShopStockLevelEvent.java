@@ -0,0 +1,28 @@
+package com.pilltrack.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when a shop medicine's stock crosses its minStockAlert threshold or runs out,
+ * and with level OK when it recovers above the threshold.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class ShopStockLevelEvent {
+    
+    public enum Level {
+        OK,
+        LOW_STOCK,
+        OUT_OF_STOCK
+    }
+    
+    private final Long shopMedicineId;
+    private final Long shopOwnerId;
+    private final String medicineName;
+    private final int stockQuantity;
+    private final int minStockAlert;
+    private final Level level;
+}
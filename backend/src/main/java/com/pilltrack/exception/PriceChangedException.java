@@ -0,0 +1,25 @@
+package com.pilltrack.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+/**
+ * Checkout found cart lines priced at an older catalog version. The lines have been repriced
+ * and the user should review the cart before checking out again.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class PriceChangedException extends BadRequestException {
+    
+    private final List<String> changedItems;
+    
+    public PriceChangedException(List<String> changedItems) {
+        super("Prices changed for " + String.join(", ", changedItems) + ". Please review your cart");
+        this.changedItems = changedItems;
+    }
+    
+    public List<String> getChangedItems() {
+        return changedItems;
+    }
+}
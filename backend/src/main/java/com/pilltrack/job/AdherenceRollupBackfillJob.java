@@ -0,0 +1,29 @@
+package com.pilltrack.job;
+
+import com.pilltrack.service.AdherenceRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class AdherenceRollupBackfillJob implements Job {
+    
+    private final AdherenceRollupService adherenceRollupService;
+    
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            adherenceRollupService.rebuild();
+        } catch (Exception e) {
+            log.error("Adherence rollup backfill job failed", e);
+            throw new JobExecutionException(e);
+        }
+    }
+}
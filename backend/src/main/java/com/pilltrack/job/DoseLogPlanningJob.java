@@ -0,0 +1,29 @@
+package com.pilltrack.job;
+
+import com.pilltrack.service.DoseLogPlanner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class DoseLogPlanningJob implements Job {
+    
+    private final DoseLogPlanner doseLogPlanner;
+    
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            doseLogPlanner.planAhead();
+        } catch (Exception e) {
+            log.error("Dose log planning job failed", e);
+            throw new JobExecutionException(e);
+        }
+    }
+}
@@ -1,57 +1,39 @@
 package com.pilltrack.job;
 
-import com.pilltrack.model.entity.DoseLog;
-import com.pilltrack.model.entity.User;
-import com.pilltrack.model.enums.DoseStatus;
-import com.pilltrack.repository.DoseLogRepository;
-import com.pilltrack.repository.UserRepository;
+import com.pilltrack.service.MissedDoseService;
+import com.pilltrack.service.ShardLeaseManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.Job;
+import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-
-import java.time.LocalDateTime;
-import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MissedDoseJob implements Job {
     
-    private final DoseLogRepository doseLogRepository;
-    private final UserRepository userRepository;
+    private final MissedDoseService missedDoseService;
+    private final ShardLeaseManager shardLeases;
     
     @Override
-    @Transactional
     public void execute(JobExecutionContext context) throws JobExecutionException {
-        log.info("Running missed dose check job...");
-        
-        // Find all pending doses that are more than 6 hours past scheduled time
-        LocalDateTime cutoffTime = LocalDateTime.now().minusHours(6);
-        
-        int markedCount = 0;
-        
-        // Process pending doses for each user
-        List<User> users = userRepository.findAll();
-        
-        for (User user : users) {
-            List<DoseLog> pendingDoses = doseLogRepository
-                    .findPendingDosesBeforeTime(user.getId(), cutoffTime);
-            
-            for (DoseLog doseLog : pendingDoses) {
-                if (doseLog.getStatus() == DoseStatus.PENDING) {
-                    doseLog.setStatus(DoseStatus.MISSED);
-                    doseLogRepository.save(doseLog);
-                    markedCount++;
-                    log.info("Marked dose as missed: {} for medication: {}", 
-                            doseLog.getId(), doseLog.getMedication().getName());
-                }
-            }
+        JobDataMap data = context.getMergedJobDataMap();
+        if (!data.containsKey(ShardLeaseManager.SHARD_KEY)) {
+            log.warn("Missed dose trigger {} has no shard; skipping", context.getTrigger().getKey());
+            return;
+        }
+        int shard = data.getIntValue(ShardLeaseManager.SHARD_KEY);
+        try {
+            shardLeases.runWithLease(MissedDoseService.JOB_NAME, shard, lease -> {
+                missedDoseService.markMissedDoses(shard);
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Missed dose job failed for shard {}", shard, e);
+            throw new JobExecutionException(e);
         }
-        
-        log.info("Missed dose check job completed. Marked {} doses as missed.", markedCount);
     }
 }
@@ -0,0 +1,29 @@
+package com.pilltrack.job;
+
+import com.pilltrack.service.OrderArchiveService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class OrderArchivalJob implements Job {
+    
+    private final OrderArchiveService orderArchiveService;
+    
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            orderArchiveService.archive();
+        } catch (Exception e) {
+            log.error("Order archival job failed", e);
+            throw new JobExecutionException(e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.pilltrack.job;
+
+import com.pilltrack.service.PaymentReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class PaymentReconciliationJob implements Job {
+    
+    private final PaymentReconciliationService reconciliationService;
+    
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            reconciliationService.reconcile();
+        } catch (Exception e) {
+            log.error("Payment reconciliation job failed", e);
+            throw new JobExecutionException(e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.pilltrack.job;
+
+import com.pilltrack.model.entity.MedicineShop;
+import com.pilltrack.model.entity.ShopMedicineBatch;
+import com.pilltrack.repository.ShopMedicineBatchRepository;
+import com.pilltrack.service.NotificationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alerts shop owners about batches expiring within the alert window, read from the expiry index one
+ * page at a time. Each page is alerted and marked in its own transaction; marked batches leave the
+ * query, so the next page is always the first one and a failed run resumes where it stopped.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShopExpiryAlertJob implements Job {
+    
+    // Same window the inventory view uses for "expiring soon"
+    private static final int EXPIRY_ALERT_DAYS = 30;
+    private static final int PAGE_SIZE = 1000;
+    
+    private final ShopMedicineBatchRepository batchRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        LocalDate alertDate = LocalDate.now().plusDays(EXPIRY_ALERT_DAYS);
+        int alerted = 0;
+        Integer pageAlerted;
+        while ((pageAlerted = transactionTemplate.execute(status -> alertPage(alertDate))) != null && pageAlerted > 0) {
+            alerted += pageAlerted;
+        }
+        
+        log.info("Shop expiry alert job completed. {} batches due by {} alerted.", alerted, alertDate);
+    }
+    
+    private int alertPage(LocalDate alertDate) {
+        List<ShopMedicineBatch> batches = batchRepository.findUnalertedWithShopExpiringBy(alertDate,
+                PageRequest.of(0, PAGE_SIZE));
+        if (batches.isEmpty()) {
+            return 0;
+        }
+        
+        Map<MedicineShop, List<ShopMedicineBatch>> dueByShop = new LinkedHashMap<>();
+        List<Long> alertedIds = new ArrayList<>();
+        for (ShopMedicineBatch batch : batches) {
+            dueByShop.computeIfAbsent(batch.getShopMedicine().getShop(), s -> new ArrayList<>()).add(batch);
+            alertedIds.add(batch.getId());
+        }
+        
+        for (Map.Entry<MedicineShop, List<ShopMedicineBatch>> entry : dueByShop.entrySet()) {
+            try {
+                notificationService.sendShopExpiryAlert(entry.getKey().getOwner().getId(), entry.getValue());
+            } catch (Exception e) {
+                log.error("Failed to send expiry alert to shop: {}", entry.getKey().getName(), e);
+            }
+        }
+        
+        batchRepository.markExpiryAlertSent(alertedIds);
+        log.debug("Shop expiry alert page: {} batches across {} shops", alertedIds.size(), dueByShop.size());
+        return alertedIds.size();
+    }
+}
@@ -0,0 +1,54 @@
+package com.pilltrack.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Dose counts by status of one medication on one day (the date of the scheduled time, in the
+ * user's zone), see AdherenceRollupService. Kept up to date with every dose status change, so
+ * adherence over a range sums at most one row per medication and day.
+ * Only read and written with JDBC.
+ */
+@Entity
+@Table(name = "adherence_rollups", indexes = {
+        @Index(name = "uk_adherence_rollups_medication_date", columnList = "medication_id, dose_date", unique = true),
+        @Index(name = "idx_adherence_rollups_user_date", columnList = "user_id, dose_date")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AdherenceRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "medication_id", nullable = false)
+    private Long medicationId;
+
+    @Column(name = "dose_date", nullable = false)
+    private LocalDate doseDate;
+
+    @Column(nullable = false)
+    private Integer taken;
+
+    @Column(nullable = false)
+    private Integer skipped;
+
+    @Column(nullable = false)
+    private Integer missed;
+
+    @Column(nullable = false)
+    private Integer pending;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,101 @@
+package com.pilltrack.model.entity;
+
+import com.pilltrack.model.enums.OrderStatus;
+import com.pilltrack.model.enums.PaymentStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Closed order moved out of orders/order_items by OrderArchiveService.
+ * One flat row per order: plain id columns instead of foreign keys, the payment folded in
+ * and the line items as a JSON array, so history scans never join. Rows are written with
+ * JDBC batch inserts and only read through OrderHistoryRepository.
+ */
+@Entity
+@Table(name = "archived_orders", indexes = {
+        @Index(name = "idx_archived_orders_user_created", columnList = "user_id, created_at"),
+        @Index(name = "idx_archived_orders_shop_created", columnList = "shop_id, created_at"),
+        @Index(name = "idx_archived_orders_created", columnList = "created_at"),
+        @Index(name = "idx_archived_orders_number", columnList = "order_number", unique = true)
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedOrder {
+
+    // Id of the original order
+    @Id
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String orderNumber;
+
+    @Column(length = 50)
+    private String checkoutReference;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    @Column(length = 150)
+    private String shopName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OrderStatus status;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal subtotal;
+
+    @Column(precision = 12, scale = 2)
+    private BigDecimal shippingCost;
+
+    @Column(precision = 12, scale = 2)
+    private BigDecimal discount;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal total;
+
+    // Delivery area only; name, phone and street address are not kept
+    @Column(length = 100)
+    private String shippingCity;
+
+    @Column(length = 100)
+    private String shippingArea;
+
+    @Column(nullable = false)
+    private Integer itemCount;
+
+    // [{shopMedicineId, medicineName, medicineStrength, medicineForm, manufacturerName, quantity, unitPrice, lineTotal}]
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String items;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private PaymentStatus paymentStatus;
+
+    @Column(length = 50)
+    private String paymentMethod;
+
+    @Column(length = 100)
+    private String transactionId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime confirmedAt;
+
+    private LocalDateTime deliveredAt;
+
+    private LocalDateTime cancelledAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -74,16 +74,25 @@ public class Cart {
         this.total = this.subtotal.subtract(this.discount);
     }
     
+    // Apply a quantity change of one line to the totals without walking every item
+    public void applyQuantityDelta(CartItem item, int quantityDelta) {
+        this.totalItems += quantityDelta;
+        this.subtotal = this.subtotal.add(item.getPrice().multiply(BigDecimal.valueOf(quantityDelta)));
+        this.total = this.subtotal.subtract(this.discount);
+    }
+    
     public void addItem(CartItem item) {
         items.add(item);
         item.setCart(this);
-        recalculateTotals();
+        this.discount = this.discount.add(item.getDiscount());
+        applyQuantityDelta(item, item.getQuantity());
     }
     
     public void removeItem(CartItem item) {
         items.remove(item);
         item.setCart(null);
-        recalculateTotals();
+        this.discount = this.discount.subtract(item.getDiscount());
+        applyQuantityDelta(item, -item.getQuantity());
     }
     
     public void clearCart() {
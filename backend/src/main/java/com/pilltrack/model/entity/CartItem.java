@@ -41,6 +41,10 @@ public class CartItem {
     @Column(precision = 10, scale = 2)
     private BigDecimal discountPrice;
     
+    // ShopMedicine.priceVersion the line was priced at; null for lines priced before versioning
+    @Column
+    private Long priceVersion;
+    
     @Column(nullable = false, precision = 10, scale = 2)
     @Builder.Default
     private BigDecimal discount = BigDecimal.ZERO;
@@ -62,10 +66,22 @@ public class CartItem {
         return getEffectivePrice().multiply(BigDecimal.valueOf(quantity));
     }
     
+    public boolean isPricedAt(Long version) {
+        return priceVersion != null && priceVersion.equals(version);
+    }
+    
+    // Caller recalculates the cart totals
+    public void reprice(BigDecimal newPrice, BigDecimal newDiscountPrice, Long version) {
+        this.price = newPrice;
+        this.discountPrice = newDiscountPrice;
+        this.priceVersion = version;
+    }
+    
     public void updateQuantity(int newQuantity) {
+        int delta = newQuantity - this.quantity;
         this.quantity = newQuantity;
         if (cart != null) {
-            cart.recalculateTotals();
+            cart.applyQuantityDelta(this, delta);
         }
     }
 }
@@ -10,7 +10,13 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "dose_logs")
+@Table(name = "dose_logs", indexes = {
+        // Idempotency key for planned doses (DoseLogPlanner inserts with ON CONFLICT DO NOTHING);
+        // databases holding duplicates get it from db/dose_logs_unique_schedule.sql
+        @Index(name = "uk_dose_logs_medication_scheduled", columnList = "medication_id, scheduled_time", unique = true),
+        // Pending doses by time, for missed-dose marking
+        @Index(name = "idx_dose_logs_status_scheduled", columnList = "status, scheduled_time")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -31,6 +37,7 @@ public class DoseLog {
     @Column(nullable = false, length = 20)
     private DoseStatus status;
     
+    // Wall-clock time in the user's zone
     @Column(nullable = false)
     private LocalDateTime scheduledTime;
     
@@ -0,0 +1,58 @@
+package com.pilltrack.model.entity;
+
+import com.pilltrack.model.enums.JobRunStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the current or last run of a chunked job on one shard, see ChunkedJobRunner.
+ * The checkpoint is job-specific (usually the last id written) and is stored in the same
+ * transaction as the chunk it follows; a run that did not complete is resumed from it.
+ * Only read and written with JDBC.
+ */
+@Entity
+@Table(name = "job_checkpoints", indexes = {
+        @Index(name = "uk_job_checkpoints_job_shard", columnList = "job_name, shard", unique = true)
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 50)
+    private String jobName;
+
+    @Column(nullable = false)
+    private Integer shard;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobRunStatus status;
+
+    @Column(length = 255)
+    private String checkpoint;
+
+    // Chunks and items of the current or last run
+    @Column(nullable = false)
+    private Integer chunks;
+
+    @Column(nullable = false)
+    private Long items;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,47 @@
+package com.pilltrack.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease on one shard of a sharded job, see ShardLeaseManager.
+ * A node holds it while it processes the shard; the fencing token goes up on every acquisition,
+ * so a node whose lease has expired and been taken over cannot write back. The watermark is
+ * job-specific progress handed from one run to the next (the last minute fired, for reminders).
+ * Only read and written with JDBC.
+ */
+@Entity
+@Table(name = "job_shard_leases", indexes = {
+        @Index(name = "uk_job_shard_leases_job_shard", columnList = "job_name, shard", unique = true)
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobShardLease {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 50)
+    private String jobName;
+
+    @Column(nullable = false)
+    private Integer shard;
+
+    // Holding node; null when free
+    @Column(length = 100)
+    private String owner;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "fencing_token", nullable = false)
+    private Long fencingToken;
+
+    private Long watermark;
+}
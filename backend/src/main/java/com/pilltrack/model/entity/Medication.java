@@ -14,7 +14,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "medications")
+@Table(name = "medications", indexes = {
+        // Low stock scan of the daily alert job
+        @Index(name = "idx_medications_days_of_supply", columnList = "days_of_supply")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -79,6 +82,14 @@ public class Medication {
     @Builder.Default
     private MedicationStatus status = MedicationStatus.ACTIVE;
     
+    // Whole days the inventory lasts: inventory / (frequency * quantityPerDose), kept on every save
+    @Column(name = "days_of_supply")
+    private Integer daysOfSupply;
+    
+    // Set when a low stock alert was sent; cleared when the supply goes up again
+    @Column(name = "low_stock_alerted_at")
+    private LocalDateTime lowStockAlertedAt;
+    
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -97,13 +108,28 @@ public class Medication {
     private List<Reminder> reminders = new ArrayList<>();
     
     // Utility methods
+    @PrePersist
+    @PreUpdate
+    public void updateDaysOfSupply() {
+        Integer previous = daysOfSupply;
+        daysOfSupply = computeDaysOfSupply();
+        if (previous != null && daysOfSupply != null && daysOfSupply > previous) {
+            // Restocked (or usage lowered): alert again next time it runs low
+            lowStockAlertedAt = null;
+        }
+    }
+    
     public boolean isLowStock(int thresholdDays) {
-        int dailyUsage = frequency;
-        int daysRemaining = dailyUsage > 0 ? inventory / dailyUsage : 0;
-        return daysRemaining <= thresholdDays;
+        return getDaysRemaining() <= thresholdDays;
     }
     
     public int getDaysRemaining() {
-        return frequency > 0 ? inventory / frequency : 0;
+        Integer days = computeDaysOfSupply();
+        return days != null ? days : 0;
+    }
+    
+    private Integer computeDaysOfSupply() {
+        int dailyUsage = frequency != null && quantityPerDose != null ? frequency * quantityPerDose : 0;
+        return dailyUsage > 0 && inventory != null ? inventory / dailyUsage : null;
     }
 }
@@ -14,7 +14,12 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_shop_status_created", columnList = "shop_id, status, created_at"),
+        @Index(name = "idx_orders_user_status_created", columnList = "user_id, status, created_at"),
+        @Index(name = "idx_orders_checkout_reference", columnList = "checkout_reference"),
+        @Index(name = "idx_orders_created_at", columnList = "created_at")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -38,6 +43,10 @@ public class Order {
     @JoinColumn(name = "shop_id", nullable = false)
     private MedicineShop shop;
     
+    // Shared by the per-shop orders of one cart checkout, which are paid with one payment
+    @Column(length = 50)
+    private String checkoutReference;
+    
     // Order Status
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
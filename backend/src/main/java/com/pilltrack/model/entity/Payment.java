@@ -46,10 +46,14 @@ public class Payment {
     @Column(nullable = false, length = 50)
     private String paymentMethod;
     
-    // SSLCommerz Transaction Details
+    // SSLCommerz Transaction Details; one tran_id for every session of the payment
     @Column(unique = true, length = 100)
     private String transactionId;
     
+    // Last gateway session initiation; reconciliation expires the payment relative to it
+    @Column
+    private LocalDateTime sessionStartedAt;
+    
     @Column(length = 100)
     private String validationId;
     
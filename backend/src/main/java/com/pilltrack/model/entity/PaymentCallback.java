@@ -0,0 +1,74 @@
+package com.pilltrack.model.entity;
+
+import com.pilltrack.model.enums.PaymentCallbackStatus;
+import com.pilltrack.model.enums.PaymentCallbackType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * A gateway callback (success redirect or IPN), stored once per idempotency key and processed by a queue worker.
+ */
+@Entity
+@Table(name = "payment_callbacks", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payment_callbacks_key", columnNames = "idempotency_key")
+}, indexes = {
+        @Index(name = "idx_payment_callbacks_status_updated", columnList = "status, updated_at")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentCallback {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // tran_id plus val_id (or the outcome when there is no val_id)
+    @Column(name = "idempotency_key", nullable = false, length = 220)
+    private String idempotencyKey;
+    
+    @Column(nullable = false, length = 100)
+    private String transactionId;
+    
+    @Column(length = 100)
+    private String validationId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private PaymentCallbackType type;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private PaymentCallbackStatus status = PaymentCallbackStatus.RECEIVED;
+    
+    // Callback parameters as JSON
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+    
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+    
+    @Column
+    private LocalDateTime processedAt;
+    
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @LastModifiedDate
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
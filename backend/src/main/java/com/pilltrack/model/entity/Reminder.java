@@ -4,12 +4,16 @@ import com.pilltrack.model.enums.ReminderType;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reminders")
+@Table(name = "reminders", indexes = {
+        // Changes picked up by the reminder wheels of other nodes
+        @Index(name = "idx_reminders_updated_at", columnList = "updated_at")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -31,7 +35,15 @@ public class Reminder {
     private ReminderType reminderType;
     
     @Column(nullable = false)
-    private String scheduleInfo; // JSON or comma-separated times
+    private String scheduleInfo; // Comma-separated times or meal rules, as entered
+    
+    // Compiled from scheduleInfo by ReminderScheduleCompiler: dose minutes of the day, ascending.
+    // INTERVAL_BASED holds the first dose time only
+    @Column(name = "schedule_minutes")
+    private int[] scheduleMinutes;
+    
+    // INTERVAL_BASED: seconds between doses
+    private Integer intervalSeconds;
     
     @Column(length = 100)
     private String cronExpression;
@@ -51,4 +63,9 @@ public class Reminder {
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
+    
+    // Null on rows older than the column
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
 }
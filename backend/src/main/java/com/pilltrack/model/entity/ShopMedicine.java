@@ -45,6 +45,11 @@ public class ShopMedicine {
     @Builder.Default
     private Integer discountPercent = 0;
     
+    // Bumped whenever price or discountPrice changes; cart lines remember the version they were priced at
+    @Column(columnDefinition = "BIGINT DEFAULT 1")
+    @Builder.Default
+    private Long priceVersion = 1L;
+    
     // Inventory
     @Column(nullable = false)
     @Builder.Default
@@ -107,4 +112,17 @@ public class ShopMedicine {
     public BigDecimal getEffectivePrice() {
         return this.discountPrice != null ? this.discountPrice : this.price;
     }
+    
+    public void applyPrice(BigDecimal newPrice, BigDecimal newDiscountPrice) {
+        boolean changed = !samePrice(this.price, newPrice) || !samePrice(this.discountPrice, newDiscountPrice);
+        this.price = newPrice;
+        this.discountPrice = newDiscountPrice;
+        if (changed) {
+            this.priceVersion = (this.priceVersion != null ? this.priceVersion : 1L) + 1;
+        }
+    }
+    
+    private static boolean samePrice(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
 }
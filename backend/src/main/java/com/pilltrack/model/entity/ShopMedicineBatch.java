@@ -0,0 +1,64 @@
+package com.pilltrack.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "shop_medicine_batches", indexes = {
+        @Index(name = "idx_smb_shop_medicine_expiry", columnList = "shop_medicine_id, expiry_date"),
+        @Index(name = "idx_smb_unalerted_expiry", columnList = "expiry_alert_sent, expiry_date")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ShopMedicineBatch {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "shop_medicine_id", nullable = false)
+    private ShopMedicine shopMedicine;
+    
+    @Column(length = 50)
+    private String batchNumber;
+    
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer quantity = 0;
+    
+    @Column
+    private LocalDate expiryDate;
+    
+    @Column
+    private LocalDate manufactureDate;
+    
+    // Set once the expiry alert for this batch has been sent
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean expiryAlertSent = false;
+    
+    // Timestamps
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @LastModifiedDate
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    // Helper methods
+    public boolean isExpired(LocalDate today) {
+        return this.expiryDate != null && this.expiryDate.isBefore(today);
+    }
+}
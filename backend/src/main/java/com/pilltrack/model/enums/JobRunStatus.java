@@ -0,0 +1,7 @@
+package com.pilltrack.model.enums;
+
+public enum JobRunStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,8 @@
+package com.pilltrack.model.enums;
+
+public enum MealAnchor {
+    BREAKFAST,
+    LUNCH,
+    DINNER,
+    BEDTIME
+}
@@ -1,5 +1,10 @@
 package com.pilltrack.model.enums;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum OrderStatus {
     PENDING,
     CONFIRMED,
@@ -8,5 +13,28 @@ public enum OrderStatus {
     DELIVERED,
     CANCELLED,
     REJECTED,
-    REFUNDED
+    REFUNDED;
+    
+    // Allowed status changes; anything not listed is rejected
+    private static final Map<OrderStatus, EnumSet<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+    
+    static {
+        TRANSITIONS.put(PENDING, EnumSet.of(CONFIRMED, PROCESSING, CANCELLED, REJECTED));
+        TRANSITIONS.put(CONFIRMED, EnumSet.of(PROCESSING, SHIPPED, CANCELLED));
+        TRANSITIONS.put(PROCESSING, EnumSet.of(SHIPPED, DELIVERED));
+        TRANSITIONS.put(SHIPPED, EnumSet.of(DELIVERED));
+        TRANSITIONS.put(DELIVERED, EnumSet.of(REFUNDED));
+        TRANSITIONS.put(CANCELLED, EnumSet.of(REFUNDED));
+        TRANSITIONS.put(REJECTED, EnumSet.of(REFUNDED));
+        TRANSITIONS.put(REFUNDED, EnumSet.noneOf(OrderStatus.class));
+    }
+    
+    public boolean canTransitionTo(OrderStatus target) {
+        return TRANSITIONS.get(this).contains(target);
+    }
+    
+    // Statuses an order can reach from this one
+    public Set<OrderStatus> nextStatuses() {
+        return EnumSet.copyOf(TRANSITIONS.get(this));
+    }
 }
@@ -0,0 +1,8 @@
+package com.pilltrack.model.enums;
+
+public enum PaymentCallbackStatus {
+    RECEIVED,
+    PROCESSING,
+    PROCESSED,
+    FAILED
+}
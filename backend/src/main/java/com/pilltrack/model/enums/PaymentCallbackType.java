@@ -0,0 +1,8 @@
+package com.pilltrack.model.enums;
+
+public enum PaymentCallbackType {
+    SUCCESS,
+    FAIL,
+    CANCEL,
+    IPN
+}
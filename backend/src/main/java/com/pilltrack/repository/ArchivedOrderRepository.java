@@ -0,0 +1,36 @@
+package com.pilltrack.repository;
+
+import com.pilltrack.model.entity.ArchivedOrder;
+import com.pilltrack.model.enums.OrderStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long> {
+    
+    Optional<ArchivedOrder> findByOrderNumber(String orderNumber);
+    
+    Page<ArchivedOrder> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
+    
+    Page<ArchivedOrder> findByShopIdOrderByCreatedAtDesc(Long shopId, Pageable pageable);
+    
+    List<ArchivedOrder> findByCreatedAtBetweenOrderByCreatedAtDesc(LocalDateTime startDate, LocalDateTime endDate);
+    
+    long countByStatus(OrderStatus status);
+    
+    @Query("SELECT COALESCE(SUM(a.total), 0) FROM ArchivedOrder a WHERE a.status = :status")
+    BigDecimal sumTotalByStatus(@Param("status") OrderStatus status);
+    
+    // Newest archived order; date ranges after it never need the archive
+    @Query("SELECT MAX(a.createdAt) FROM ArchivedOrder a")
+    LocalDateTime findMaxCreatedAt();
+}
@@ -18,5 +18,10 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items WHERE c.user.id = :userId")
     Optional<Cart> findByUserIdWithItems(@Param("userId") Long userId);
     
+    // Whole cart graph in one query: items, their shop medicine, shop and medicine
+    @Query("SELECT DISTINCT c FROM Cart c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.shopMedicine sm " +
+           "LEFT JOIN FETCH sm.shop LEFT JOIN FETCH sm.medicine WHERE c.user.id = :userId")
+    Optional<Cart> findByUserIdWithItemDetails(@Param("userId") Long userId);
+    
     void deleteByUserId(Long userId);
 }
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,9 @@ public interface DoctorPatientRepository extends JpaRepository<DoctorPatient, Lo
 
     List<DoctorPatient> findByDoctorId(Long doctorId);
 
+    @Query("SELECT dp FROM DoctorPatient dp JOIN FETCH dp.patient WHERE dp.doctor.id = :doctorId")
+    List<DoctorPatient> findWithPatientByDoctorId(@Param("doctorId") Long doctorId);
+
     void deleteByDoctorIdAndPatientId(Long doctorId, Long patientId);
 
     @Query("SELECT dp.patient FROM DoctorPatient dp WHERE dp.doctor.id = :doctorId")
@@ -26,4 +30,9 @@ public interface DoctorPatientRepository extends JpaRepository<DoctorPatient, Lo
 
     @Query("SELECT dp.patient FROM DoctorPatient dp WHERE dp.doctor.user.id = :doctorUserId")
     List<User> findPatientsByDoctorUserId(@Param("doctorUserId") Long doctorUserId);
+    
+    // [patientId, doctor's userId] of active links
+    @Query("SELECT dp.patient.id, dp.doctor.user.id FROM DoctorPatient dp " +
+           "WHERE dp.patient.id IN :patientIds AND dp.status = 'ACTIVE'")
+    List<Object[]> findActiveDoctorUserIdsByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
 }
@@ -5,12 +5,15 @@ import com.pilltrack.model.enums.DoseStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DoseLogRepository extends JpaRepository<DoseLog, Long> {
@@ -58,6 +61,19 @@ public interface DoseLogRepository extends JpaRepository<DoseLog, Long> {
            "CAST(d.scheduledTime AS date) = CURRENT_DATE ORDER BY d.scheduledTime")
     List<DoseLog> findTodaysDosesByUserId(@Param("userId") Long userId);
     
-    // Check if dose log already exists for a medication at a specific scheduled time
-    boolean existsByMedicationIdAndScheduledTime(Long medicationId, LocalDateTime scheduledTime);
+    // [userId, latest takenTime] of the users' doses taken in the range
+    @Query("SELECT d.medication.user.id, MAX(d.takenTime) FROM DoseLog d WHERE d.medication.user.id IN :userIds " +
+           "AND d.status = 'TAKEN' AND d.scheduledTime BETWEEN :startDate AND :endDate GROUP BY d.medication.user.id")
+    List<Object[]> findLastTakenTimeByUserIdIn(@Param("userIds") Collection<Long> userIds,
+                                               @Param("startDate") LocalDateTime startDate,
+                                               @Param("endDate") LocalDateTime endDate);
+    
+    // Dose logs are unique per medication and scheduled time
+    Optional<DoseLog> findByMedicationIdAndScheduledTime(Long medicationId, LocalDateTime scheduledTime);
+    
+    // Drop planned doses that no longer apply (reminders replaced, medication paused or re-dated)
+    @Modifying
+    @Query("DELETE FROM DoseLog d WHERE d.medication.id = :medicationId AND d.status = 'PENDING' " +
+           "AND d.scheduledTime > :after")
+    int deletePendingAfter(@Param("medicationId") Long medicationId, @Param("after") LocalDateTime after);
 }
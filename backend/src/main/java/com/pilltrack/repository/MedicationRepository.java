@@ -29,8 +29,8 @@ public interface MedicationRepository extends JpaRepository<Medication, Long> {
                                            @Param("query") String query, 
                                            Pageable pageable);
     
-    @Query("SELECT m FROM Medication m WHERE m.user.id = :userId AND m.inventory <= 5")
-    List<Medication> findLowStockByUserId(@Param("userId") Long userId);
+    @Query("SELECT m FROM Medication m WHERE m.user.id = :userId AND m.daysOfSupply <= :thresholdDays")
+    List<Medication> findLowStockByUserId(@Param("userId") Long userId, @Param("thresholdDays") int thresholdDays);
     
     @Query("SELECT COUNT(m) FROM Medication m WHERE m.user.id = :userId AND m.status = :status")
     long countByUserIdAndStatus(@Param("userId") Long userId, @Param("status") MedicationStatus status);
@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +19,11 @@ public interface MedicineRepository extends JpaRepository<Medicine, Long>, JpaSp
     
     Optional<Medicine> findBySlug(String slug);
     
+    // Bulk lookups for inventory import
+    List<Medicine> findByBrandIdIn(Collection<Integer> brandIds);
+    
+    List<Medicine> findBySlugIn(Collection<String> slugs);
+    
     boolean existsBySlug(String slug);
     
     // Search by brand name or generic name
@@ -0,0 +1,88 @@
+package com.pilltrack.repository;
+
+import com.pilltrack.model.entity.ArchivedOrder;
+import com.pilltrack.model.entity.Order;
+import com.pilltrack.model.enums.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read facade over live orders and archived_orders.
+ * Routes by date: ranges that start after the newest archived order (the archive horizon)
+ * only touch the orders table; older ranges read both. Totals add up both tables.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderHistoryRepository {
+
+    // Other instances may archive too, so the cached horizon is re-read now and then
+    private static final long HORIZON_TTL_MILLIS = 5 * 60 * 1000L;
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+
+    private volatile LocalDateTime archiveHorizon;
+    private volatile long horizonLoadedAt;
+
+    public record OrderHistory(List<Order> live, List<ArchivedOrder> archived) {
+    }
+
+    public OrderHistory findByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate) {
+        List<Order> live = orderRepository.findAllWithItemsByCreatedAtBetween(startDate, endDate);
+        List<ArchivedOrder> archived = reachesArchive(startDate)
+                ? archivedOrderRepository.findByCreatedAtBetweenOrderByCreatedAtDesc(startDate, endDate)
+                : List.of();
+        return new OrderHistory(live, archived);
+    }
+
+    public Optional<ArchivedOrder> findArchivedByOrderNumber(String orderNumber) {
+        return getArchiveHorizon() == null ? Optional.empty() : archivedOrderRepository.findByOrderNumber(orderNumber);
+    }
+
+    public Page<ArchivedOrder> findArchivedByUserId(Long userId, Pageable pageable) {
+        return archivedOrderRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+    }
+
+    public Page<ArchivedOrder> findArchivedByShopId(Long shopId, Pageable pageable) {
+        return archivedOrderRepository.findByShopIdOrderByCreatedAtDesc(shopId, pageable);
+    }
+
+    public long count() {
+        return orderRepository.count() + (getArchiveHorizon() != null ? archivedOrderRepository.count() : 0);
+    }
+
+    public long countByStatus(OrderStatus status) {
+        long live = orderRepository.countByStatus(status);
+        return getArchiveHorizon() != null ? live + archivedOrderRepository.countByStatus(status) : live;
+    }
+
+    public BigDecimal sumTotalByStatus(OrderStatus status) {
+        BigDecimal live = orderRepository.sumTotalByStatus(status);
+        return getArchiveHorizon() != null ? live.add(archivedOrderRepository.sumTotalByStatus(status)) : live;
+    }
+
+    public LocalDateTime getArchiveHorizon() {
+        if (System.currentTimeMillis() - horizonLoadedAt > HORIZON_TTL_MILLIS) {
+            refreshArchiveHorizon();
+        }
+        return archiveHorizon;
+    }
+
+    public void refreshArchiveHorizon() {
+        archiveHorizon = archivedOrderRepository.findMaxCreatedAt();
+        horizonLoadedAt = System.currentTimeMillis();
+    }
+
+    // Whether a range starting at startDate can contain archived orders
+    public boolean reachesArchive(LocalDateTime startDate) {
+        LocalDateTime horizon = getArchiveHorizon();
+        return horizon != null && !startDate.isAfter(horizon);
+    }
+}
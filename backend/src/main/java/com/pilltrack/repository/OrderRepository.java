@@ -5,12 +5,14 @@ import com.pilltrack.model.enums.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,8 +21,41 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     
     Optional<Order> findByOrderNumber(String orderNumber);
     
+    // Bulk status change inputs: [id, status, orderNumber, userId, shopOwnerId]
+    @Query("SELECT o.id, o.status, o.orderNumber, o.user.id, s.owner.id FROM Order o JOIN o.shop s WHERE o.id IN :ids")
+    List<Object[]> findStatusRowsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Guarded transition: only rows still in the expected status change; null timestamps are left as they are
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :to, o.updatedAt = :now, " +
+           "o.confirmedAt = COALESCE(:confirmedAt, o.confirmedAt), " +
+           "o.processingAt = COALESCE(:processingAt, o.processingAt), " +
+           "o.shippedAt = COALESCE(:shippedAt, o.shippedAt), " +
+           "o.deliveredAt = COALESCE(:deliveredAt, o.deliveredAt) " +
+           "WHERE o.id IN :ids AND o.status = :from")
+    int transitionStatus(@Param("ids") Collection<Long> ids,
+                         @Param("from") OrderStatus from,
+                         @Param("to") OrderStatus to,
+                         @Param("now") LocalDateTime now,
+                         @Param("confirmedAt") LocalDateTime confirmedAt,
+                         @Param("processingAt") LocalDateTime processingAt,
+                         @Param("shippedAt") LocalDateTime shippedAt,
+                         @Param("deliveredAt") LocalDateTime deliveredAt);
+    
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids AND o.status = :status AND o.updatedAt = :updatedAt")
+    List<Long> findIdsByIdInAndStatusAndUpdatedAt(@Param("ids") Collection<Long> ids,
+                                                  @Param("status") OrderStatus status,
+                                                  @Param("updatedAt") LocalDateTime updatedAt);
+    
     boolean existsByOrderNumber(String orderNumber);
     
+    // Orders of one cart checkout
+    List<Order> findByCheckoutReference(String checkoutReference);
+    
+    long countByCheckoutReferenceAndStatusNot(String checkoutReference, OrderStatus status);
+    
+    List<Order> findByCheckoutReferenceIn(Collection<String> checkoutReferences);
+    
     // Find by user
     Page<Order> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
     
@@ -31,10 +66,64 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     
     List<Order> findByShopIdOrderByCreatedAtDesc(Long shopId);
     
-    // Find by status
-    Page<Order> findByUserIdAndStatusOrderByCreatedAtDesc(Long userId, OrderStatus status, Pageable pageable);
-    
-    Page<Order> findByShopIdAndStatusOrderByCreatedAtDesc(Long shopId, OrderStatus status, Pageable pageable);
+    // Two-phase listing: page over ids only, then load the graph for that page with findAllWithItemsByIdIn.
+    // Status filters are served by the (user_id|shop_id, status, created_at) indexes.
+    @Query(value = "SELECT o.id FROM Order o",
+           countQuery = "SELECT COUNT(o) FROM Order o")
+    Page<Long> findAllIds(Pageable pageable);
+    
+    @Query(value = "SELECT o.id FROM Order o WHERE o.status = :status",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.status = :status")
+    Page<Long> findIdsByStatus(@Param("status") OrderStatus status, Pageable pageable);
+    
+    @Query(value = "SELECT o.id FROM Order o WHERE o.user.id = :userId",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.user.id = :userId")
+    Page<Long> findIdsByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    // Status filtered listings take no sort from the controller; newest first, id breaks ties
+    @Query(value = "SELECT o.id FROM Order o WHERE o.user.id = :userId AND o.status = :status " +
+                   "ORDER BY o.createdAt DESC, o.id DESC",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.user.id = :userId AND o.status = :status")
+    Page<Long> findIdsByUserIdAndStatus(@Param("userId") Long userId,
+                                        @Param("status") OrderStatus status,
+                                        Pageable pageable);
+    
+    @Query(value = "SELECT o.id FROM Order o WHERE o.shop.id = :shopId",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.shop.id = :shopId")
+    Page<Long> findIdsByShopId(@Param("shopId") Long shopId, Pageable pageable);
+    
+    @Query(value = "SELECT o.id FROM Order o WHERE o.shop.id = :shopId AND o.status = :status " +
+                   "ORDER BY o.createdAt DESC, o.id DESC",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.shop.id = :shopId AND o.status = :status")
+    Page<Long> findIdsByShopIdAndStatus(@Param("shopId") Long shopId,
+                                        @Param("status") OrderStatus status,
+                                        Pageable pageable);
+    
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.user JOIN FETCH o.shop LEFT JOIN FETCH o.items WHERE o.id IN :ids")
+    List<Order> findAllWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Date range listing with the graph in one query; reads go through OrderHistoryRepository
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.user JOIN FETCH o.shop LEFT JOIN FETCH o.items " +
+           "WHERE o.createdAt BETWEEN :startDate AND :endDate ORDER BY o.createdAt DESC")
+    List<Order> findAllWithItemsByCreatedAtBetween(@Param("startDate") LocalDateTime startDate,
+                                                   @Param("endDate") LocalDateTime endDate);
+    
+    // Archival candidates in id order; a checkout's orders are only archived once all of them qualify
+    @Query("SELECT o.id FROM Order o WHERE o.id > :afterId AND o.status IN :statuses AND o.updatedAt < :before " +
+           "AND (o.checkoutReference IS NULL OR NOT EXISTS (SELECT s.id FROM Order s " +
+           "WHERE s.checkoutReference = o.checkoutReference AND (s.status NOT IN :statuses OR s.updatedAt >= :before))) " +
+           "ORDER BY o.id")
+    List<Long> findArchivableIds(@Param("statuses") Collection<OrderStatus> statuses,
+                                 @Param("before") LocalDateTime before,
+                                 @Param("afterId") Long afterId,
+                                 Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM Order o WHERE o.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT COALESCE(SUM(o.total), 0) FROM Order o WHERE o.status = :status")
+    BigDecimal sumTotalByStatus(@Param("status") OrderStatus status);
     
     // Find orders in date range
     @Query("SELECT o FROM Order o WHERE o.user.id = :userId AND o.createdAt BETWEEN :startDate AND :endDate ORDER BY o.createdAt DESC")
@@ -0,0 +1,37 @@
+package com.pilltrack.repository;
+
+import com.pilltrack.model.entity.PaymentCallback;
+import com.pilltrack.model.enums.PaymentCallbackStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentCallbackRepository extends JpaRepository<PaymentCallback, Long> {
+    
+    boolean existsByIdempotencyKey(String idempotencyKey);
+    
+    // Claim a callback for processing; 0 when another worker already has it
+    @Modifying
+    @Query("UPDATE PaymentCallback c SET c.status = :to, c.updatedAt = :now WHERE c.id = :id AND c.status = :from")
+    int transition(@Param("id") Long id,
+                   @Param("from") PaymentCallbackStatus from,
+                   @Param("to") PaymentCallbackStatus to,
+                   @Param("now") LocalDateTime now);
+    
+    @Query("SELECT c.id FROM PaymentCallback c WHERE c.status = :status AND c.updatedAt < :before ORDER BY c.id")
+    List<Long> findIdsByStatusUpdatedBefore(@Param("status") PaymentCallbackStatus status,
+                                            @Param("before") LocalDateTime before,
+                                            Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE PaymentCallback c SET c.status = 'RECEIVED', c.updatedAt = :now " +
+           "WHERE c.status = 'PROCESSING' AND c.updatedAt < :before")
+    int releaseStuck(@Param("before") LocalDateTime before, @Param("now") LocalDateTime now);
+}
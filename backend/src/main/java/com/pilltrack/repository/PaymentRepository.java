@@ -5,12 +5,14 @@ import com.pilltrack.model.enums.PaymentStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +21,11 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     
     Optional<Payment> findByOrderId(Long orderId);
     
+    // Payment of an order, including the combined payment of a multi-shop checkout
+    @Query("SELECT p FROM Payment p WHERE p.order.id = :orderId OR (p.order.checkoutReference IS NOT NULL " +
+           "AND p.order.checkoutReference = (SELECT o.checkoutReference FROM Order o WHERE o.id = :orderId))")
+    Optional<Payment> findCoveringOrderId(@Param("orderId") Long orderId);
+    
     Optional<Payment> findByTransactionId(String transactionId);
     
     Optional<Payment> findByValidationId(String validationId);
@@ -51,6 +58,31 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT p FROM Payment p WHERE p.status = 'PENDING' AND p.createdAt < :before")
     List<Payment> findStalePendingPayments(@Param("before") LocalDateTime before);
     
+    // Reconciliation: stale PENDING payments that reached the gateway (a session was initiated),
+    // in id order, one page after another. Cash on delivery payments never get a transaction id.
+    @Query("SELECT p FROM Payment p JOIN FETCH p.order WHERE p.status = 'PENDING' AND p.transactionId IS NOT NULL " +
+           "AND p.createdAt < :before AND p.id > :afterId ORDER BY p.id")
+    List<Payment> findStalePendingAfter(@Param("before") LocalDateTime before,
+                                        @Param("afterId") Long afterId,
+                                        Pageable pageable);
+    
+    @Query("SELECT p FROM Payment p JOIN FETCH p.order WHERE p.id IN :ids")
+    List<Payment> findAllWithOrderByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Order archival: payments of the orders, and the combined payments of their checkouts
+    @Query("SELECT p FROM Payment p JOIN FETCH p.order o WHERE o.id IN :orderIds")
+    List<Payment> findAllWithOrderByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+    
+    @Query("SELECT p FROM Payment p JOIN FETCH p.order o WHERE o.checkoutReference IN :checkoutReferences")
+    List<Payment> findAllWithOrderByCheckoutReferenceIn(@Param("checkoutReferences") Collection<String> checkoutReferences);
+    
+    @Modifying
+    @Query("DELETE FROM Payment p WHERE p.order.id IN :orderIds")
+    int deleteAllByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+    
+    @Query("SELECT MIN(p.createdAt) FROM Payment p WHERE p.status = 'PENDING' AND p.transactionId IS NOT NULL")
+    LocalDateTime findOldestPendingGatewayCreatedAt();
+    
     // Payment count by status for shop
     @Query("SELECT COUNT(p) FROM Payment p WHERE p.order.shop.id = :shopId AND p.status = :status")
     long countByShopIdAndStatus(@Param("shopId") Long shopId, @Param("status") PaymentStatus status);
@@ -2,11 +2,16 @@ package com.pilltrack.repository;
 
 import com.pilltrack.model.entity.Reminder;
 import com.pilltrack.model.enums.ReminderType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +32,39 @@ public interface ReminderRepository extends JpaRepository<Reminder, Long> {
     
     Optional<Reminder> findByJobKey(String jobKey);
     
+    // Keyset page of active reminders whose medication has not ended, for building the reminder wheel
+    @Query("SELECT r FROM Reminder r JOIN FETCH r.medication m WHERE r.isActive = true " +
+           "AND (m.endDate IS NULL OR m.endDate >= :today) AND r.id > :afterId ORDER BY r.id")
+    List<Reminder> findActiveWithMedicationAfter(@Param("today") LocalDate today, @Param("afterId") Long afterId,
+                                                 Pageable pageable);
+    
+    // Same, for the users of one shard (MOD(user id, shards) = shard)
+    @Query("SELECT r FROM Reminder r JOIN FETCH r.medication m WHERE r.isActive = true " +
+           "AND (m.endDate IS NULL OR m.endDate >= :today) AND MOD(m.user.id, :shards) = :shard " +
+           "AND r.id > :afterId ORDER BY r.id")
+    List<Reminder> findActiveWithMedicationInShardAfter(@Param("today") LocalDate today, @Param("shards") int shards,
+                                                        @Param("shard") int shard, @Param("afterId") Long afterId,
+                                                        Pageable pageable);
+    
+    // Reminders of one shard changed since the given time, active or not
+    @Query("SELECT r FROM Reminder r JOIN FETCH r.medication m WHERE r.updatedAt > :since " +
+           "AND MOD(m.user.id, :shards) = :shard")
+    List<Reminder> findChangedWithMedicationInShard(@Param("since") LocalDateTime since, @Param("shards") int shards,
+                                                    @Param("shard") int shard);
+    
+    // Mark a medication's reminders changed when the medication's dates or status changed
+    @Modifying
+    @Query("UPDATE Reminder r SET r.updatedAt = :now WHERE r.medication.id = :medicationId")
+    int touchByMedicationId(@Param("medicationId") Long medicationId, @Param("now") LocalDateTime now);
+    
+    // Keyset page of active reminders saved before schedules were compiled, for ReminderScheduleBackfill
+    @Query("SELECT r FROM Reminder r WHERE r.isActive = true AND r.scheduleMinutes IS NULL AND r.id > :afterId " +
+           "ORDER BY r.id")
+    List<Reminder> findActiveUncompiledAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT r FROM Reminder r JOIN FETCH r.medication WHERE r.id IN :ids")
+    List<Reminder> findAllWithMedicationByIdIn(@Param("ids") Collection<Long> ids);
+    
     @Query("SELECT COUNT(r) FROM Reminder r WHERE r.medication.user.id = :userId AND r.isActive = true")
     long countActiveByUserId(@Param("userId") Long userId);
     
@@ -0,0 +1,42 @@
+package com.pilltrack.repository;
+
+import com.pilltrack.model.entity.ShopMedicineBatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ShopMedicineBatchRepository extends JpaRepository<ShopMedicineBatch, Long> {
+    
+    // FEFO order: earliest expiry first, batches without an expiry date last
+    @Query("SELECT b FROM ShopMedicineBatch b WHERE b.shopMedicine.id = :shopMedicineId AND b.quantity > 0 " +
+           "ORDER BY b.expiryDate ASC NULLS LAST, b.id ASC")
+    List<ShopMedicineBatch> findAvailableByShopMedicineIdFefo(@Param("shopMedicineId") Long shopMedicineId);
+    
+    Optional<ShopMedicineBatch> findByShopMedicineIdAndBatchNumber(Long shopMedicineId, String batchNumber);
+    
+    @Query("SELECT COALESCE(SUM(b.quantity), 0) FROM ShopMedicineBatch b WHERE b.shopMedicine.id = :shopMedicineId")
+    int sumQuantityByShopMedicineId(@Param("shopMedicineId") Long shopMedicineId);
+    
+    // Batches still to alert that expire on or before untilDate, with their shop, served by idx_smb_unalerted_expiry
+    @Query("SELECT b FROM ShopMedicineBatch b JOIN FETCH b.shopMedicine sm JOIN FETCH sm.shop s " +
+           "JOIN FETCH s.owner JOIN FETCH sm.medicine WHERE b.expiryAlertSent = false AND b.expiryDate <= :untilDate " +
+           "AND b.quantity > 0 ORDER BY b.expiryDate ASC, b.id ASC")
+    List<ShopMedicineBatch> findUnalertedWithShopExpiringBy(@Param("untilDate") LocalDate untilDate, Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE ShopMedicineBatch b SET b.expiryAlertSent = true WHERE b.id IN :ids")
+    int markExpiryAlertSent(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("DELETE FROM ShopMedicineBatch b WHERE b.shopMedicine.id = :shopMedicineId")
+    int deleteByShopMedicineId(@Param("shopMedicineId") Long shopMedicineId);
+}
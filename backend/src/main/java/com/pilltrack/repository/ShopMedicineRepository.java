@@ -12,6 +12,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +23,16 @@ public interface ShopMedicineRepository extends JpaRepository<ShopMedicine, Long
     
     boolean existsByShopIdAndMedicineId(Long shopId, Long medicineId);
     
+    @Query("SELECT sm FROM ShopMedicine sm JOIN FETCH sm.shop JOIN FETCH sm.medicine WHERE sm.id = :id")
+    Optional<ShopMedicine> findByIdWithShopAndMedicine(@Param("id") Long id);
+    
+    // Price catalog projections: [id, priceVersion] and [id, priceVersion, price, discountPrice]
+    @Query("SELECT sm.id, sm.priceVersion FROM ShopMedicine sm WHERE sm.id IN :ids")
+    List<Object[]> findPriceVersionsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT sm.id, sm.priceVersion, sm.price, sm.discountPrice FROM ShopMedicine sm WHERE sm.id IN :ids")
+    List<Object[]> findPricesByIdIn(@Param("ids") Collection<Long> ids);
+    
     // Find by shop
     Page<ShopMedicine> findByShopIdAndIsAvailableTrue(Long shopId, Pageable pageable);
     
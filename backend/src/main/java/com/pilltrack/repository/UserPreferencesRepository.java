@@ -2,8 +2,12 @@ package com.pilltrack.repository;
 
 import com.pilltrack.model.entity.UserPreferences;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +16,11 @@ public interface UserPreferencesRepository extends JpaRepository<UserPreferences
     Optional<UserPreferences> findByUserId(Long userId);
     
     boolean existsByUserId(Long userId);
+    
+    // [userId, timezone]
+    @Query("SELECT p.user.id, p.timezone FROM UserPreferences p WHERE p.user.id IN :userIds")
+    List<Object[]> findTimezonesByUserIdIn(@Param("userIds") Collection<Long> userIds);
+    
+    @Query("SELECT DISTINCT p.timezone FROM UserPreferences p WHERE p.timezone IS NOT NULL")
+    List<String> findDistinctTimezones();
 }
@@ -0,0 +1,272 @@
+package com.pilltrack.service;
+
+import com.pilltrack.model.enums.DoseStatus;
+import com.pilltrack.repository.DoseLogRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Dose counts by status per medication and day (adherence_rollups), and adherence totals read from them.
+ * Every path that creates, deletes or changes the status of a dose log records the change here in
+ * its own transaction, as deltas applied with one batched update (missing rows are inserted first),
+ * so a range of a year sums at most 365 rows per medication. The backfill job rebuilds the rollups
+ * from dose_logs one chunk of medications at a time, which also repairs any drift.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdherenceRollupService {
+
+    public static final String JOB_NAME = "adherenceRollupBackfill";
+
+    private static final int ROWS_PER_INSERT = 500;
+
+    private static final String ENSURE_SQL =
+            "INSERT INTO adherence_rollups (user_id, medication_id, dose_date, taken, skipped, missed, pending, updated_at) " +
+            "VALUES ";
+    private static final String ENSURE_ROW = "(?, ?, ?, 0, 0, 0, 0, ?)";
+    // No conflict target, like DoseLogPlanner: (medication_id, dose_date) is the only key a new row can hit
+    private static final String ON_CONFLICT_SQL = " ON CONFLICT DO NOTHING";
+
+    private static final String APPLY_SQL =
+            "UPDATE adherence_rollups SET taken = taken + ?, skipped = skipped + ?, missed = missed + ?, " +
+            "pending = pending + ?, updated_at = ? WHERE medication_id = ? AND dose_date = ?";
+
+    private static final String TOTALS_SQL =
+            "SELECT COALESCE(SUM(taken), 0), COALESCE(SUM(skipped), 0), COALESCE(SUM(missed), 0), " +
+            "COALESCE(SUM(pending), 0) FROM adherence_rollups WHERE %s = ? AND dose_date BETWEEN ? AND ?";
+
+    private static final String DAILY_TOTALS_SQL =
+            "SELECT user_id, dose_date, SUM(taken), SUM(skipped), SUM(missed), SUM(pending) FROM adherence_rollups " +
+            "WHERE user_id IN (%s) AND dose_date BETWEEN ? AND ? GROUP BY user_id, dose_date ORDER BY user_id, dose_date";
+
+    private static final String PENDING_AFTER_SQL =
+            "SELECT scheduled_time FROM dose_logs WHERE medication_id = ? AND status = 'PENDING' AND scheduled_time > ? " +
+            "FOR UPDATE";
+
+    private static final String BACKFILL_READ_SQL = "SELECT id FROM medications WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String BACKFILL_DELETE_SQL = "DELETE FROM adherence_rollups WHERE medication_id IN (%s)";
+
+    private static final String BACKFILL_INSERT_SQL =
+            "INSERT INTO adherence_rollups (user_id, medication_id, dose_date, taken, skipped, missed, pending, updated_at) " +
+            "SELECT m.user_id, d.medication_id, CAST(d.scheduled_time AS DATE), " +
+            "SUM(CASE WHEN d.status = 'TAKEN' THEN 1 ELSE 0 END), SUM(CASE WHEN d.status = 'SKIPPED' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN d.status = 'MISSED' THEN 1 ELSE 0 END), SUM(CASE WHEN d.status = 'PENDING' THEN 1 ELSE 0 END), ? " +
+            "FROM dose_logs d JOIN medications m ON m.id = d.medication_id WHERE d.medication_id IN (%s) " +
+            "GROUP BY m.user_id, d.medication_id, CAST(d.scheduled_time AS DATE)";
+
+    private static final String DELETE_USER_SQL = "DELETE FROM adherence_rollups WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DoseLogRepository doseLogRepository;
+    private final ChunkedJobRunner jobRunner;
+
+    private record Key(Long userId, Long medicationId, LocalDate date) {}
+
+    // Rows are always updated in this order, so concurrent appliers cannot deadlock
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::medicationId).thenComparing(Key::date);
+
+    /**
+     * Dose count changes by medication and day, to apply in one go.
+     */
+    public static final class Deltas {
+
+        private final Map<Key, int[]> counts = new TreeMap<>(KEY_ORDER);
+
+        /**
+         * A dose log of the medication scheduled at scheduledTime went from one status to another;
+         * null from for a new dose log, null to for a deleted one.
+         */
+        public Deltas add(Long userId, Long medicationId, LocalDateTime scheduledTime, DoseStatus from, DoseStatus to) {
+            if (from == to) {
+                return this;
+            }
+            int[] change = counts.computeIfAbsent(new Key(userId, medicationId, scheduledTime.toLocalDate()), k -> new int[4]);
+            if (from != null) {
+                change[column(from)]--;
+            }
+            if (to != null) {
+                change[column(to)]++;
+            }
+            return this;
+        }
+
+        private static int column(DoseStatus status) {
+            return switch (status) {
+                case TAKEN -> 0;
+                case SKIPPED -> 1;
+                case MISSED -> 2;
+                case PENDING -> 3;
+            };
+        }
+    }
+
+    public record Totals(long taken, long skipped, long missed, long pending) {
+
+        public long total() {
+            return taken + skipped + missed + pending;
+        }
+    }
+
+    public record DayTotals(LocalDate date, long taken, long skipped, long missed, long pending) {}
+
+    /**
+     * Record a single dose status change; see Deltas.add.
+     */
+    public void recordChange(Long userId, Long medicationId, LocalDateTime scheduledTime, DoseStatus from, DoseStatus to) {
+        apply(new Deltas().add(userId, medicationId, scheduledTime, from, to));
+    }
+
+    /**
+     * Apply the deltas in the caller's transaction.
+     */
+    public void apply(Deltas deltas) {
+        List<Map.Entry<Key, int[]>> changes = deltas.counts.entrySet().stream()
+                .filter(change -> change.getValue()[0] != 0 || change.getValue()[1] != 0
+                        || change.getValue()[2] != 0 || change.getValue()[3] != 0)
+                .toList();
+        if (changes.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Map.Entry<Key, int[]>> missing = update(changes, now);
+        if (!missing.isEmpty()) {
+            insertMissing(missing, now);
+            // Rows created now, or rebuilt by the backfill while this update waited
+            List<Map.Entry<Key, int[]>> lost = update(missing, now);
+            if (!lost.isEmpty()) {
+                log.warn("Could not apply {} adherence rollup changes; the next backfill repairs them", lost.size());
+            }
+        }
+    }
+
+    // Returns the changes whose row did not exist
+    private List<Map.Entry<Key, int[]>> update(List<Map.Entry<Key, int[]>> changes, LocalDateTime now) {
+        List<Object[]> args = new ArrayList<>(changes.size());
+        for (Map.Entry<Key, int[]> change : changes) {
+            int[] counts = change.getValue();
+            args.add(new Object[]{counts[0], counts[1], counts[2], counts[3], now,
+                    change.getKey().medicationId(), change.getKey().date()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(APPLY_SQL, args);
+        List<Map.Entry<Key, int[]>> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(changes.get(i));
+            }
+        }
+        return missing;
+    }
+
+    private void insertMissing(List<Map.Entry<Key, int[]>> changes, LocalDateTime now) {
+        for (int start = 0; start < changes.size(); start += ROWS_PER_INSERT) {
+            List<Map.Entry<Key, int[]>> chunk = changes.subList(start, Math.min(start + ROWS_PER_INSERT, changes.size()));
+            StringBuilder sql = new StringBuilder(ENSURE_SQL);
+            Object[] args = new Object[chunk.size() * 4];
+            int i = 0;
+            for (Map.Entry<Key, int[]> change : chunk) {
+                sql.append(i == 0 ? "" : ", ").append(ENSURE_ROW);
+                args[i++] = change.getKey().userId();
+                args[i++] = change.getKey().medicationId();
+                args[i++] = change.getKey().date();
+                args[i++] = now;
+            }
+            sql.append(ON_CONFLICT_SQL);
+            jdbcTemplate.update(sql.toString(), args);
+        }
+    }
+
+    /**
+     * Delete the pending doses of a medication scheduled after the given time, with their rollup counts.
+     * Must run in a transaction. Returns the number of dose logs deleted.
+     */
+    public int deletePendingAfter(Long userId, Long medicationId, LocalDateTime after) {
+        // Locked, so the counts match what the delete removes
+        List<LocalDateTime> pending = jdbcTemplate.query(PENDING_AFTER_SQL,
+                (rs, rowNum) -> rs.getTimestamp(1).toLocalDateTime(), medicationId, after);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        int deleted = doseLogRepository.deletePendingAfter(medicationId, after);
+        Deltas deltas = new Deltas();
+        pending.forEach(time -> deltas.add(userId, medicationId, time, DoseStatus.PENDING, null));
+        apply(deltas);
+        return deleted;
+    }
+
+    public Totals totalsForUser(Long userId, LocalDate startDate, LocalDate endDate) {
+        return totals("user_id", userId, startDate, endDate);
+    }
+
+    public Totals totalsForMedication(Long medicationId, LocalDate startDate, LocalDate endDate) {
+        return totals("medication_id", medicationId, startDate, endDate);
+    }
+
+    private Totals totals(String column, Long id, LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.queryForObject(String.format(TOTALS_SQL, column),
+                (rs, rowNum) -> new Totals(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)),
+                id, startDate, endDate);
+    }
+
+    /**
+     * Totals per day over all medications of each of the users in the range, oldest day first,
+     * with one grouped query. Users without doses in the range are left out.
+     */
+    public Map<Long, List<DayTotals>> dailyTotalsForUsers(Collection<Long> userIds, LocalDate startDate, LocalDate endDate) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Object> args = new ArrayList<>(userIds);
+        args.add(startDate);
+        args.add(endDate);
+        Map<Long, List<DayTotals>> totals = new HashMap<>();
+        jdbcTemplate.query(String.format(DAILY_TOTALS_SQL, String.join(", ", Collections.nCopies(userIds.size(), "?"))),
+                (RowCallbackHandler) rs -> totals.computeIfAbsent(rs.getLong(1), k -> new ArrayList<>())
+                        .add(new DayTotals(rs.getDate(2).toLocalDate(), rs.getLong(3), rs.getLong(4), rs.getLong(5),
+                                rs.getLong(6))),
+                args.toArray());
+        return totals;
+    }
+
+    public void deleteForUser(Long userId) {
+        jdbcTemplate.update(DELETE_USER_SQL, userId);
+    }
+
+    /**
+     * Rebuild the rollups of every medication from dose_logs, one chunk of medications per transaction
+     * (see ChunkedJobRunner). Returns the number of rollup rows written.
+     */
+    public int rebuild() {
+        int[] rows = {0};
+        ChunkedJobRunner.RunResult result = jobRunner.run(JOB_NAME, 0,
+                (checkpoint, chunkSize) -> jdbcTemplate.queryForList(BACKFILL_READ_SQL, Long.class,
+                        checkpoint != null ? Long.parseLong(checkpoint) : 0L, chunkSize),
+                medicationIds -> {
+                    String ids = String.join(", ", Collections.nCopies(medicationIds.size(), "?"));
+                    jdbcTemplate.update(String.format(BACKFILL_DELETE_SQL, ids), medicationIds.toArray());
+                    List<Object> args = new ArrayList<>(medicationIds.size() + 1);
+                    args.add(LocalDateTime.now());
+                    args.addAll(medicationIds);
+                    rows[0] += jdbcTemplate.update(String.format(BACKFILL_INSERT_SQL, ids), args.toArray());
+                    return String.valueOf(medicationIds.get(medicationIds.size() - 1));
+                });
+        log.info("Adherence rollups rebuilt: {} rows for {} medications in {} ms",
+                rows[0], result.items(), result.millis());
+        return rows[0];
+    }
+}
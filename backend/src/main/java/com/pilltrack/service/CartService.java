@@ -1,6 +1,7 @@
 package com.pilltrack.service;
 
 import com.pilltrack.dto.request.CartItemRequest;
+import com.pilltrack.dto.response.CartDeltaResponse;
 import com.pilltrack.dto.response.CartItemResponse;
 import com.pilltrack.dto.response.CartResponse;
 import com.pilltrack.exception.BadRequestException;
@@ -15,10 +16,17 @@ import com.pilltrack.repository.ShopMedicineRepository;
 import com.pilltrack.security.CurrentUser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -30,8 +38,15 @@ public class CartService {
     private final CartItemRepository cartItemRepository;
     private final ShopMedicineRepository shopMedicineRepository;
     private final CurrentUser currentUser;
+    private final CartWriteBehindBuffer writeBehindBuffer;
+    private final TransactionTemplate transactionTemplate;
+    private final PriceCatalog priceCatalog;
     
-    @Transactional(readOnly = true)
+    @Value("${app.cart.write-behind-enabled:false}")
+    private boolean writeBehindEnabled;
+    
+    // Not read-only: loading the cart applies buffered quantity edits
+    @Transactional
     public CartResponse getCart() {
         User user = currentUser.getUser();
         if (user == null) {
@@ -44,59 +59,184 @@ public class CartService {
     
     @Transactional
     public CartResponse addToCart(CartItemRequest request) {
+        return mapToResponse(applyAddToCart(request).cart());
+    }
+    
+    @Transactional
+    public CartDeltaResponse addToCartCompact(CartItemRequest request) {
+        return mapToDeltaResponse(applyAddToCart(request));
+    }
+    
+    @Transactional
+    public CartResponse updateCartItem(Long itemId, int quantity) {
+        return mapToResponse(applyUpdateCartItem(itemId, quantity).cart());
+    }
+    
+    @Transactional
+    public CartDeltaResponse updateCartItemCompact(Long itemId, int quantity) {
+        return mapToDeltaResponse(applyUpdateCartItem(itemId, quantity));
+    }
+    
+    /**
+     * Quantity tap path: absorbed by the write-behind buffer and persisted after a debounce interval.
+     * Removals and disabled write-behind fall back to the transactional update.
+     */
+    public CartDeltaResponse updateCartItemBuffered(Long itemId, int quantity) {
         User user = currentUser.getUser();
         if (user == null) {
             throw new ResourceNotFoundException("User not found");
         }
         
-        ShopMedicine shopMedicine = shopMedicineRepository.findById(request.getShopMedicineId())
-                .orElseThrow(() -> new ResourceNotFoundException("ShopMedicine", "id", request.getShopMedicineId()));
+        if (!writeBehindEnabled || quantity <= 0) {
+            return transactionTemplate.execute(status -> updateCartItemCompact(itemId, quantity));
+        }
         
-        if (!shopMedicine.getIsAvailable() || shopMedicine.isOutOfStock()) {
-            throw new BadRequestException("This product is currently unavailable");
+        return writeBehindBuffer.applyEdit(user.getId(), itemId, quantity,
+                () -> transactionTemplate.execute(status -> mapToResponse(getOrCreateCart(user))));
+    }
+    
+    /**
+     * Persist a user's buffered quantity edits.
+     */
+    @Transactional
+    public void flushPendingEdits(Long userId) {
+        if (!writeBehindBuffer.hasPending(userId)) {
+            return;
+        }
+        cartRepository.findByUserIdWithItems(userId).ifPresentOrElse(
+                this::applyPendingEdits,
+                () -> writeBehindBuffer.discard(userId));
+    }
+    
+    /**
+     * Apply the cart owner's buffered quantity edits to a cart loaded in the caller's transaction.
+     * The edits leave the buffer only once that transaction commits; after a rollback they are
+     * flushed again.
+     */
+    public void applyPendingEdits(Cart cart) {
+        Long userId = cart.getUser().getId();
+        Map<Long, Integer> quantities = writeBehindBuffer.pendingEdits(userId);
+        if (quantities.isEmpty()) {
+            return;
         }
         
-        if (shopMedicine.getStockQuantity() < request.getQuantity()) {
-            throw new BadRequestException("Requested quantity exceeds available stock");
+        int rows = 0;
+        for (CartItem item : cart.getItems()) {
+            Integer quantity = quantities.get(item.getId());
+            if (quantity != null && !quantity.equals(item.getQuantity())) {
+                item.updateQuantity(quantity);
+                rows++;
+            }
+        }
+        int written = rows > 0 ? rows + 1 : 0;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    writeBehindBuffer.markFlushed(userId, quantities);
+                    writeBehindBuffer.recordFlush(written);
+                }
+            });
+        } else {
+            writeBehindBuffer.markFlushed(userId, quantities);
+            writeBehindBuffer.recordFlush(written);
+        }
+        log.debug("Flushed {} buffered cart edits for cart {}", quantities.size(), cart.getId());
+    }
+    
+    /**
+     * Reprice lines whose price version differs from the current one (shop medicine id -> version)
+     * and return the names of medicines whose price changed. Current lines are not touched.
+     */
+    public List<String> repriceStaleLines(Cart cart, Map<Long, Long> currentVersions) {
+        List<CartItem> stale = cart.getItems().stream()
+                .filter(item -> currentVersions.containsKey(item.getShopMedicine().getId()))
+                .filter(item -> !item.isPricedAt(currentVersions.get(item.getShopMedicine().getId())))
+                .collect(Collectors.toList());
+        if (stale.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, PriceCatalog.PriceSnapshot> prices = priceCatalog.snapshots(stale.stream()
+                .map(item -> item.getShopMedicine().getId())
+                .distinct()
+                .collect(Collectors.toMap(Function.identity(), currentVersions::get)));
+        return reprice(cart, stale, item -> prices.get(item.getShopMedicine().getId()));
+    }
+    
+    public Map<String, Object> getWriteBehindStats() {
+        return writeBehindBuffer.getStats();
+    }
+    
+    @Transactional
+    public CartResponse removeFromCart(Long itemId) {
+        return updateCartItem(itemId, 0);
+    }
+    
+    @Transactional
+    public CartDeltaResponse removeFromCartCompact(Long itemId) {
+        return updateCartItemCompact(itemId, 0);
+    }
+    
+    // Result of a single-line cart mutation
+    private record CartMutation(Cart cart, CartItem changedItem, Long removedItemId) {}
+    
+    private CartMutation applyAddToCart(CartItemRequest request) {
+        User user = currentUser.getUser();
+        if (user == null) {
+            throw new ResourceNotFoundException("User not found");
         }
         
         Cart cart = getOrCreateCart(user);
         
-        // Check if item already exists in cart
-        CartItem existingItem = cartItemRepository
-                .findByCartIdAndShopMedicineId(cart.getId(), shopMedicine.getId())
+        // Check if item already exists in cart; its product graph is already loaded then
+        CartItem existingItem = cart.getItems().stream()
+                .filter(item -> item.getShopMedicine().getId().equals(request.getShopMedicineId()))
+                .findFirst()
                 .orElse(null);
         
+        ShopMedicine shopMedicine = existingItem != null ? existingItem.getShopMedicine() :
+                shopMedicineRepository.findByIdWithShopAndMedicine(request.getShopMedicineId())
+                        .orElseThrow(() -> new ResourceNotFoundException("ShopMedicine", "id", request.getShopMedicineId()));
+        
+        if (!shopMedicine.getIsAvailable() || shopMedicine.isOutOfStock()) {
+            throw new BadRequestException("This product is currently unavailable");
+        }
+        
+        if (shopMedicine.getStockQuantity() < request.getQuantity()) {
+            throw new BadRequestException("Requested quantity exceeds available stock");
+        }
+        
+        CartItem changedItem;
         if (existingItem != null) {
             int newQuantity = existingItem.getQuantity() + request.getQuantity();
             if (newQuantity > shopMedicine.getStockQuantity()) {
                 throw new BadRequestException("Total quantity exceeds available stock");
             }
-            existingItem.setQuantity(newQuantity);
-            cartItemRepository.save(existingItem);
+            existingItem.updateQuantity(newQuantity);
+            changedItem = existingItem;
         } else {
+            PriceCatalog.PriceSnapshot price = priceCatalog.snapshotOf(shopMedicine);
             CartItem newItem = CartItem.builder()
                     .cart(cart)
                     .shopMedicine(shopMedicine)
                     .quantity(request.getQuantity())
-                    .price(shopMedicine.getPrice())
-                    .discountPrice(shopMedicine.getDiscountPrice())
+                    .price(price.price())
+                    .discountPrice(price.discountPrice())
+                    .priceVersion(price.version())
                     .build();
             cart.addItem(newItem);
-            cartItemRepository.save(newItem);
+            changedItem = cartItemRepository.save(newItem);
         }
         
-        cart.recalculateTotals();
-        cart = cartRepository.save(cart);
-        
+        // Cart and existing items are managed; their changes are flushed on commit
         log.info("Added to cart: {} x{} for user {}", 
                 shopMedicine.getMedicine().getBrandName(), request.getQuantity(), user.getEmail());
         
-        return mapToResponse(cart);
+        return new CartMutation(cart, changedItem, null);
     }
     
-    @Transactional
-    public CartResponse updateCartItem(Long itemId, int quantity) {
+    private CartMutation applyUpdateCartItem(Long itemId, int quantity) {
         User user = currentUser.getUser();
         if (user == null) {
             throw new ResourceNotFoundException("User not found");
@@ -109,28 +249,22 @@ public class CartService {
                 .findFirst()
                 .orElseThrow(() -> new ResourceNotFoundException("CartItem", "id", itemId));
         
+        CartMutation mutation;
         if (quantity <= 0) {
             cart.removeItem(cartItem);
             cartItemRepository.delete(cartItem);
+            mutation = new CartMutation(cart, null, itemId);
         } else {
             if (quantity > cartItem.getShopMedicine().getStockQuantity()) {
                 throw new BadRequestException("Quantity exceeds available stock");
             }
-            cartItem.setQuantity(quantity);
-            cartItemRepository.save(cartItem);
-            cart.recalculateTotals();
+            cartItem.updateQuantity(quantity);
+            mutation = new CartMutation(cart, cartItem, null);
         }
         
-        cart = cartRepository.save(cart);
-        
         log.info("Updated cart item {} to quantity {} for user {}", itemId, quantity, user.getEmail());
         
-        return mapToResponse(cart);
-    }
-    
-    @Transactional
-    public CartResponse removeFromCart(Long itemId) {
-        return updateCartItem(itemId, 0);
+        return mutation;
     }
     
     @Transactional
@@ -152,7 +286,18 @@ public class CartService {
     }
     
     private Cart getOrCreateCart(User user) {
-        return cartRepository.findByUserIdWithItems(user.getId())
+        return cartRepository.findByUserIdWithItemDetails(user.getId())
+                .map(cart -> {
+                    applyPendingEdits(cart);
+                    // Product graph is loaded with the cart, so stale lines are repriced without a query
+                    List<CartItem> stale = cart.getItems().stream()
+                            .filter(item -> !item.isPricedAt(item.getShopMedicine().getPriceVersion()))
+                            .collect(Collectors.toList());
+                    if (!stale.isEmpty()) {
+                        reprice(cart, stale, item -> priceCatalog.snapshotOf(item.getShopMedicine()));
+                    }
+                    return cart;
+                })
                 .orElseGet(() -> {
                     Cart newCart = Cart.builder()
                             .user(user)
@@ -161,6 +306,24 @@ public class CartService {
                 });
     }
     
+    private List<String> reprice(Cart cart, List<CartItem> stale,
+                                 Function<CartItem, PriceCatalog.PriceSnapshot> priceOf) {
+        List<String> changed = new ArrayList<>();
+        for (CartItem item : stale) {
+            PriceCatalog.PriceSnapshot snapshot = priceOf.apply(item);
+            if (snapshot == null) {
+                continue;
+            }
+            if (item.getEffectivePrice().compareTo(snapshot.effectivePrice()) != 0) {
+                changed.add(item.getShopMedicine().getMedicine().getBrandName());
+            }
+            item.reprice(snapshot.price(), snapshot.discountPrice(), snapshot.version());
+        }
+        cart.recalculateTotals();
+        priceCatalog.recordStaleLines(stale.size());
+        return changed;
+    }
+    
     private CartResponse mapToResponse(Cart cart) {
         List<CartItemResponse> items = cart.getItems().stream()
                 .map(this::mapItemToResponse)
@@ -179,6 +342,19 @@ public class CartService {
                 .build();
     }
     
+    private CartDeltaResponse mapToDeltaResponse(CartMutation mutation) {
+        Cart cart = mutation.cart();
+        return CartDeltaResponse.builder()
+                .cartId(cart.getId())
+                .changedItem(mutation.changedItem() != null ? mapItemToResponse(mutation.changedItem()) : null)
+                .removedItemId(mutation.removedItemId())
+                .totalItems(cart.getTotalItems())
+                .subtotal(cart.getSubtotal())
+                .discount(cart.getDiscount())
+                .total(cart.getTotal())
+                .build();
+    }
+    
     private CartItemResponse mapItemToResponse(CartItem item) {
         ShopMedicine sm = item.getShopMedicine();
         return CartItemResponse.builder()
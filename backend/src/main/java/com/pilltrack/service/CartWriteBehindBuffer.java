@@ -0,0 +1,215 @@
+package com.pilltrack.service;
+
+import com.pilltrack.dto.response.CartDeltaResponse;
+import com.pilltrack.dto.response.CartItemResponse;
+import com.pilltrack.dto.response.CartResponse;
+import com.pilltrack.exception.BadRequestException;
+import com.pilltrack.exception.ResourceNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user in-memory buffer for rapid cart quantity edits.
+ * Edits are coalesced (last quantity per line wins) against a snapshot of the cart and
+ * written to carts/cart_items by CartWriteBehindFlusher after a debounce interval.
+ *
+ * Crash safety: only quantity changes of existing lines are buffered, so a crash loses at most
+ * one debounce interval of such edits. Adding or removing lines and checkout always go to the
+ * database, and every transactional cart load applies the user's pending edits first. Edits stay
+ * buffered until the transaction that wrote them commits, so a failed flush is retried.
+ *
+ * The buffer lives in one node's memory: other nodes only see the edits once flushed. Enable it
+ * (app.cart.write-behind-enabled) only when each user's requests are routed to the same node.
+ */
+@Component
+public class CartWriteBehindBuffer {
+
+    private final Map<Long, PendingCart> pendingByUser = new ConcurrentHashMap<>();
+
+    // Write amplification = rowsWritten / editsBuffered
+    private final AtomicLong editsBuffered = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+
+    private static final class PendingCart {
+        private final CartResponse snapshot;
+        private final Map<Long, Integer> quantities = new LinkedHashMap<>();
+        private long lastEditMillis;
+        private boolean drained;
+
+        private PendingCart(CartResponse snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Buffer a quantity change for an existing cart line and return the updated line and totals.
+     * The loader is only called when the user has no buffered snapshot yet.
+     */
+    public CartDeltaResponse applyEdit(Long userId, Long itemId, int quantity, Supplier<CartResponse> loader) {
+        while (true) {
+            PendingCart pending = pendingByUser.get(userId);
+            if (pending == null) {
+                PendingCart loaded = new PendingCart(loader.get());
+                pending = pendingByUser.putIfAbsent(userId, loaded);
+                if (pending == null) {
+                    pending = loaded;
+                }
+            }
+
+            synchronized (pending) {
+                if (pending.drained) {
+                    // Flushed concurrently; start over with a fresh snapshot
+                    continue;
+                }
+                return applyToSnapshot(pending, itemId, quantity);
+            }
+        }
+    }
+
+    /**
+     * The user's pending line quantities (cart item id -> quantity). They stay buffered until
+     * markFlushed is called for them.
+     */
+    public Map<Long, Integer> pendingEdits(Long userId) {
+        PendingCart pending = pendingByUser.get(userId);
+        if (pending == null) {
+            return Map.of();
+        }
+        synchronized (pending) {
+            return new LinkedHashMap<>(pending.quantities);
+        }
+    }
+
+    /**
+     * Forget edits once they are committed. Lines edited again since keep their newer quantity;
+     * the user's buffer is dropped once nothing is left in it.
+     */
+    public void markFlushed(Long userId, Map<Long, Integer> flushed) {
+        PendingCart pending = pendingByUser.get(userId);
+        if (pending == null) {
+            return;
+        }
+        synchronized (pending) {
+            flushed.forEach(pending.quantities::remove);
+            if (pending.quantities.isEmpty()) {
+                pending.drained = true;
+                pendingByUser.remove(userId, pending);
+            }
+        }
+    }
+
+    /**
+     * Drop the user's pending edits without writing them, e.g. when the cart no longer exists.
+     */
+    public void discard(Long userId) {
+        PendingCart pending = pendingByUser.remove(userId);
+        if (pending != null) {
+            synchronized (pending) {
+                pending.drained = true;
+            }
+        }
+    }
+
+    public boolean hasPending(Long userId) {
+        return pendingByUser.containsKey(userId);
+    }
+
+    /**
+     * Users whose last buffered edit is older than the debounce interval.
+     */
+    public List<Long> dueUsers(long debounceMillis) {
+        long cutoff = System.currentTimeMillis() - debounceMillis;
+        return pendingByUser.entrySet().stream()
+                .filter(e -> e.getValue().lastEditMillis <= cutoff)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    public List<Long> allUsers() {
+        return List.copyOf(pendingByUser.keySet());
+    }
+
+    public void recordFlush(int rows) {
+        flushes.incrementAndGet();
+        rowsWritten.addAndGet(rows);
+    }
+
+    public Map<String, Object> getStats() {
+        long edits = editsBuffered.get();
+        long rows = rowsWritten.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingCarts", pendingByUser.size());
+        stats.put("editsBuffered", edits);
+        stats.put("flushes", flushes.get());
+        stats.put("rowsWritten", rows);
+        stats.put("writeAmplification", edits == 0 ? 0.0 : (double) rows / edits);
+        return stats;
+    }
+
+    private CartDeltaResponse applyToSnapshot(PendingCart pending, Long itemId, int quantity) {
+        CartResponse cart = pending.snapshot;
+        CartItemResponse line = cart.getItems().stream()
+                .filter(item -> item.getId().equals(itemId))
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("CartItem", "id", itemId));
+
+        if (quantity > line.getAvailableStock()) {
+            throw new BadRequestException("Quantity exceeds available stock");
+        }
+
+        // Same delta rules as Cart.applyQuantityDelta
+        int delta = quantity - line.getQuantity();
+        line.setQuantity(quantity);
+        line.setLineTotal(line.getEffectivePrice().multiply(BigDecimal.valueOf(quantity)));
+        cart.setTotalItems(cart.getTotalItems() + delta);
+        cart.setSubtotal(cart.getSubtotal().add(line.getPrice().multiply(BigDecimal.valueOf(delta))));
+        cart.setTotal(cart.getSubtotal().subtract(cart.getDiscount()));
+
+        pending.quantities.put(itemId, quantity);
+        pending.lastEditMillis = System.currentTimeMillis();
+        editsBuffered.incrementAndGet();
+
+        return CartDeltaResponse.builder()
+                .cartId(cart.getId())
+                .changedItem(copyOf(line))
+                .totalItems(cart.getTotalItems())
+                .subtotal(cart.getSubtotal())
+                .discount(cart.getDiscount())
+                .total(cart.getTotal())
+                .build();
+    }
+
+    // Detach the returned line from the snapshot, which later edits keep mutating
+    private static CartItemResponse copyOf(CartItemResponse line) {
+        return CartItemResponse.builder()
+                .id(line.getId())
+                .shopMedicineId(line.getShopMedicineId())
+                .shopId(line.getShopId())
+                .shopName(line.getShopName())
+                .medicineId(line.getMedicineId())
+                .medicineName(line.getMedicineName())
+                .medicineGenericName(line.getMedicineGenericName())
+                .medicineStrength(line.getMedicineStrength())
+                .medicineForm(line.getMedicineForm())
+                .medicineImageUrl(line.getMedicineImageUrl())
+                .requiresPrescription(line.getRequiresPrescription())
+                .quantity(line.getQuantity())
+                .price(line.getPrice())
+                .discountPrice(line.getDiscountPrice())
+                .effectivePrice(line.getEffectivePrice())
+                .lineTotal(line.getLineTotal())
+                .availableStock(line.getAvailableStock())
+                .isAvailable(line.getIsAvailable())
+                .createdAt(line.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.pilltrack.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Writes buffered cart quantity edits to the database once a cart has been idle for the debounce interval.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CartWriteBehindFlusher {
+
+    private final CartWriteBehindBuffer buffer;
+    private final CartService cartService;
+
+    @Value("${app.cart.write-behind-debounce-ms:2000}")
+    private long debounceMillis;
+
+    @Scheduled(fixedDelayString = "${app.cart.write-behind-flush-interval-ms:1000}")
+    public void flushDueCarts() {
+        flush(buffer.dueUsers(debounceMillis));
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        List<Long> users = buffer.allUsers();
+        if (!users.isEmpty()) {
+            log.info("Flushing {} buffered carts on shutdown", users.size());
+            flush(users);
+        }
+    }
+
+    private void flush(List<Long> userIds) {
+        for (Long userId : userIds) {
+            try {
+                cartService.flushPendingEdits(userId);
+            } catch (Exception e) {
+                log.error("Failed to flush buffered cart edits for user {}, retrying: {}", userId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.pilltrack.service;
+
+import com.pilltrack.model.enums.JobRunStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs background jobs in chunks: read the items after the last checkpoint, process and write them,
+ * then store the new checkpoint, all in one transaction per chunk. A connection is only held for one
+ * chunk, a failure only rolls back the chunk it happened in, and a run that failed or died with its
+ * node is resumed from its last checkpoint by the next run. Progress is kept per job and shard in
+ * job_checkpoints; callers keep a job and shard to one run at a time (shard lease or
+ * @DisallowConcurrentExecution).
+ * The chunk size is app.jobs.chunk-size, or app.jobs.(job name).chunk-size for one job.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedJobRunner {
+
+    private static final String ENSURE_SQL =
+            "INSERT INTO job_checkpoints (job_name, shard, status, chunks, items) VALUES (?, ?, 'COMPLETED', 0, 0) " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final String READ_SQL = "SELECT status, checkpoint FROM job_checkpoints WHERE job_name = ? AND shard = ?";
+
+    private static final String START_SQL =
+            "UPDATE job_checkpoints SET status = 'RUNNING', checkpoint = NULL, chunks = 0, items = 0, last_error = NULL, " +
+            "started_at = ?, updated_at = ? WHERE job_name = ? AND shard = ?";
+
+    private static final String RESUME_SQL =
+            "UPDATE job_checkpoints SET status = 'RUNNING', updated_at = ? WHERE job_name = ? AND shard = ?";
+
+    private static final String CHECKPOINT_SQL =
+            "UPDATE job_checkpoints SET checkpoint = ?, chunks = chunks + 1, items = items + ?, updated_at = ? " +
+            "WHERE job_name = ? AND shard = ?";
+
+    private static final String FINISH_SQL =
+            "UPDATE job_checkpoints SET status = ?, last_error = ?, updated_at = ? WHERE job_name = ? AND shard = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Environment environment;
+
+    @Value("${app.jobs.chunk-size:500}")
+    private int defaultChunkSize;
+
+    private final Map<String, JobMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the next chunk after a checkpoint (null at the start of a run). An empty chunk ends the run.
+     * Jobs whose written items drop out of the query anyway (e.g. a status change) may ignore the checkpoint.
+     */
+    @FunctionalInterface
+    public interface ChunkReader<T> {
+        List<T> read(String checkpoint, int chunkSize);
+    }
+
+    /**
+     * Processes and writes a chunk in the chunk's transaction. Returns the checkpoint after it.
+     */
+    @FunctionalInterface
+    public interface ChunkWriter<T> {
+        String write(List<T> chunk);
+    }
+
+    public record RunResult(int chunks, long items, boolean resumed, long millis) {}
+
+    private record Chunk(int size, String checkpoint) {}
+
+    /**
+     * Run a job on a shard (0 for jobs that are not sharded) chunk by chunk until the reader comes back
+     * empty. Resumes from the stored checkpoint if the previous run did not complete. A failed chunk is
+     * rolled back, the run is marked FAILED and the exception is rethrown.
+     */
+    public <T> RunResult run(String jobName, int shard, ChunkReader<T> reader, ChunkWriter<T> writer) {
+        long started = System.currentTimeMillis();
+        int chunkSize = chunkSize(jobName);
+        JobMetrics jobMetrics = metrics.computeIfAbsent(jobName, k -> new JobMetrics());
+
+        jdbcTemplate.update(ENSURE_SQL, jobName, shard);
+        Map<String, Object> state = jdbcTemplate.queryForMap(READ_SQL, jobName, shard);
+        boolean resumed = !JobRunStatus.COMPLETED.name().equals(state.get("status"));
+        String checkpoint = resumed ? (String) state.get("checkpoint") : null;
+        LocalDateTime now = LocalDateTime.now();
+        if (resumed) {
+            jdbcTemplate.update(RESUME_SQL, now, jobName, shard);
+            log.info("Resuming {} on shard {} from checkpoint {}", jobName, shard, checkpoint);
+        } else {
+            jdbcTemplate.update(START_SQL, now, now, jobName, shard);
+        }
+
+        int chunks = 0;
+        long items = 0;
+        try {
+            while (true) {
+                long chunkStarted = System.currentTimeMillis();
+                String from = checkpoint;
+                Chunk chunk = transactionTemplate.execute(status -> {
+                    List<T> read = reader.read(from, chunkSize);
+                    if (read.isEmpty()) {
+                        return null;
+                    }
+                    String next = writer.write(read);
+                    jdbcTemplate.update(CHECKPOINT_SQL, next, read.size(), LocalDateTime.now(), jobName, shard);
+                    return new Chunk(read.size(), next);
+                });
+                if (chunk == null) {
+                    break;
+                }
+                long chunkMillis = System.currentTimeMillis() - chunkStarted;
+                checkpoint = chunk.checkpoint();
+                chunks++;
+                items += chunk.size();
+                jobMetrics.chunk(chunk.size(), chunkMillis);
+                log.debug("{} shard {}: chunk {} of {} items in {} ms, checkpoint {}",
+                        jobName, shard, chunks, chunk.size(), chunkMillis, checkpoint);
+            }
+        } catch (RuntimeException e) {
+            jobMetrics.failed.incrementAndGet();
+            jdbcTemplate.update(FINISH_SQL, JobRunStatus.FAILED.name(), truncate(e.toString()), LocalDateTime.now(),
+                    jobName, shard);
+            log.warn("{} on shard {} failed after {} chunks; the next run resumes from checkpoint {}",
+                    jobName, shard, chunks, checkpoint);
+            throw e;
+        }
+        jdbcTemplate.update(FINISH_SQL, JobRunStatus.COMPLETED.name(), null, LocalDateTime.now(), jobName, shard);
+
+        long elapsed = System.currentTimeMillis() - started;
+        jobMetrics.runs.incrementAndGet();
+        if (resumed) {
+            jobMetrics.resumed.incrementAndGet();
+        }
+        return new RunResult(chunks, items, resumed, elapsed);
+    }
+
+    public int chunkSize(String jobName) {
+        return environment.getProperty("app.jobs." + jobName + ".chunk-size", Integer.class, defaultChunkSize);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        metrics.forEach((jobName, jobMetrics) -> stats.put(jobName, jobMetrics.toMap(chunkSize(jobName))));
+        return stats;
+    }
+
+    private static String truncate(String message) {
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    private static final class JobMetrics {
+
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong resumed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong chunkMillis = new AtomicLong();
+        private final AtomicLong maxChunkMillis = new AtomicLong();
+        private volatile long lastChunkMillis;
+        private volatile int lastChunkItems;
+
+        private void chunk(int size, long millis) {
+            chunks.incrementAndGet();
+            items.addAndGet(size);
+            chunkMillis.addAndGet(millis);
+            maxChunkMillis.accumulateAndGet(millis, Math::max);
+            lastChunkMillis = millis;
+            lastChunkItems = size;
+        }
+
+        private Map<String, Object> toMap(int chunkSize) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long chunkCount = chunks.get();
+            stats.put("chunkSize", chunkSize);
+            stats.put("runs", runs.get());
+            stats.put("resumed", resumed.get());
+            stats.put("failed", failed.get());
+            stats.put("chunks", chunkCount);
+            stats.put("items", items.get());
+            stats.put("avgChunkMillis", chunkCount > 0 ? chunkMillis.get() / chunkCount : 0);
+            stats.put("maxChunkMillis", maxChunkMillis.get());
+            stats.put("lastChunkMillis", lastChunkMillis);
+            stats.put("lastChunkItems", lastChunkItems);
+            return stats;
+        }
+    }
+}
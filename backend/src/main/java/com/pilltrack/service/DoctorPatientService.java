@@ -4,6 +4,7 @@ import com.pilltrack.dto.request.MedicationModificationRequestDto;
 import com.pilltrack.dto.request.ModificationResponseDto;
 import com.pilltrack.dto.response.DoctorPatientResponse;
 import com.pilltrack.dto.response.MedicationModificationRequestResponse;
+import com.pilltrack.dto.response.PatientAdherenceResponse;
 import com.pilltrack.dto.response.PatientSummaryResponse;
 import com.pilltrack.exception.AccessDeniedException;
 import com.pilltrack.exception.BadRequestException;
@@ -18,8 +19,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.Objects;
 
@@ -36,6 +43,8 @@ public class DoctorPatientService {
     private final NotificationService notificationService;
     private final MedicationModificationRequestRepository modificationRequestRepository;
     private final MedicationRepository medicationRepository;
+    private final DoseLogRepository doseLogRepository;
+    private final AdherenceRollupService adherenceRollups;
 
     public List<PatientSummaryResponse> getMyPatients() {
         Doctor doctor = getCurrentDoctor();
@@ -44,6 +53,41 @@ public class DoctorPatientService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Adherence of all of the current doctor's patients over the range, from the adherence rollups
+     * (one query grouped by patient and day for the whole cohort) plus one grouped query for the last
+     * dose taken. Sorted by adherence (worst first, the default), missedStreak (longest first),
+     * lastDose (longest ago first) or name.
+     */
+    @Transactional(readOnly = true)
+    public List<PatientAdherenceResponse> getPatientsAdherence(LocalDate startDate, LocalDate endDate, String sort) {
+        if (endDate.isBefore(startDate)) {
+            throw new BadRequestException("End date must not be before start date");
+        }
+        Comparator<PatientAdherenceResponse> order = adherenceOrder(sort);
+        Doctor doctor = getCurrentDoctor();
+        List<DoctorPatient> links = doctorPatientRepository.findWithPatientByDoctorId(doctor.getId());
+        if (links.isEmpty()) {
+            return List.of();
+        }
+
+        Set<Long> patientIds = links.stream().map(link -> link.getPatient().getId()).collect(Collectors.toSet());
+        Map<Long, List<AdherenceRollupService.DayTotals>> days =
+                adherenceRollups.dailyTotalsForUsers(patientIds, startDate, endDate);
+        Map<Long, LocalDateTime> lastTaken = new HashMap<>();
+        for (Object[] row : doseLogRepository.findLastTakenTimeByUserIdIn(patientIds, startDate.atStartOfDay(),
+                endDate.atTime(LocalTime.MAX))) {
+            lastTaken.put((Long) row[0], (LocalDateTime) row[1]);
+        }
+
+        return links.stream()
+                .map(DoctorPatient::getPatient)
+                .map(patient -> mapToPatientAdherence(patient, days.getOrDefault(patient.getId(), List.of()),
+                        lastTaken.get(patient.getId())))
+                .sorted(order)
+                .collect(Collectors.toList());
+    }
+
     public PatientSummaryResponse addPatient(Long patientId) {
         Doctor doctor = getCurrentDoctor();
         Long targetPatientId = Objects.requireNonNull(patientId, "patientId is required");
@@ -280,6 +324,61 @@ public class DoctorPatientService {
                 .build();
     }
 
+    private PatientAdherenceResponse mapToPatientAdherence(User patient, List<AdherenceRollupService.DayTotals> days,
+                                                           LocalDateTime lastDoseTime) {
+        long taken = 0, skipped = 0, missed = 0, pending = 0;
+        for (AdherenceRollupService.DayTotals day : days) {
+            taken += day.taken();
+            skipped += day.skipped();
+            missed += day.missed();
+            pending += day.pending();
+        }
+        // Newest first; days without settled doses (nothing due, or only pending) neither count nor break it
+        int missedStreak = 0;
+        for (int i = days.size() - 1; i >= 0; i--) {
+            AdherenceRollupService.DayTotals day = days.get(i);
+            if (day.taken() + day.skipped() + day.missed() == 0) {
+                continue;
+            }
+            if (day.missed() == 0) {
+                break;
+            }
+            missedStreak++;
+        }
+        long settled = taken + skipped + missed;
+
+        return PatientAdherenceResponse.builder()
+                .patientId(patient.getId())
+                .name(patient.getName())
+                .email(patient.getEmail())
+                .avatarUrl(patient.getProfileImageUrl())
+                .taken(taken)
+                .skipped(skipped)
+                .missed(missed)
+                .pending(pending)
+                .adherencePercentage(settled > 0 ? (double) taken / settled * 100 : null)
+                .missedStreak(missedStreak)
+                .lastDoseTime(lastDoseTime)
+                .build();
+    }
+
+    private Comparator<PatientAdherenceResponse> adherenceOrder(String sort) {
+        Comparator<PatientAdherenceResponse> byAdherence = Comparator.comparing(
+                PatientAdherenceResponse::getAdherencePercentage, Comparator.nullsLast(Comparator.naturalOrder()));
+        Comparator<PatientAdherenceResponse> byStreak =
+                Comparator.comparing(PatientAdherenceResponse::getMissedStreak).reversed();
+        return switch (sort == null ? "adherence" : sort) {
+            case "adherence" -> byAdherence.thenComparing(byStreak);
+            case "missedStreak" -> byStreak.thenComparing(byAdherence);
+            // Patients who took nothing in the range first
+            case "lastDose" -> Comparator.comparing(PatientAdherenceResponse::getLastDoseTime,
+                    Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(byAdherence);
+            case "name" -> Comparator.comparing(PatientAdherenceResponse::getName,
+                    Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+            default -> throw new BadRequestException("Unknown sort: " + sort);
+        };
+    }
+
     private DoctorPatientResponse mapToDoctorPatientResponse(DoctorPatient dp) {
         Doctor doctor = dp.getDoctor();
         User patient = dp.getPatient();
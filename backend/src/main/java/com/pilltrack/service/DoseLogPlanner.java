@@ -0,0 +1,194 @@
+package com.pilltrack.service;
+
+import com.pilltrack.model.entity.Reminder;
+import com.pilltrack.model.enums.DoseStatus;
+import com.pilltrack.model.enums.MedicationStatus;
+import com.pilltrack.repository.ReminderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Materializes PENDING dose logs of active reminders ahead of time, for app.dose-plan.horizon-hours.
+ * Rows are written with multi-row INSERT ... ON CONFLICT DO NOTHING against the unique
+ * (medication_id, scheduled_time) index, so planning a dose again (overlapping runs, the reminder tick,
+ * several instances) is a no-op without checking first.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DoseLogPlanner {
+
+    public static final String JOB_NAME = "doseLogPlan";
+
+    private static final int ROWS_PER_INSERT = 500;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO dose_logs (medication_id, status, scheduled_time, created_at, updated_at) VALUES ";
+    private static final String INSERT_ROW = "(?, 'PENDING', ?, ?, ?)";
+    // No conflict target: the (medication_id, scheduled_time) index is the only one a new row can hit,
+    // and the bare form also runs on H2 in PostgreSQL mode
+    private static final String ON_CONFLICT_SQL = " ON CONFLICT DO NOTHING";
+
+    private static final String INSERTED_SQL =
+            "SELECT medication_id, scheduled_time FROM dose_logs WHERE created_at = ? AND medication_id IN (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReminderRepository reminderRepository;
+    private final ReminderScheduleCompiler scheduleCompiler;
+    private final UserTimeZones userTimeZones;
+    private final ChunkedJobRunner jobRunner;
+    private final AdherenceRollupService adherenceRollups;
+
+    @Value("${app.dose-plan.horizon-hours:24}")
+    private int horizonHours;
+
+    // Metrics
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong dosesCreated = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+
+    /**
+     * A dose to materialize; scheduledTime is the wall-clock time in the user's zone.
+     */
+    public record PlannedDose(Long userId, Long medicationId, LocalDateTime scheduledTime) {}
+
+    /**
+     * Plan the horizon for every active reminder, one chunk of reminders (by id) per transaction and
+     * insert (see ChunkedJobRunner). Returns the number of dose logs created.
+     */
+    public int planAhead() {
+        // Earliest "today" of any zone; nextDose applies each medication's end date exactly
+        LocalDate today = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+
+        int[] created = {0};
+        ChunkedJobRunner.RunResult result = jobRunner.run(JOB_NAME, 0,
+                (checkpoint, chunkSize) -> reminderRepository.findActiveWithMedicationAfter(today,
+                        checkpoint != null ? Long.parseLong(checkpoint) : 0L, PageRequest.of(0, chunkSize)),
+                reminders -> {
+                    created[0] += plan(reminders, userTimeZones.zonesOf(reminders.stream()
+                            .map(r -> r.getMedication().getUser().getId())
+                            .collect(Collectors.toSet())));
+                    return String.valueOf(reminders.get(reminders.size() - 1).getId());
+                });
+
+        runs.incrementAndGet();
+        lastRunAt = LocalDateTime.now();
+        lastRunMillis = result.millis();
+        log.info("Dose plan: {} dose logs created for {} reminders over the next {} h in {} ms",
+                created[0], result.items(), horizonHours, result.millis());
+        return created[0];
+    }
+
+    /**
+     * Plan the horizon for the given reminders (medications loaded), with zones by user id.
+     * Reminders of medications that are not ACTIVE are skipped.
+     */
+    public int plan(Collection<Reminder> reminders, Map<Long, ZoneId> zonesByUser) {
+        long from = Math.floorDiv(Instant.now().getEpochSecond(), 60);
+        long until = from + horizonHours * 60L;
+
+        List<PlannedDose> doses = new ArrayList<>();
+        for (Reminder reminder : reminders) {
+            if (!Boolean.TRUE.equals(reminder.getIsActive())
+                    || reminder.getMedication().getStatus() != MedicationStatus.ACTIVE) {
+                continue;
+            }
+            ZoneId zone = zonesByUser.get(reminder.getMedication().getUser().getId());
+            long after = from;
+            ReminderScheduleCompiler.Occurrence dose;
+            while ((dose = scheduleCompiler.nextDose(reminder, zone, after)) != null && dose.epochMinute() <= until) {
+                doses.add(new PlannedDose(reminder.getMedication().getUser().getId(), reminder.getMedication().getId(),
+                        dose.doseTime()));
+                after = dose.epochMinute();
+            }
+        }
+        return materialize(doses);
+    }
+
+    /**
+     * Insert PENDING dose logs, skipping any that already exist, and count them in the adherence
+     * rollups. Runs in the caller's transaction if there is one. Returns the number of rows created.
+     */
+    public int materialize(Collection<PlannedDose> doses) {
+        if (doses.isEmpty()) {
+            return 0;
+        }
+        // Also tells this insert's rows apart from existing ones
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<PlannedDose> all = new ArrayList<>(doses);
+        AdherenceRollupService.Deltas deltas = new AdherenceRollupService.Deltas();
+        int created = 0;
+        for (int start = 0; start < all.size(); start += ROWS_PER_INSERT) {
+            List<PlannedDose> chunk = all.subList(start, Math.min(start + ROWS_PER_INSERT, all.size()));
+            StringBuilder sql = new StringBuilder(INSERT_SQL);
+            Object[] args = new Object[chunk.size() * 4];
+            int i = 0;
+            for (PlannedDose dose : chunk) {
+                sql.append(i == 0 ? "" : ", ").append(INSERT_ROW);
+                args[i++] = dose.medicationId();
+                args[i++] = dose.scheduledTime();
+                args[i++] = now;
+                args[i++] = now;
+            }
+            sql.append(ON_CONFLICT_SQL);
+            int inserted = jdbcTemplate.update(sql.toString(), args);
+            if (inserted > 0) {
+                for (PlannedDose dose : inserted == chunk.size() ? chunk : insertedOf(chunk, now)) {
+                    deltas.add(dose.userId(), dose.medicationId(), dose.scheduledTime(), null, DoseStatus.PENDING);
+                }
+            }
+            created += inserted;
+        }
+        adherenceRollups.apply(deltas);
+        dosesCreated.addAndGet(created);
+        log.debug("Materialized {} of {} planned doses", created, all.size());
+        return created;
+    }
+
+    // The doses of a chunk that were inserted with the given created_at, when some already existed
+    private List<PlannedDose> insertedOf(List<PlannedDose> chunk, LocalDateTime createdAt) {
+        Object[] args = new Object[chunk.size() + 1];
+        args[0] = createdAt;
+        for (int i = 0; i < chunk.size(); i++) {
+            args[i + 1] = chunk.get(i).medicationId();
+        }
+        Set<PlannedDose> inserted = new HashSet<>(jdbcTemplate.query(
+                String.format(INSERTED_SQL, String.join(", ", Collections.nCopies(chunk.size(), "?"))),
+                (rs, rowNum) -> new PlannedDose(null, rs.getLong(1), rs.getTimestamp(2).toLocalDateTime()), args));
+        return chunk.stream()
+                .filter(dose -> inserted.contains(new PlannedDose(null, dose.medicationId(), dose.scheduledTime())))
+                .collect(Collectors.toList());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("horizonHours", horizonHours);
+        stats.put("runs", runs.get());
+        stats.put("dosesCreated", dosesCreated.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        return stats;
+    }
+}
@@ -35,6 +35,8 @@ public class DoseLogService {
     private final DoseLogRepository doseLogRepository;
     private final MedicationRepository medicationRepository;
     private final CurrentUser currentUser;
+    private final UserTimeZones userTimeZones;
+    private final AdherenceRollupService adherenceRollups;
     
     @Transactional(readOnly = true)
     public List<DoseLogResponse> getTodaysDoses() {
@@ -43,7 +45,10 @@ public class DoseLogService {
             throw new ResourceNotFoundException("User not found");
         }
         
-        return doseLogRepository.findTodaysDosesByUserId(user.getId()).stream()
+        // Scheduled times are wall-clock times in the user's zone, so "today" is the user's today
+        LocalDate today = userTimeZones.now(user.getId()).toLocalDate();
+        return doseLogRepository.findByUserIdAndDateRange(user.getId(), today.atStartOfDay(), today.atTime(LocalTime.MAX))
+                .stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
@@ -85,18 +90,25 @@ public class DoseLogService {
             throw new AccessDeniedException("You don't have permission to log doses for this medication");
         }
         
-        DoseLog doseLog = DoseLog.builder()
-                .medication(medication)
-                .scheduledTime(request.getScheduledTime())
-                .takenTime(request.getTakenTime() != null ? request.getTakenTime() : LocalDateTime.now())
-                .status(request.getStatus())
-                .notes(request.getNotes())
-                .build();
+        // A planned dose already has its row (unique per medication and time); log onto it
+        DoseLog doseLog = doseLogRepository
+                .findByMedicationIdAndScheduledTime(medication.getId(), request.getScheduledTime())
+                .orElseGet(() -> DoseLog.builder()
+                        .medication(medication)
+                        .scheduledTime(request.getScheduledTime())
+                        .build());
+        DoseStatus previousStatus = doseLog.getStatus();
+        boolean alreadyTaken = previousStatus == DoseStatus.TAKEN;
+        doseLog.setTakenTime(request.getTakenTime() != null ? request.getTakenTime() : userTimeZones.now(user.getId()));
+        doseLog.setStatus(request.getStatus());
+        doseLog.setNotes(request.getNotes());
         
         doseLog = doseLogRepository.save(doseLog);
+        adherenceRollups.recordChange(user.getId(), medication.getId(), doseLog.getScheduledTime(),
+                previousStatus, doseLog.getStatus());
         
         // Update medication inventory if dose was taken (using quantityPerDose)
-        if (request.getStatus() == DoseStatus.TAKEN) {
+        if (request.getStatus() == DoseStatus.TAKEN && !alreadyTaken) {
             int quantityPerDose = medication.getQuantityPerDose() != null ? medication.getQuantityPerDose() : 1;
             if (medication.getInventory() >= quantityPerDose) {
                 medication.setInventory(medication.getInventory() - quantityPerDose);
@@ -113,6 +125,7 @@ public class DoseLogService {
     @Transactional
     public DoseLogResponse updateDoseLog(Long id, DoseLogRequest request) {
         DoseLog doseLog = getDoseLogAndVerifyOwnership(id);
+        DoseStatus previousStatus = doseLog.getStatus();
         
         if (request.getTakenTime() != null) {
             doseLog.setTakenTime(request.getTakenTime());
@@ -125,6 +138,7 @@ public class DoseLogService {
         }
         
         doseLog = doseLogRepository.save(doseLog);
+        recordStatusChange(doseLog, previousStatus);
         
         log.info("Dose log updated: {}", id);
         
@@ -134,8 +148,9 @@ public class DoseLogService {
     @Transactional
     public DoseLogResponse markDoseTaken(Long id) {
         DoseLog doseLog = getDoseLogAndVerifyOwnership(id);
+        DoseStatus previousStatus = doseLog.getStatus();
         doseLog.setStatus(DoseStatus.TAKEN);
-        doseLog.setTakenTime(LocalDateTime.now());
+        doseLog.setTakenTime(userTimeZones.now(doseLog.getMedication().getUser().getId()));
         
         // Update medication inventory using quantityPerDose
         Medication medication = doseLog.getMedication();
@@ -148,6 +163,7 @@ public class DoseLogService {
         }
         
         doseLog = doseLogRepository.save(doseLog);
+        recordStatusChange(doseLog, previousStatus);
         
         log.info("Dose marked as taken for medication: {}", medication.getName());
         
@@ -157,10 +173,12 @@ public class DoseLogService {
     @Transactional
     public DoseLogResponse markDoseSkipped(Long id, String reason) {
         DoseLog doseLog = getDoseLogAndVerifyOwnership(id);
+        DoseStatus previousStatus = doseLog.getStatus();
         doseLog.setStatus(DoseStatus.SKIPPED);
         doseLog.setNotes(reason);
         
         doseLog = doseLogRepository.save(doseLog);
+        recordStatusChange(doseLog, previousStatus);
         
         log.info("Dose marked as skipped for medication: {}", doseLog.getMedication().getName());
         
@@ -170,37 +188,33 @@ public class DoseLogService {
     @Transactional
     public DoseLogResponse markDoseMissed(Long id) {
         DoseLog doseLog = getDoseLogAndVerifyOwnership(id);
+        DoseStatus previousStatus = doseLog.getStatus();
         doseLog.setStatus(DoseStatus.MISSED);
         
         doseLog = doseLogRepository.save(doseLog);
+        recordStatusChange(doseLog, previousStatus);
         
         log.info("Dose marked as missed for medication: {}", doseLog.getMedication().getName());
         
         return mapToResponse(doseLog);
     }
     
+    /**
+     * Share of the medication's settled doses (taken, skipped or missed) in the range that were taken,
+     * from the adherence rollups.
+     */
     @Transactional(readOnly = true)
     public long getAdherencePercentage(Long medicationId, LocalDate startDate, LocalDate endDate) {
         verifyMedicationOwnership(medicationId);
         
-        User user = currentUser.getUser();
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(LocalTime.MAX);
-        
-        long totalDoses = doseLogRepository.countByUserIdAndDateRangeAndStatus(
-                user.getId(), start, end, DoseStatus.TAKEN);
-        long missedDoses = doseLogRepository.countByUserIdAndDateRangeAndStatus(
-                user.getId(), start, end, DoseStatus.MISSED);
-        long skippedDoses = doseLogRepository.countByUserIdAndDateRangeAndStatus(
-                user.getId(), start, end, DoseStatus.SKIPPED);
-        
-        long totalScheduled = totalDoses + missedDoses + skippedDoses;
+        AdherenceRollupService.Totals totals = adherenceRollups.totalsForMedication(medicationId, startDate, endDate);
+        long totalScheduled = totals.taken() + totals.missed() + totals.skipped();
         
         if (totalScheduled == 0) {
             return 100;
         }
         
-        return (totalDoses * 100) / totalScheduled;
+        return (totals.taken() * 100) / totalScheduled;
     }
 
     // ==================== Doctor Portal Methods ====================
@@ -215,27 +229,22 @@ public class DoseLogService {
                 .collect(Collectors.toList());
     }
 
+    // One sum over the patient's rollup rows in the range
     @Transactional(readOnly = true)
     public Map<String, Object> getAdherenceStatsForPatient(Long patientId, LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(LocalTime.MAX);
-        
-        List<DoseLog> doseLogs = doseLogRepository.findByUserIdAndDateRange(patientId, start, end);
-        
-        long total = doseLogs.size();
-        long taken = doseLogs.stream().filter(d -> d.getStatus() == DoseStatus.TAKEN).count();
-        long skipped = doseLogs.stream().filter(d -> d.getStatus() == DoseStatus.SKIPPED).count();
-        long missed = doseLogs.stream().filter(d -> d.getStatus() == DoseStatus.MISSED).count();
-        long pending = doseLogs.stream().filter(d -> d.getStatus() == DoseStatus.PENDING).count();
+        AdherenceRollupService.Totals totals = adherenceRollups.totalsForUser(patientId, startDate, endDate);
         
-        double adherencePercentage = total > 0 ? (taken * 100.0) / total : 100.0;
+        long total = totals.total();
+        // Pending doses (planned up to a day ahead) are not due yet and do not count against the patient
+        long settled = totals.taken() + totals.missed() + totals.skipped();
+        double adherencePercentage = settled > 0 ? (totals.taken() * 100.0) / settled : 100.0;
         
         Map<String, Object> stats = new HashMap<>();
         stats.put("total", total);
-        stats.put("taken", taken);
-        stats.put("skipped", skipped);
-        stats.put("missed", missed);
-        stats.put("pending", pending);
+        stats.put("taken", totals.taken());
+        stats.put("skipped", totals.skipped());
+        stats.put("missed", totals.missed());
+        stats.put("pending", totals.pending());
         stats.put("adherencePercentage", Math.round(adherencePercentage * 100.0) / 100.0);
         stats.put("startDate", startDate.toString());
         stats.put("endDate", endDate.toString());
@@ -243,6 +252,12 @@ public class DoseLogService {
         return stats;
     }
     
+    private void recordStatusChange(DoseLog doseLog, DoseStatus previousStatus) {
+        Medication medication = doseLog.getMedication();
+        adherenceRollups.recordChange(medication.getUser().getId(), medication.getId(), doseLog.getScheduledTime(),
+                previousStatus, doseLog.getStatus());
+    }
+    
     private DoseLog getDoseLogAndVerifyOwnership(Long id) {
         User user = currentUser.getUser();
         if (user == null) {
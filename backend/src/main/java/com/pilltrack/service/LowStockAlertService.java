@@ -0,0 +1,87 @@
+package com.pilltrack.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Daily low stock alerts for patients' medications.
+ * Reads active medications at or below app.low-stock-threshold-days of supply from the
+ * days_of_supply index, in chunks by id, and notifies each chunk in one batch. A medication is
+ * alerted once (low_stock_alerted_at) until its supply goes up again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LowStockAlertService {
+    
+    public static final String JOB_NAME = "lowStockAlert";
+    
+    // Rows saved before days_of_supply existed
+    private static final String BACKFILL_SQL =
+            "UPDATE medications SET days_of_supply = inventory / (frequency * quantity_per_dose) " +
+            "WHERE days_of_supply IS NULL AND frequency > 0 AND quantity_per_dose > 0 AND MOD(user_id, ?) = ?";
+    
+    private static final String LOW_STOCK_SQL =
+            "SELECT id, user_id, name, inventory FROM medications " +
+            "WHERE days_of_supply <= ? AND status = 'ACTIVE' AND low_stock_alerted_at IS NULL " +
+            "AND MOD(user_id, ?) = ? AND id > ? " +
+            "ORDER BY id LIMIT ?";
+    
+    private static final String MARK_ALERTED_SQL = "UPDATE medications SET low_stock_alerted_at = ? WHERE id IN (%s)";
+    
+    private record LowStock(Long medicationId, Long userId, String name, int inventory) {}
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NotificationService notificationService;
+    private final ShardLeaseManager shardLeases;
+    private final ChunkedJobRunner jobRunner;
+    
+    @Value("${app.low-stock-threshold-days:7}")
+    private int thresholdDays;
+    
+    /**
+     * Alert every medication of the users in a shard that has newly run low. Chunks are read by id
+     * after the checkpoint and each is notified and marked in its own transaction (see ChunkedJobRunner).
+     * Returns the number of alerts sent.
+     */
+    public int sendLowStockAlerts(int shard) {
+        int shards = shardLeases.shardCount();
+        int backfilled = jdbcTemplate.update(BACKFILL_SQL, shards, shard);
+        if (backfilled > 0) {
+            log.info("Computed days of supply for {} medications", backfilled);
+        }
+        
+        ChunkedJobRunner.RunResult result = jobRunner.run(JOB_NAME, shard,
+                (checkpoint, chunkSize) -> jdbcTemplate.query(LOW_STOCK_SQL,
+                        (rs, rowNum) -> new LowStock(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getInt(4)),
+                        thresholdDays, shards, shard, checkpoint != null ? Long.parseLong(checkpoint) : 0L, chunkSize),
+                this::alert);
+        
+        log.info("Shard {}: low stock alert run sent {} alerts in {} chunks (threshold {} days) in {} ms",
+                shard, result.items(), result.chunks(), thresholdDays, result.millis());
+        return (int) result.items();
+    }
+    
+    // Notifications and the alerted stamps commit together; returns the last medication id
+    private String alert(List<LowStock> chunk) {
+        List<NotificationService.NotificationDraft> drafts = new ArrayList<>(chunk.size());
+        Object[] args = new Object[chunk.size() + 1];
+        args[0] = LocalDateTime.now();
+        for (int i = 0; i < chunk.size(); i++) {
+            LowStock medication = chunk.get(i);
+            drafts.add(notificationService.lowStockAlert(medication.userId(), medication.name(), medication.inventory()));
+            args[i + 1] = medication.medicationId();
+        }
+        notificationService.createNotifications(drafts);
+        jdbcTemplate.update(String.format(MARK_ALERTED_SQL, String.join(", ", Collections.nCopies(chunk.size(), "?"))), args);
+        return String.valueOf(chunk.get(chunk.size() - 1).medicationId());
+    }
+}
@@ -7,6 +7,7 @@ import com.pilltrack.exception.AccessDeniedException;
 import com.pilltrack.exception.ResourceNotFoundException;
 import com.pilltrack.model.entity.Doctor;
 import com.pilltrack.model.entity.Medication;
+import com.pilltrack.model.entity.Reminder;
 import com.pilltrack.model.entity.User;
 import com.pilltrack.model.enums.MedicationStatus;
 import com.pilltrack.model.enums.NotificationType;
@@ -17,6 +18,7 @@ import com.pilltrack.repository.UserRepository;
 import com.pilltrack.security.CurrentUser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -39,6 +41,9 @@ public class MedicationService {
     private final UserRepository userRepository;
     private final NotificationService notificationService;
     
+    @Value("${app.low-stock-threshold-days:7}")
+    private int lowStockThresholdDays;
+    
     @Transactional(readOnly = true)
     public List<MedicationResponse> getCurrentUserMedications() {
         User user = currentUser.getUser();
@@ -75,7 +80,7 @@ public class MedicationService {
             throw new ResourceNotFoundException("User not found");
         }
         
-        return medicationRepository.findLowStockByUserId(user.getId()).stream()
+        return medicationRepository.findLowStockByUserId(user.getId(), lowStockThresholdDays).stream()
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
@@ -113,8 +118,10 @@ public class MedicationService {
         // Create reminders if reminder times are provided
         if (request.getReminderTimes() != null && !request.getReminderTimes().isEmpty()) {
             reminderService.createRemindersForMedication(
-                    medication, 
+                    medication,
+                    request.getReminderType(),
                     request.getReminderTimes(),
+                    request.getReminderIntervalMinutes(),
                     request.getReminderMinutesBefore()
             );
         }
@@ -165,10 +172,14 @@ public class MedicationService {
         // Update reminders if provided
         if (request.getReminderTimes() != null) {
             reminderService.updateRemindersForMedication(
-                    medication, 
+                    medication,
+                    request.getReminderType(),
                     request.getReminderTimes(),
+                    request.getReminderIntervalMinutes(),
                     request.getReminderMinutesBefore()
             );
+        } else if (request.getStartDate() != null || request.getEndDate() != null) {
+            reminderService.rescheduleRemindersForMedication(medication);
         }
         
         medication = medicationRepository.save(medication);
@@ -195,6 +206,7 @@ public class MedicationService {
         Medication medication = getMedicationAndVerifyOwnership(id);
         medication.setStatus(status);
         medication = medicationRepository.save(medication);
+        reminderService.rescheduleRemindersForMedication(medication);
         
         log.info("Medication status updated: {} -> {}", medication.getName(), status);
         
@@ -249,7 +261,9 @@ public class MedicationService {
         if (request.getReminderTimes() != null && !request.getReminderTimes().isEmpty()) {
             reminderService.createRemindersForMedication(
                     medication,
+                    request.getReminderType(),
                     request.getReminderTimes(),
+                    request.getReminderIntervalMinutes(),
                     request.getReminderMinutesBefore()
             );
         }
@@ -305,9 +319,13 @@ public class MedicationService {
         if (request.getReminderTimes() != null) {
             reminderService.updateRemindersForMedication(
                     medication,
+                    request.getReminderType(),
                     request.getReminderTimes(),
+                    request.getReminderIntervalMinutes(),
                     request.getReminderMinutesBefore()
             );
+        } else if (request.getStartDate() != null || request.getEndDate() != null) {
+            reminderService.rescheduleRemindersForMedication(medication);
         }
 
         medication = medicationRepository.save(medication);
@@ -375,14 +393,15 @@ public class MedicationService {
     }
     
     private MedicationResponse mapToResponse(Medication medication) {
-        List<String> reminderTimes = medication.getReminders().stream()
+        List<Reminder> activeReminders = medication.getReminders().stream()
                 .filter(r -> r.getIsActive())
-                .map(r -> r.getScheduleInfo())
-                .filter(java.util.Objects::nonNull)
                 .collect(Collectors.toList());
+        List<String> reminderTimes = activeReminders.stream()
+                .flatMap(r -> ReminderScheduleCompiler.splitRules(r.getScheduleInfo()).stream())
+                .collect(Collectors.toList());
+        Reminder firstReminder = activeReminders.isEmpty() ? null : activeReminders.get(0);
         
-        // Calculate isLowStock with default threshold of 7 days
-        boolean isLowStock = medication.isLowStock(7);
+        boolean isLowStock = medication.isLowStock(lowStockThresholdDays);
         
         // Get reminder minutes before from first active reminder or from entity
         Integer reminderMinutes = medication.getReminderMinutesBefore();
@@ -408,13 +427,16 @@ public class MedicationService {
                 .startDate(medication.getStartDate())
                 .endDate(medication.getEndDate())
                 .currentQuantity(medication.getInventory())
-                .refillThreshold(7) // Default threshold
+                .refillThreshold(lowStockThresholdDays)
                 .isLowStock(isLowStock)
                 .status(medication.getStatus())
                 .notes(null) // Entity doesn't have notes
                 .imageUrl(medication.getImageUrl())
                 .isActive(medication.getStatus() == MedicationStatus.ACTIVE)
                 .reminderTimes(reminderTimes)
+                .reminderType(firstReminder != null ? firstReminder.getReminderType() : null)
+                .reminderIntervalMinutes(firstReminder != null && firstReminder.getIntervalSeconds() != null
+                        ? firstReminder.getIntervalSeconds() / 60 : null)
                 .reminderMinutesBefore(reminderMinutes)
                 .quantityPerDose(medication.getQuantityPerDose() != null ? medication.getQuantityPerDose() : 1)
                 .createdAt(medication.getCreatedAt())
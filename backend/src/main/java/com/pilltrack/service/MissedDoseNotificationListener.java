@@ -0,0 +1,53 @@
+package com.pilltrack.service;
+
+import com.pilltrack.event.DosesMissedEvent;
+import com.pilltrack.event.DosesMissedEvent.MissedDose;
+import com.pilltrack.repository.DoctorPatientRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MissedDoseNotificationListener {
+    
+    private final NotificationService notificationService;
+    private final DoctorPatientRepository doctorPatientRepository;
+    
+    // Patients and their active doctors are told about a chunk of missed doses in one batch
+    @Async("notificationExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDosesMissed(DosesMissedEvent event) {
+        try {
+            Map<Long, List<Long>> doctorsByPatient = new HashMap<>();
+            List<Long> patientIds = event.getDoses().stream()
+                    .map(MissedDose::userId)
+                    .distinct()
+                    .collect(Collectors.toList());
+            for (Object[] row : doctorPatientRepository.findActiveDoctorUserIdsByPatientIdIn(patientIds)) {
+                doctorsByPatient.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((Long) row[1]);
+            }
+            
+            List<NotificationService.NotificationDraft> drafts = new ArrayList<>();
+            for (MissedDose dose : event.getDoses()) {
+                drafts.add(notificationService.doseMissed(dose.userId(), dose.medicationName(), dose.scheduledTime()));
+                for (Long doctorUserId : doctorsByPatient.getOrDefault(dose.userId(), List.of())) {
+                    drafts.add(notificationService.patientDoseMissed(doctorUserId, dose.userName(),
+                            dose.medicationName(), dose.scheduledTime()));
+                }
+            }
+            notificationService.createNotifications(drafts);
+        } catch (Exception e) {
+            log.error("Failed to notify about {} missed doses", event.getDoses().size(), e);
+        }
+    }
+}
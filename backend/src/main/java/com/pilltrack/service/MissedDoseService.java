@@ -0,0 +1,170 @@
+package com.pilltrack.service;
+
+import com.pilltrack.event.DosesMissedEvent;
+import com.pilltrack.event.DosesMissedEvent.MissedDose;
+import com.pilltrack.model.enums.DoseStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Marks pending doses more than GRACE_HOURS past their scheduled time as MISSED.
+ * Scheduled times are wall-clock times in each user's zone, so users are grouped by the cutoff of
+ * their zone (one group per distinct cutoff, usually a handful) and each group is marked with
+ * chunked set-based statements over the (status, scheduled_time) index. Each marked chunk is
+ * published as a DosesMissedEvent once it commits.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MissedDoseService {
+    
+    public static final String JOB_NAME = "missedDose";
+    
+    private static final long GRACE_HOURS = 6;
+    
+    private static final String CANDIDATES_SQL =
+            "SELECT d.id, d.medication_id, m.name, m.user_id, u.name, d.scheduled_time FROM dose_logs d " +
+            "JOIN medications m ON m.id = d.medication_id JOIN users u ON u.id = m.user_id " +
+            "LEFT JOIN user_preferences p ON p.user_id = m.user_id " +
+            "WHERE d.status = 'PENDING' AND d.scheduled_time <= ? AND MOD(m.user_id, ?) = ? AND (%s) " +
+            "ORDER BY d.scheduled_time LIMIT ?";
+    
+    private static final String MARK_SQL =
+            "UPDATE dose_logs SET status = 'MISSED', updated_at = ? WHERE status = 'PENDING' AND id IN (%s)";
+    
+    private static final String MARKED_SQL = "SELECT id FROM dose_logs WHERE updated_at = ? AND id IN (%s)";
+    
+    private static final RowMapper<MissedDose> MISSED_DOSE_MAPPER = (rs, rowNum) -> new MissedDose(
+            rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getLong(4), rs.getString(5),
+            rs.getTimestamp(6).toLocalDateTime());
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final UserTimeZones userTimeZones;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardLeaseManager shardLeases;
+    private final ChunkedJobRunner jobRunner;
+    private final AdherenceRollupService adherenceRollups;
+    
+    /**
+     * Mark every overdue pending dose of the users in a shard as missed, one timezone group after the
+     * other. Each chunk is marked and published in its own transaction (see ChunkedJobRunner); marked
+     * doses leave PENDING, so a resumed run simply reads the doses still pending.
+     * Returns the number of doses marked.
+     */
+    public int markMissedDoses(int shard) {
+        Instant now = Instant.now();
+        
+        // Stored timezone values by the cutoff of the zone they resolve to
+        Map<LocalDateTime, Set<String>> timezonesByCutoff = new TreeMap<>();
+        userTimeZones.zonesInUse().forEach((timezone, zone) ->
+                timezonesByCutoff.computeIfAbsent(cutoff(now, zone), k -> new HashSet<>()).add(timezone));
+        // Users without a timezone fall back to the default zone
+        LocalDateTime defaultCutoff = cutoff(now, userTimeZones.defaultZone());
+        timezonesByCutoff.computeIfAbsent(defaultCutoff, k -> new HashSet<>());
+        
+        List<GroupQuery> groups = timezonesByCutoff.entrySet().stream()
+                .map(group -> groupQuery(shard, group.getKey(), group.getValue(), group.getKey().equals(defaultCutoff)))
+                .collect(Collectors.toList());
+        int[] group = {0};
+        int[] marked = {0};
+        ChunkedJobRunner.RunResult result = jobRunner.run(JOB_NAME, shard,
+                (checkpoint, chunkSize) -> {
+                    // Groups in cutoff order; a group is done once it has nothing pending left
+                    for (; group[0] < groups.size(); group[0]++) {
+                        List<MissedDose> chunk = groups.get(group[0]).read(jdbcTemplate, chunkSize);
+                        if (!chunk.isEmpty()) {
+                            return chunk;
+                        }
+                    }
+                    return List.of();
+                },
+                chunk -> {
+                    List<MissedDose> missed = markChunk(chunk);
+                    if (!missed.isEmpty()) {
+                        AdherenceRollupService.Deltas deltas = new AdherenceRollupService.Deltas();
+                        missed.forEach(dose -> deltas.add(dose.userId(), dose.medicationId(), dose.scheduledTime(),
+                                DoseStatus.PENDING, DoseStatus.MISSED));
+                        adherenceRollups.apply(deltas);
+                        // Listeners run after the chunk commits
+                        eventPublisher.publishEvent(new DosesMissedEvent(missed));
+                        marked[0] += missed.size();
+                    }
+                    return chunk.get(chunk.size() - 1).scheduledTime().toString();
+                });
+        
+        log.info("Shard {}: marked {} doses as missed across {} timezone groups in {} chunks in {} ms",
+                shard, marked[0], groups.size(), result.chunks(), result.millis());
+        return marked[0];
+    }
+    
+    // Candidate query of one timezone group, without the chunk size argument
+    private record GroupQuery(String sql, List<Object> args) {
+        
+        private List<MissedDose> read(JdbcTemplate jdbcTemplate, int chunkSize) {
+            List<Object> withLimit = new ArrayList<>(args);
+            withLimit.add(chunkSize);
+            return jdbcTemplate.query(sql, MISSED_DOSE_MAPPER, withLimit.toArray());
+        }
+    }
+    
+    private GroupQuery groupQuery(int shard, LocalDateTime cutoff, Collection<String> timezones, boolean withoutTimezone) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        args.add(cutoff);
+        args.add(shardLeases.shardCount());
+        args.add(shard);
+        if (!timezones.isEmpty()) {
+            conditions.add("p.timezone IN (" + placeholders(timezones.size()) + ")");
+            args.addAll(timezones);
+        }
+        if (withoutTimezone) {
+            conditions.add("p.timezone IS NULL");
+        }
+        return new GroupQuery(String.format(CANDIDATES_SQL, String.join(" OR ", conditions)), args);
+    }
+    
+    // One UPDATE for the chunk; rows logged in the meantime stay as they are and are left out
+    private List<MissedDose> markChunk(List<MissedDose> chunk) {
+        LocalDateTime stamp = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        Object[] args = new Object[chunk.size() + 1];
+        args[0] = stamp;
+        for (int i = 0; i < chunk.size(); i++) {
+            args[i + 1] = chunk.get(i).doseLogId();
+        }
+        String ids = placeholders(chunk.size());
+        int updated = jdbcTemplate.update(String.format(MARK_SQL, ids), args);
+        if (updated == chunk.size()) {
+            return chunk;
+        }
+        Set<Long> marked = new HashSet<>(jdbcTemplate.queryForList(String.format(MARKED_SQL, ids), Long.class, args));
+        return chunk.stream()
+                .filter(dose -> marked.contains(dose.doseLogId()))
+                .collect(Collectors.toList());
+    }
+    
+    private static LocalDateTime cutoff(Instant now, ZoneId zone) {
+        return LocalDateTime.ofInstant(now, zone).minusHours(GRACE_HOURS).truncatedTo(ChronoUnit.MINUTES);
+    }
+    
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -2,9 +2,11 @@ package com.pilltrack.service;
 
 import com.pilltrack.dto.response.NotificationResponse;
 import com.pilltrack.dto.response.PageResponse;
+import com.pilltrack.event.ShopStockLevelEvent;
 import com.pilltrack.exception.AccessDeniedException;
 import com.pilltrack.exception.ResourceNotFoundException;
 import com.pilltrack.model.entity.Notification;
+import com.pilltrack.model.entity.ShopMedicineBatch;
 import com.pilltrack.model.entity.User;
 import com.pilltrack.model.enums.NotificationType;
 import com.pilltrack.repository.NotificationRepository;
@@ -14,9 +16,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -29,6 +33,15 @@ public class NotificationService {
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final CurrentUser currentUser;
+    private final JdbcTemplate jdbcTemplate;
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO notifications (user_id, type, title, message, action_url, is_read, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, false, ?)";
+    
+    // A notification to insert in bulk, without loading its user
+    public record NotificationDraft(Long userId, NotificationType type, String title, String message, String actionUrl) {
+    }
     
     @Transactional(readOnly = true)
     public List<NotificationResponse> getCurrentUserNotifications() {
@@ -170,8 +183,13 @@ public class NotificationService {
     }
     
     public void sendMedicationReminder(User user, String medicationName, String dosage, java.time.LocalTime time) {
-        createNotification(
-                user.getId(),
+        NotificationDraft draft = medicationReminder(user.getId(), medicationName, dosage, time);
+        createNotification(draft.userId(), draft.type(), draft.title(), draft.message(), draft.actionUrl());
+    }
+    
+    public NotificationDraft medicationReminder(Long userId, String medicationName, String dosage, java.time.LocalTime time) {
+        return new NotificationDraft(
+                userId,
                 NotificationType.MEDICATION_REMINDER,
                 "Time for your medication",
                 String.format("Don't forget to take %s (%s) at %s", medicationName, dosage, time.toString()),
@@ -179,8 +197,35 @@ public class NotificationService {
         );
     }
     
+    // Existing types only: a new enum value would break the type check constraint on existing databases
+    public NotificationDraft doseMissed(Long userId, String medicationName, LocalDateTime scheduledTime) {
+        return new NotificationDraft(
+                userId,
+                NotificationType.MEDICATION_REMINDER,
+                "Missed dose",
+                String.format("You missed your %s dose scheduled for %s", medicationName, scheduledTime),
+                "/dashboard/medications"
+        );
+    }
+    
+    public NotificationDraft patientDoseMissed(Long doctorUserId, String patientName, String medicationName,
+                                               LocalDateTime scheduledTime) {
+        return new NotificationDraft(
+                doctorUserId,
+                NotificationType.SYSTEM_ALERT,
+                "Patient missed a dose",
+                String.format("%s missed their %s dose scheduled for %s", patientName, medicationName, scheduledTime),
+                "/doctor/patients"
+        );
+    }
+    
     public void sendLowStockAlert(Long userId, String medicationName, int currentQuantity) {
-        createNotification(
+        NotificationDraft draft = lowStockAlert(userId, medicationName, currentQuantity);
+        createNotification(draft.userId(), draft.type(), draft.title(), draft.message(), draft.actionUrl());
+    }
+    
+    public NotificationDraft lowStockAlert(Long userId, String medicationName, int currentQuantity) {
+        return new NotificationDraft(
                 userId,
                 NotificationType.LOW_STOCK,
                 "Low Stock Alert",
@@ -193,6 +238,38 @@ public class NotificationService {
         sendLowStockAlert(user.getId(), medicationName, currentQuantity);
     }
 
+    public void sendShopStockAlert(ShopStockLevelEvent event) {
+        boolean outOfStock = event.getLevel() == ShopStockLevelEvent.Level.OUT_OF_STOCK;
+        createNotification(
+                event.getShopOwnerId(),
+                NotificationType.LOW_STOCK,
+                outOfStock ? "Out of Stock" : "Low Stock Alert",
+                outOfStock
+                        ? String.format("%s is out of stock.", event.getMedicineName())
+                        : String.format("%s is running low. Only %d units left (alert level %d).",
+                                event.getMedicineName(), event.getStockQuantity(), event.getMinStockAlert()),
+                "/shop/dashboard"
+        );
+    }
+
+    public void sendShopExpiryAlert(Long ownerId, List<ShopMedicineBatch> batches) {
+        String items = batches.stream()
+                .limit(5)
+                .map(b -> String.format("%s (batch %s, expires %s)",
+                        b.getShopMedicine().getMedicine().getBrandName(),
+                        b.getBatchNumber() != null ? b.getBatchNumber() : "-",
+                        b.getExpiryDate()))
+                .collect(Collectors.joining(", "));
+        String more = batches.size() > 5 ? String.format(" and %d more", batches.size() - 5) : "";
+        createNotification(
+                ownerId,
+                NotificationType.SYSTEM_ALERT,
+                "Stock Expiring Soon",
+                String.format("%d batch(es) are nearing expiry: %s%s", batches.size(), items, more),
+                "/shop/dashboard"
+        );
+    }
+
     public void sendMedicationUpdateByDoctor(Long userId, String medicationName, String doctorName, boolean isNew) {
         String title = isNew ? "New medication added" : "Medication updated";
         String message = String.format("%s updated %s", doctorName, medicationName);
@@ -206,6 +283,11 @@ public class NotificationService {
     }
     
     public void sendOrderStatusUpdate(Long userId, String orderNumber, String status) {
+        NotificationDraft draft = orderStatusUpdate(userId, orderNumber, status);
+        createNotification(draft.userId(), draft.type(), draft.title(), draft.message(), draft.actionUrl());
+    }
+    
+    public NotificationDraft orderStatusUpdate(Long userId, String orderNumber, String status) {
         NotificationType type = switch (status.toUpperCase()) {
             case "CONFIRMED" -> NotificationType.ORDER_CONFIRMED;
             case "SHIPPED" -> NotificationType.ORDER_SHIPPED;
@@ -214,7 +296,7 @@ public class NotificationService {
             default -> NotificationType.ORDER_PLACED;
         };
         
-        createNotification(
+        return new NotificationDraft(
                 userId,
                 type,
                 "Order Update",
@@ -223,6 +305,22 @@ public class NotificationService {
         );
     }
     
+    /**
+     * Insert many notifications as one JDBC batch in the caller's transaction.
+     */
+    @Transactional
+    public void createNotifications(List<NotificationDraft> drafts) {
+        if (drafts.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = drafts.stream()
+                .map(d -> new Object[]{d.userId(), d.type().name(), d.title(), d.message(), d.actionUrl(), now})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+        log.info("Created {} notifications in one batch", drafts.size());
+    }
+    
     private NotificationResponse mapToResponse(Notification notification) {
         return NotificationResponse.builder()
                 .id(notification.getId())
@@ -0,0 +1,278 @@
+package com.pilltrack.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pilltrack.dto.response.OrderItemResponse;
+import com.pilltrack.dto.response.OrderResponse;
+import com.pilltrack.model.entity.ArchivedOrder;
+import com.pilltrack.model.entity.Order;
+import com.pilltrack.model.entity.OrderItem;
+import com.pilltrack.model.entity.Payment;
+import com.pilltrack.model.enums.OrderStatus;
+import com.pilltrack.repository.OrderHistoryRepository;
+import com.pilltrack.repository.OrderItemRepository;
+import com.pilltrack.repository.OrderRepository;
+import com.pilltrack.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Moves closed orders out of orders/order_items/payments into archived_orders.
+ * Orders that are DELIVERED, CANCELLED, REJECTED or REFUNDED and unchanged for
+ * app.order-archive.retain-months are paged in id order; each page is copied with one JDBC batch
+ * insert and deleted with three bulk deletes in the same transaction, so a failed page is simply
+ * retried on the next run.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderArchiveService {
+
+    private static final Set<OrderStatus> ARCHIVABLE_STATUSES = EnumSet.of(
+            OrderStatus.DELIVERED, OrderStatus.CANCELLED, OrderStatus.REJECTED, OrderStatus.REFUNDED);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO archived_orders (id, order_number, checkout_reference, user_id, shop_id, shop_name, " +
+            "status, subtotal, shipping_cost, discount, total, shipping_city, shipping_area, item_count, items, " +
+            "payment_status, payment_method, transaction_id, created_at, confirmed_at, delivered_at, " +
+            "cancelled_at, archived_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final PaymentRepository paymentRepository;
+    private final OrderHistoryRepository orderHistoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.order-archive.retain-months:12}")
+    private int retainMonths;
+
+    @Value("${app.order-archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.order-archive.max-per-run:50000}")
+    private int maxPerRun;
+
+    // Metrics
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong ordersArchived = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+
+    /**
+     * One archival pass. Returns the number of orders archived.
+     */
+    public int archive() {
+        long started = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime before = now.minusMonths(retainMonths);
+
+        int archived = 0;
+        long afterId = 0;
+        while (archived < maxPerRun) {
+            List<Long> ids = orderRepository.findArchivableIds(ARCHIVABLE_STATUSES, before, afterId,
+                    PageRequest.of(0, Math.min(batchSize, maxPerRun - archived)));
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+            Integer moved = transactionTemplate.execute(status -> archivePage(ids, now));
+            archived += moved != null ? moved : 0;
+        }
+        orderHistoryRepository.refreshArchiveHorizon();
+
+        long elapsed = System.currentTimeMillis() - started;
+        runs.incrementAndGet();
+        ordersArchived.addAndGet(archived);
+        lastRunAt = now;
+        lastRunMillis = elapsed;
+        log.info("Order archival moved {} orders closed before {} in {} ms", archived, before, elapsed);
+        return archived;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.get());
+        stats.put("ordersArchived", ordersArchived.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("archiveHorizon", orderHistoryRepository.getArchiveHorizon());
+        return stats;
+    }
+
+    /**
+     * Order response for an archived order, shaped like a live one.
+     */
+    public OrderResponse toResponse(ArchivedOrder archived) {
+        return OrderResponse.builder()
+                .id(archived.getId())
+                .orderNumber(archived.getOrderNumber())
+                .checkoutReference(archived.getCheckoutReference())
+                .userId(archived.getUserId())
+                .shopId(archived.getShopId())
+                .shopName(archived.getShopName())
+                .status(archived.getStatus())
+                .subtotal(archived.getSubtotal())
+                .shippingCost(archived.getShippingCost())
+                .discount(archived.getDiscount())
+                .total(archived.getTotal())
+                .shippingCity(archived.getShippingCity())
+                .shippingArea(archived.getShippingArea())
+                .items(readItems(archived))
+                .confirmedAt(archived.getConfirmedAt())
+                .deliveredAt(archived.getDeliveredAt())
+                .cancelledAt(archived.getCancelledAt())
+                .createdAt(archived.getCreatedAt())
+                .archived(true)
+                .build();
+    }
+
+    private int archivePage(List<Long> ids, LocalDateTime now) {
+        List<Order> orders = orderRepository.findAllWithItemsByIdIn(ids);
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        Map<String, Payment> paymentsByCheckout = new HashMap<>();
+        Map<Long, Payment> paymentsByOrder = loadPayments(orders, paymentsByCheckout);
+
+        Timestamp archivedAt = Timestamp.valueOf(now);
+        List<Object[]> rows = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            // A combined checkout payment hangs off one order but covers all of them
+            Payment payment = paymentsByOrder.get(order.getId());
+            if (payment == null && order.getCheckoutReference() != null) {
+                payment = paymentsByCheckout.get(order.getCheckoutReference());
+            }
+            rows.add(toRow(order, payment, archivedAt));
+        }
+
+        List<Long> orderIds = orders.stream().map(Order::getId).collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        paymentRepository.deleteAllByOrderIdIn(orderIds);
+        orderItemRepository.deleteAllByOrderIdIn(orderIds);
+        orderRepository.deleteAllByIdIn(orderIds);
+        return orders.size();
+    }
+
+    private Map<Long, Payment> loadPayments(List<Order> orders, Map<String, Payment> paymentsByCheckout) {
+        List<Long> orderIds = orders.stream().map(Order::getId).collect(Collectors.toList());
+        Map<Long, Payment> paymentsByOrder = paymentRepository.findAllWithOrderByOrderIdIn(orderIds).stream()
+                .collect(Collectors.toMap(p -> p.getOrder().getId(), p -> p));
+
+        Set<String> checkoutReferences = orders.stream()
+                .filter(o -> !paymentsByOrder.containsKey(o.getId()))
+                .map(Order::getCheckoutReference)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (!checkoutReferences.isEmpty()) {
+            for (Payment payment : paymentRepository.findAllWithOrderByCheckoutReferenceIn(checkoutReferences)) {
+                paymentsByCheckout.put(payment.getOrder().getCheckoutReference(), payment);
+            }
+        }
+        return paymentsByOrder;
+    }
+
+    private Object[] toRow(Order order, Payment payment, Timestamp archivedAt) {
+        return new Object[]{
+                order.getId(),
+                order.getOrderNumber(),
+                order.getCheckoutReference(),
+                order.getUser().getId(),
+                order.getShop().getId(),
+                order.getShop().getName(),
+                order.getStatus().name(),
+                order.getSubtotal(),
+                order.getShippingCost(),
+                order.getDiscount(),
+                order.getTotal(),
+                order.getShippingCity(),
+                order.getShippingArea(),
+                order.getItems().size(),
+                writeItems(order.getItems()),
+                payment != null ? payment.getStatus().name() : null,
+                payment != null ? payment.getPaymentMethod() : null,
+                payment != null ? payment.getTransactionId() : null,
+                timestamp(order.getCreatedAt()),
+                timestamp(order.getConfirmedAt()),
+                timestamp(order.getDeliveredAt()),
+                timestamp(order.getCancelledAt()),
+                archivedAt
+        };
+    }
+
+    private String writeItems(List<OrderItem> items) {
+        List<Map<String, Object>> lines = items.stream()
+                .map(item -> {
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("shopMedicineId", item.getShopMedicine().getId());
+                    line.put("medicineName", item.getMedicineName());
+                    line.put("medicineStrength", item.getMedicineStrength());
+                    line.put("medicineForm", item.getMedicineForm());
+                    line.put("manufacturerName", item.getManufacturerName());
+                    line.put("quantity", item.getQuantity());
+                    line.put("unitPrice", item.getUnitPrice());
+                    line.put("lineTotal", item.getLineTotal());
+                    return line;
+                })
+                .collect(Collectors.toList());
+        try {
+            return objectMapper.writeValueAsString(lines);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize order items", e);
+        }
+    }
+
+    private List<OrderItemResponse> readItems(ArchivedOrder archived) {
+        try {
+            // BigDecimal keeps the stored price scale
+            List<Map<String, Object>> lines = objectMapper.reader()
+                    .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                    .forType(new TypeReference<List<Map<String, Object>>>() {})
+                    .readValue(archived.getItems());
+            return lines.stream()
+                    .map(line -> OrderItemResponse.builder()
+                            .shopMedicineId(line.get("shopMedicineId") != null ?
+                                    ((Number) line.get("shopMedicineId")).longValue() : null)
+                            .medicineName((String) line.get("medicineName"))
+                            .medicineStrength((String) line.get("medicineStrength"))
+                            .medicineForm((String) line.get("medicineForm"))
+                            .manufacturerName((String) line.get("manufacturerName"))
+                            .quantity(((Number) line.get("quantity")).intValue())
+                            .unitPrice((BigDecimal) line.get("unitPrice"))
+                            .lineTotal((BigDecimal) line.get("lineTotal"))
+                            .build())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("Unreadable items of archived order {}", archived.getOrderNumber(), e);
+            return List.of();
+        }
+    }
+
+    private static Timestamp timestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+}
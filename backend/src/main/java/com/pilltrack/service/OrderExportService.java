@@ -0,0 +1,233 @@
+package com.pilltrack.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.pilltrack.exception.BadRequestException;
+import com.pilltrack.exception.ResourceNotFoundException;
+import com.pilltrack.model.entity.MedicineShop;
+import com.pilltrack.model.entity.User;
+import com.pilltrack.repository.MedicineShopRepository;
+import com.pilltrack.repository.OrderHistoryRepository;
+import com.pilltrack.security.CurrentUser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CSV export of orders (one row per order) and sales (one row per order line).
+ * Rows are read with forward-only JDBC cursors at a fixed fetch size and written straight to the
+ * response stream, so memory stays flat however long the range is. Archived orders in the range
+ * are written first, then live ones.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderExportService {
+
+    public enum ExportType {
+        ORDERS,
+        ITEMS
+    }
+
+    private static final String ORDER_HEADER = "order_number,checkout_reference,created_at,status,customer_email," +
+            "shop_id,shop_name,item_count,subtotal,discount,shipping_cost,total,shipping_city,shipping_area," +
+            "payment_status,payment_method,transaction_id";
+
+    private static final String ITEM_HEADER = "order_number,created_at,status,shop_id,shop_name,shop_medicine_id," +
+            "medicine_name,medicine_strength,medicine_form,manufacturer_name,quantity,unit_price,line_total";
+
+    private static final String LIVE_ORDERS_SQL =
+            "SELECT o.order_number, o.checkout_reference, o.created_at, o.status, u.email, o.shop_id, s.name, " +
+            "(SELECT COUNT(*) FROM order_items i WHERE i.order_id = o.id), o.subtotal, o.discount, o.shipping_cost, " +
+            "o.total, o.shipping_city, o.shipping_area, p.status, p.payment_method, p.transaction_id " +
+            "FROM orders o JOIN users u ON u.id = o.user_id JOIN medicine_shops s ON s.id = o.shop_id " +
+            "LEFT JOIN payments p ON p.order_id = o.id " +
+            "WHERE o.created_at BETWEEN ? AND ?%s ORDER BY o.created_at, o.id";
+
+    private static final String ARCHIVED_ORDERS_SQL =
+            "SELECT a.order_number, a.checkout_reference, a.created_at, a.status, u.email, a.shop_id, a.shop_name, " +
+            "a.item_count, a.subtotal, a.discount, a.shipping_cost, a.total, a.shipping_city, a.shipping_area, " +
+            "a.payment_status, a.payment_method, a.transaction_id " +
+            "FROM archived_orders a LEFT JOIN users u ON u.id = a.user_id " +
+            "WHERE a.created_at BETWEEN ? AND ?%s ORDER BY a.created_at, a.id";
+
+    private static final String LIVE_ITEMS_SQL =
+            "SELECT o.order_number, o.created_at, o.status, o.shop_id, s.name, i.shop_medicine_id, i.medicine_name, " +
+            "i.medicine_strength, i.medicine_form, i.manufacturer_name, i.quantity, i.unit_price, i.line_total " +
+            "FROM order_items i JOIN orders o ON o.id = i.order_id JOIN medicine_shops s ON s.id = o.shop_id " +
+            "WHERE o.created_at BETWEEN ? AND ?%s ORDER BY o.created_at, o.id, i.id";
+
+    private static final String ARCHIVED_ITEMS_SQL =
+            "SELECT a.order_number, a.created_at, a.status, a.shop_id, a.shop_name, a.items " +
+            "FROM archived_orders a " +
+            "WHERE a.created_at BETWEEN ? AND ?%s ORDER BY a.created_at, a.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final OrderHistoryRepository orderHistoryRepository;
+    private final MedicineShopRepository shopRepository;
+    private final CurrentUser currentUser;
+
+    @Value("${app.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * Shop of the current shop owner. Resolved on the request thread, before streaming starts.
+     */
+    public Long getCurrentShopId() {
+        User user = currentUser.getUser();
+        MedicineShop shop = shopRepository.findByOwnerId(user.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Shop", "owner", user.getEmail()));
+        return shop.getId();
+    }
+
+    /**
+     * Write the CSV for orders created in [start, end], optionally for one shop. Does not close the stream.
+     */
+    @Transactional(readOnly = true)
+    public long writeCsv(OutputStream out, ExportType type, LocalDateTime start, LocalDateTime end, Long shopId) {
+        if (end.isBefore(start)) {
+            throw new BadRequestException("End date must not be before start date");
+        }
+
+        long started = System.currentTimeMillis();
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        boolean archived = orderHistoryRepository.reachesArchive(start);
+        long[] rows = {0};
+        try {
+            if (type == ExportType.ORDERS) {
+                writer.write(ORDER_HEADER);
+                writer.write('\n');
+                if (archived) {
+                    stream(ARCHIVED_ORDERS_SQL, "a", start, end, shopId, rs -> rows[0] += writeRow(writer, rs, 17));
+                }
+                stream(LIVE_ORDERS_SQL, "o", start, end, shopId, rs -> rows[0] += writeRow(writer, rs, 17));
+            } else {
+                ObjectReader itemsReader = objectMapper.reader()
+                        .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                        .forType(new TypeReference<List<Map<String, Object>>>() {});
+                writer.write(ITEM_HEADER);
+                writer.write('\n');
+                if (archived) {
+                    stream(ARCHIVED_ITEMS_SQL, "a", start, end, shopId, rs -> rows[0] += writeArchivedItems(writer, rs, itemsReader));
+                }
+                stream(LIVE_ITEMS_SQL, "o", start, end, shopId, rs -> rows[0] += writeRow(writer, rs, 13));
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        log.info("Exported {} {} rows for {} to {} (shop {}) in {} ms",
+                rows[0], type, start, end, shopId, System.currentTimeMillis() - started);
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+
+    // sql has one %s for the optional shop filter on the given table alias
+    private void stream(String sql, String alias, LocalDateTime start, LocalDateTime end, Long shopId,
+                        RowWriter rowWriter) {
+        String query = String.format(sql, shopId != null ? " AND " + alias + ".shop_id = ?" : "");
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Cursor-based fetching (PostgreSQL needs it inside a transaction, which writeCsv provides)
+            ps.setFetchSize(fetchSize);
+            ps.setObject(1, start);
+            ps.setObject(2, end);
+            if (shopId != null) {
+                ps.setLong(3, shopId);
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            try {
+                rowWriter.write(rs);
+            } catch (IOException e) {
+                // Usually the client went away; abort the query
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static int writeRow(Writer writer, ResultSet rs, int columns) throws SQLException, IOException {
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) {
+                writer.write(',');
+            }
+            writeValue(writer, rs.getObject(i));
+        }
+        writer.write('\n');
+        return 1;
+    }
+
+    private static int writeArchivedItems(Writer writer, ResultSet rs, ObjectReader itemsReader)
+            throws SQLException, IOException {
+        List<Object> order = new ArrayList<>(5);
+        for (int i = 1; i <= 5; i++) {
+            order.add(rs.getObject(i));
+        }
+        List<Map<String, Object>> lines = itemsReader.readValue(rs.getString(6));
+        for (Map<String, Object> line : lines) {
+            for (Object value : order) {
+                writeValue(writer, value);
+                writer.write(',');
+            }
+            writeValue(writer, line.get("shopMedicineId"));
+            for (String key : List.of("medicineName", "medicineStrength", "medicineForm", "manufacturerName",
+                    "quantity", "unitPrice", "lineTotal")) {
+                writer.write(',');
+                writeValue(writer, line.get(key));
+            }
+            writer.write('\n');
+        }
+        return lines.size();
+    }
+
+    private static void writeValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text;
+        if (value instanceof BigDecimal decimal) {
+            text = decimal.toPlainString();
+        } else if (value instanceof Timestamp timestamp) {
+            text = timestamp.toLocalDateTime().toString();
+        } else if (value instanceof String string && !string.isEmpty() && "=+-@".indexOf(string.charAt(0)) >= 0) {
+            // Keep spreadsheets from evaluating text cells as formulas
+            text = "'" + string;
+        } else {
+            text = value.toString();
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(text);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.pilltrack.service;
+
+import com.pilltrack.event.OrdersPlacedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPlacedNotificationListener {
+    
+    private final NotificationService notificationService;
+    
+    // Shop owners are told only once the orders have committed, off the checkout thread
+    @Async("notificationExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrdersPlaced(OrdersPlacedEvent event) {
+        for (OrdersPlacedEvent.PlacedOrder order : event.getOrders()) {
+            try {
+                notificationService.sendOrderStatusUpdate(order.shopOwnerId(), order.orderNumber(), order.status());
+            } catch (Exception e) {
+                log.error("Failed to notify shop owner of order {}", order.orderNumber(), e);
+            }
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.pilltrack.service;
 
+import com.pilltrack.dto.request.BulkOrderStatusRequest;
+import com.pilltrack.dto.request.CheckoutRequest;
 import com.pilltrack.dto.request.OrderRequest;
 import com.pilltrack.dto.request.OrderStatusUpdateRequest;
+import com.pilltrack.dto.response.BulkOrderStatusError;
+import com.pilltrack.dto.response.BulkOrderStatusResponse;
+import com.pilltrack.dto.response.CheckoutResponse;
 import com.pilltrack.dto.response.OrderResponse;
 import com.pilltrack.dto.response.OrderItemResponse;
 import com.pilltrack.dto.response.PageResponse;
+import com.pilltrack.event.OrdersPlacedEvent;
 import com.pilltrack.exception.AccessDeniedException;
 import com.pilltrack.exception.BadRequestException;
+import com.pilltrack.exception.PriceChangedException;
 import com.pilltrack.exception.ResourceNotFoundException;
 import com.pilltrack.model.entity.*;
 import com.pilltrack.model.enums.OrderStatus;
@@ -14,22 +21,38 @@ import com.pilltrack.model.enums.PaymentStatus;
 import com.pilltrack.repository.*;
 import com.pilltrack.security.CurrentUser;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class OrderService {
     
+    private static final Set<OrderStatus> BULK_TARGET_STATUSES = EnumSet.of(
+            OrderStatus.CONFIRMED, OrderStatus.PROCESSING, OrderStatus.SHIPPED, OrderStatus.DELIVERED);
+    
     private final OrderRepository orderRepository;
     private final CartRepository cartRepository;
     private final ShopMedicineRepository shopMedicineRepository;
@@ -37,11 +60,17 @@ public class OrderService {
     private final PaymentRepository paymentRepository;
     private final CurrentUser currentUser;
     private final NotificationService notificationService;
+    private final ShopInventoryBatchService inventoryBatchService;
+    private final CartService cartService;
+    private final PriceCatalog priceCatalog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OrderHistoryRepository orderHistoryRepository;
+    private final OrderArchiveService orderArchiveService;
     
+    @Transactional(readOnly = true)
     public PageResponse<OrderResponse> getCurrentUserOrders(Pageable pageable) {
         User user = currentUser.getUser();
-        Page<Order> page = orderRepository.findByUserIdOrderByCreatedAtDesc(user.getId(), pageable);
-        return mapToPageResponse(page);
+        return mapIdPageToResponse(orderRepository.findIdsByUserId(user.getId(), pageable));
     }
     
     public OrderResponse getOrderById(Long id) {
@@ -59,8 +88,10 @@ public class OrderService {
     }
     
     public OrderResponse getOrderByNumber(String orderNumber) {
-        Order order = orderRepository.findByOrderNumber(orderNumber)
-                .orElseThrow(() -> new ResourceNotFoundException("Order", "orderNumber", orderNumber));
+        Order order = orderRepository.findByOrderNumber(orderNumber).orElse(null);
+        if (order == null) {
+            return getArchivedOrderByNumber(orderNumber);
+        }
         
         User user = currentUser.getUser();
         if (!order.getUser().getId().equals(user.getId()) && 
@@ -72,62 +103,90 @@ public class OrderService {
         return mapToResponse(order);
     }
     
-    public List<OrderResponse> getCurrentUserOrdersByStatus(OrderStatus status) {
+    private OrderResponse getArchivedOrderByNumber(String orderNumber) {
+        ArchivedOrder archived = orderHistoryRepository.findArchivedByOrderNumber(orderNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "orderNumber", orderNumber));
+        
         User user = currentUser.getUser();
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(user.getId()).stream()
-                .filter(o -> o.getStatus() == status)
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        boolean shopOwner = shopRepository.findByOwnerId(user.getId())
+                .map(shop -> shop.getId().equals(archived.getShopId()))
+                .orElse(false);
+        if (!archived.getUserId().equals(user.getId()) && !shopOwner && !currentUser.isAdmin()) {
+            throw new AccessDeniedException("You don't have permission to view this order");
+        }
+        
+        return orderArchiveService.toResponse(archived);
     }
     
+    @Transactional(readOnly = true)
+    public PageResponse<OrderResponse> getCurrentUserArchivedOrders(Pageable pageable) {
+        User user = currentUser.getUser();
+        return toPageResponse(orderHistoryRepository.findArchivedByUserId(user.getId(), pageable)
+                .map(orderArchiveService::toResponse));
+    }
+    
+    @Transactional(readOnly = true)
+    public PageResponse<OrderResponse> getCurrentUserOrdersByStatus(OrderStatus status, Pageable pageable) {
+        User user = currentUser.getUser();
+        return mapIdPageToResponse(orderRepository.findIdsByUserIdAndStatus(user.getId(), status, pageable));
+    }
+    
+    @Transactional(readOnly = true)
     public PageResponse<OrderResponse> getShopOwnerOrders(Pageable pageable) {
         User user = currentUser.getUser();
         MedicineShop shop = shopRepository.findByOwnerId(user.getId())
                 .orElseThrow(() -> new ResourceNotFoundException("Shop", "owner", user.getEmail()));
-        Page<Order> page = orderRepository.findByShopIdOrderByCreatedAtDesc(shop.getId(), pageable);
-        return mapToPageResponse(page);
+        return mapIdPageToResponse(orderRepository.findIdsByShopId(shop.getId(), pageable));
     }
     
-    public List<OrderResponse> getShopOrdersByStatus(OrderStatus status) {
+    @Transactional(readOnly = true)
+    public PageResponse<OrderResponse> getShopOrdersByStatus(OrderStatus status, Pageable pageable) {
         User user = currentUser.getUser();
         MedicineShop shop = shopRepository.findByOwnerId(user.getId())
                 .orElseThrow(() -> new ResourceNotFoundException("Shop", "owner", user.getEmail()));
-        return orderRepository.findByShopIdOrderByCreatedAtDesc(shop.getId()).stream()
-                .filter(o -> o.getStatus() == status)
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapIdPageToResponse(orderRepository.findIdsByShopIdAndStatus(shop.getId(), status, pageable));
     }
     
+    @Transactional(readOnly = true)
     public PageResponse<OrderResponse> getAllOrders(Pageable pageable) {
-        Page<Order> page = orderRepository.findAll(pageable);
-        return mapToPageResponse(page);
+        return mapIdPageToResponse(orderRepository.findAllIds(pageable));
     }
     
+    // Totals include archived orders
     public long getTotalOrderCount() {
-        return orderRepository.count();
+        return orderHistoryRepository.count();
     }
     
     public long getOrderCountByStatus(OrderStatus status) {
-        return orderRepository.countByStatus(status);
+        return orderHistoryRepository.countByStatus(status);
     }
     
     public BigDecimal getTotalRevenue() {
-        return orderRepository.findAllByStatus(OrderStatus.DELIVERED).stream()
-                .map(Order::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return orderHistoryRepository.sumTotalByStatus(OrderStatus.DELIVERED);
     }
     
+    @Transactional(readOnly = true)
     public PageResponse<OrderResponse> getOrdersByStatus(OrderStatus status, Pageable pageable) {
-        Page<Order> page = orderRepository.findByStatus(status, pageable);
-        return mapToPageResponse(page);
+        return mapIdPageToResponse(orderRepository.findIdsByStatus(status, pageable));
     }
     
+    @Transactional(readOnly = true)
     public List<OrderResponse> getOrdersByDateRange(java.time.LocalDate startDate, java.time.LocalDate endDate) {
         LocalDateTime startDateTime = startDate.atStartOfDay();
         LocalDateTime endDateTime = endDate.atTime(23, 59, 59);
-        return orderRepository.findByCreatedAtBetween(startDateTime, endDateTime).stream()
+        OrderHistoryRepository.OrderHistory history =
+                orderHistoryRepository.findByCreatedAtBetween(startDateTime, endDateTime);
+        
+        List<OrderResponse> orders = history.live().stream()
                 .map(this::mapToResponse)
-                .collect(Collectors.toList());
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (!history.archived().isEmpty()) {
+            history.archived().stream()
+                    .map(orderArchiveService::toResponse)
+                    .forEach(orders::add);
+            orders.sort(Comparator.comparing(OrderResponse::getCreatedAt).reversed());
+        }
+        return orders;
     }
     
     @Transactional
@@ -199,9 +258,8 @@ public class OrderService {
             
             subtotal = subtotal.add(lineTotal);
             
-            // Update stock
-            shopMedicine.setStockQuantity(shopMedicine.getStockQuantity() - itemRequest.getQuantity());
-            shopMedicineRepository.save(shopMedicine);
+            // Update stock, first-expiry-first-out across batches
+            inventoryBatchService.consumeFefo(shopMedicine, itemRequest.getQuantity());
         }
         
         // Set order totals
@@ -225,96 +283,38 @@ public class OrderService {
         return mapToResponse(order);
     }
     
-    @Transactional
+    /**
+     * Check out the whole cart in one transaction: one order per shop and one combined payment.
+     */
+    @Transactional(noRollbackFor = PriceChangedException.class)
+    public CheckoutResponse checkoutCart(CheckoutRequest request) {
+        User user = currentUser.getUser();
+        return mapToCheckoutResponse(placeCartOrders(user, loadCartForCheckout(user), request));
+    }
+    
+    @Transactional(noRollbackFor = PriceChangedException.class)
     public OrderResponse placeOrderFromCart(OrderRequest request) {
         User user = currentUser.getUser();
-        Cart cart = cartRepository.findByUserId(user.getId())
-                .orElseThrow(() -> new BadRequestException("Cart is empty"));
-        
-        if (cart.getItems() == null || cart.getItems().isEmpty()) {
-            throw new BadRequestException("Cart is empty");
+        Cart cart = loadCartForCheckout(user);
+        
+        long shopCount = cart.getItems().stream()
+                .map(item -> item.getShopMedicine().getShop().getId())
+                .distinct()
+                .count();
+        if (shopCount > 1) {
+            throw new BadRequestException("Cart has items from multiple shops, use checkout instead");
         }
         
-        // Get shop from first cart item
-        MedicineShop shop = cart.getItems().get(0).getShopMedicine().getShop();
-        
-        // Create order
-        Order order = new Order();
-        order.setOrderNumber(generateOrderNumber());
-        order.setUser(user);
-        order.setShop(shop);
-        order.setStatus(OrderStatus.PENDING);
-        order.setShippingName(request.getShippingName());
-        order.setShippingPhone(request.getShippingPhone());
-        order.setShippingAddress(request.getShippingAddress());
-        order.setShippingCity(request.getShippingCity());
-        order.setShippingArea(request.getShippingArea());
-        order.setShippingPostalCode(request.getShippingPostalCode());
-        order.setCustomerNotes(request.getCustomerNotes());
-        order.setItems(new ArrayList<>());
-        
-        BigDecimal subtotal = BigDecimal.ZERO;
-        
-        // Process cart items
-        for (CartItem cartItem : cart.getItems()) {
-            ShopMedicine shopMedicine = cartItem.getShopMedicine();
-            
-            // Check stock
-            if (shopMedicine.getStockQuantity() < cartItem.getQuantity()) {
-                throw new BadRequestException("Insufficient stock for " + shopMedicine.getMedicine().getBrandName());
-            }
-            
-            // Calculate price
-            BigDecimal unitPrice = shopMedicine.getDiscountPrice() != null ? 
-                    shopMedicine.getDiscountPrice() : shopMedicine.getPrice();
-            BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(cartItem.getQuantity()));
-            
-            // Create order item with snapshot of medicine details
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrder(order);
-            orderItem.setShopMedicine(shopMedicine);
-            orderItem.setMedicineName(shopMedicine.getMedicine().getBrandName());
-            orderItem.setMedicineStrength(shopMedicine.getMedicine().getStrength());
-            orderItem.setMedicineForm(shopMedicine.getMedicine().getDosageForm());
-            if (shopMedicine.getMedicine().getManufacturer() != null) {
-                orderItem.setManufacturerName(shopMedicine.getMedicine().getManufacturer().getName());
-            }
-            orderItem.setQuantity(cartItem.getQuantity());
-            orderItem.setUnitPrice(unitPrice);
-            orderItem.setLineTotal(lineTotal);
-            order.getItems().add(orderItem);
-            
-            subtotal = subtotal.add(lineTotal);
-            
-            // Update stock
-            shopMedicine.setStockQuantity(shopMedicine.getStockQuantity() - cartItem.getQuantity());
-            shopMedicineRepository.save(shopMedicine);
-        }
-        
-        // Set order totals
-        order.setSubtotal(subtotal);
-        order.setTotal(subtotal);
-        
-        order = orderRepository.save(order);
-        
-        // Create payment record
-        Payment payment = new Payment();
-        payment.setOrder(order);
-        payment.setAmount(subtotal);
-        payment.setStatus(PaymentStatus.PENDING);
-        payment.setPaymentMethod("ONLINE");
-        paymentRepository.save(payment);
-        
-        // Clear cart
-        cart.getItems().clear();
-        cart.recalculateTotals();
-        cartRepository.save(cart);
-        
-        // Send notification to shop owner
-        notificationService.sendOrderStatusUpdate(shop.getOwner().getId(), 
-                order.getOrderNumber(), order.getStatus().name());
-        
-        return mapToResponse(order);
+        CheckoutRequest shipping = CheckoutRequest.builder()
+                .shippingName(request.getShippingName())
+                .shippingPhone(request.getShippingPhone())
+                .shippingAddress(request.getShippingAddress())
+                .shippingCity(request.getShippingCity())
+                .shippingArea(request.getShippingArea())
+                .shippingPostalCode(request.getShippingPostalCode())
+                .customerNotes(request.getCustomerNotes())
+                .build();
+        return mapToResponse(placeCartOrders(user, cart, shipping).orders().get(0));
     }
     
     @Transactional
@@ -333,17 +333,23 @@ public class OrderService {
         
         // Restore stock
         for (OrderItem item : order.getItems()) {
-            ShopMedicine shopMedicine = item.getShopMedicine();
-            shopMedicine.setStockQuantity(shopMedicine.getStockQuantity() + item.getQuantity());
-            shopMedicineRepository.save(shopMedicine);
+            inventoryBatchService.restock(item.getShopMedicine(), item.getQuantity());
         }
         
         order.setStatus(OrderStatus.CANCELLED);
         order = orderRepository.save(order);
         
-        // Update payment status
-        paymentRepository.findByOrderId(order.getId()).ifPresent(payment -> {
-            payment.setStatus(PaymentStatus.CANCELLED);
+        // Update payment status; a combined checkout payment is cancelled with its last order
+        Order cancelled = order;
+        paymentRepository.findCoveringOrderId(order.getId()).ifPresent(payment -> {
+            boolean othersActive = cancelled.getCheckoutReference() != null &&
+                    orderRepository.countByCheckoutReferenceAndStatusNot(
+                            cancelled.getCheckoutReference(), OrderStatus.CANCELLED) > 0;
+            if (!othersActive) {
+                payment.setStatus(PaymentStatus.CANCELLED);
+            } else if (payment.getStatus() == PaymentStatus.PENDING) {
+                payment.setAmount(payment.getAmount().subtract(cancelled.getTotal()));
+            }
             paymentRepository.save(payment);
         });
         
@@ -364,16 +370,13 @@ public class OrderService {
             throw new AccessDeniedException("You don't have permission to update this order");
         }
         
-        order.setStatus(request.getStatus());
-        
-        switch (request.getStatus()) {
-            case CONFIRMED -> order.setConfirmedAt(LocalDateTime.now());
-            case PROCESSING -> order.setProcessingAt(LocalDateTime.now());
-            case SHIPPED -> order.setShippedAt(LocalDateTime.now());
-            case DELIVERED -> order.setDeliveredAt(LocalDateTime.now());
-            default -> {}
+        if (!order.getStatus().canTransitionTo(request.getStatus())) {
+            throw new BadRequestException("Cannot change order status from " + order.getStatus() +
+                    " to " + request.getStatus());
         }
         
+        order.updateStatus(request.getStatus());
+        
         order = orderRepository.save(order);
         
         // Notify customer
@@ -383,16 +386,244 @@ public class OrderService {
         return mapToResponse(order);
     }
     
+    /**
+     * Move many orders to one fulfilment status. Orders are grouped by their current status and each
+     * group is changed by one guarded UPDATE, so an order changed meanwhile is skipped, not overwritten.
+     * Customer notifications are inserted in one batch in the same transaction.
+     */
+    @Transactional
+    public BulkOrderStatusResponse updateOrderStatuses(BulkOrderStatusRequest request) {
+        OrderStatus target = request.getStatus();
+        if (!BULK_TARGET_STATUSES.contains(target)) {
+            // Cancellations and refunds restore stock and payments, order by order
+            throw new BadRequestException("Bulk updates can only move orders to " + BULK_TARGET_STATUSES);
+        }
+        
+        User user = currentUser.getUser();
+        boolean admin = currentUser.isAdmin();
+        List<Long> ids = request.getOrderIds().stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        
+        // [id, status, orderNumber, userId, shopOwnerId]
+        Map<Long, Object[]> rows = orderRepository.findStatusRowsByIdIn(ids).stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], Function.identity()));
+        
+        List<BulkOrderStatusError> skipped = new ArrayList<>();
+        Map<OrderStatus, List<Long>> idsByStatus = new EnumMap<>(OrderStatus.class);
+        for (Long id : ids) {
+            Object[] row = rows.get(id);
+            if (row == null) {
+                skipped.add(new BulkOrderStatusError(id, "Order not found"));
+                continue;
+            }
+            OrderStatus current = (OrderStatus) row[1];
+            if (!admin && !user.getId().equals(row[4])) {
+                skipped.add(new BulkOrderStatusError(id, "You don't have permission to update this order"));
+            } else if (!current.canTransitionTo(target)) {
+                skipped.add(new BulkOrderStatusError(id, "Cannot change order status from " + current + " to " + target));
+            } else {
+                idsByStatus.computeIfAbsent(current, k -> new ArrayList<>()).add(id);
+            }
+        }
+        
+        // Truncated so the re-read below matches what the database stored
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<Long> updatedIds = new ArrayList<>();
+        for (Map.Entry<OrderStatus, List<Long>> group : idsByStatus.entrySet()) {
+            List<Long> groupIds = group.getValue();
+            int updated = orderRepository.transitionStatus(groupIds, group.getKey(), target, now,
+                    target == OrderStatus.CONFIRMED ? now : null,
+                    target == OrderStatus.PROCESSING ? now : null,
+                    target == OrderStatus.SHIPPED ? now : null,
+                    target == OrderStatus.DELIVERED ? now : null);
+            if (updated == groupIds.size()) {
+                updatedIds.addAll(groupIds);
+                continue;
+            }
+            List<Long> applied = orderRepository.findIdsByIdInAndStatusAndUpdatedAt(groupIds, target, now);
+            updatedIds.addAll(applied);
+            groupIds.stream()
+                    .filter(id -> !applied.contains(id))
+                    .forEach(id -> skipped.add(new BulkOrderStatusError(id, "Order status changed meanwhile")));
+        }
+        
+        // Notify customers
+        notificationService.createNotifications(updatedIds.stream()
+                .map(rows::get)
+                .map(row -> notificationService.orderStatusUpdate((Long) row[3], (String) row[2], target.name()))
+                .collect(Collectors.toList()));
+        
+        log.info("Bulk status change to {} by {}: {} updated, {} skipped",
+                target, user.getEmail(), updatedIds.size(), skipped.size());
+        
+        return BulkOrderStatusResponse.builder()
+                .status(target)
+                .requested(ids.size())
+                .updatedIds(updatedIds)
+                .skipped(skipped)
+                .build();
+    }
+    
+    private record CheckoutResult(String checkoutReference, List<Order> orders, Payment payment) {
+    }
+    
+    private Cart loadCartForCheckout(User user) {
+        // Lines, shop medicines, shops and medicines in one query
+        Cart cart = cartRepository.findByUserIdWithItemDetails(user.getId())
+                .orElseThrow(() -> new BadRequestException("Cart is empty"));
+        // Force-flush buffered quantity edits so the order uses what the user last saw
+        cartService.applyPendingEdits(cart);
+        
+        if (cart.getItems() == null || cart.getItems().isEmpty()) {
+            throw new BadRequestException("Cart is empty");
+        }
+        return cart;
+    }
+    
+    /**
+     * Compare every line's price version with the catalog in one query. Stale lines are repriced;
+     * if any price actually changed the checkout is refused, keeping the repriced cart.
+     */
+    private void validateCartPrices(Cart cart) {
+        List<Long> shopMedicineIds = cart.getItems().stream()
+                .map(item -> item.getShopMedicine().getId())
+                .distinct()
+                .collect(Collectors.toList());
+        List<String> changed = cartService.repriceStaleLines(cart, priceCatalog.currentVersions(shopMedicineIds));
+        if (!changed.isEmpty()) {
+            log.info("Checkout refused for cart {}: prices changed for {}", cart.getId(), changed);
+            throw new PriceChangedException(changed);
+        }
+    }
+    
+    private CheckoutResult placeCartOrders(User user, Cart cart, CheckoutRequest request) {
+        // Validate every line before anything is written
+        List<String> outOfStock = cart.getItems().stream()
+                .filter(item -> item.getShopMedicine().getStockQuantity() < item.getQuantity())
+                .map(item -> item.getShopMedicine().getMedicine().getBrandName())
+                .collect(Collectors.toList());
+        if (!outOfStock.isEmpty()) {
+            throw new BadRequestException("Insufficient stock for " + String.join(", ", outOfStock));
+        }
+        validateCartPrices(cart);
+        
+        Map<Long, List<CartItem>> linesByShop = cart.getItems().stream()
+                .collect(Collectors.groupingBy(item -> item.getShopMedicine().getShop().getId(),
+                        LinkedHashMap::new, Collectors.toList()));
+        String checkoutReference = generateCheckoutReference();
+        
+        List<Order> orders = new ArrayList<>();
+        BigDecimal checkoutTotal = BigDecimal.ZERO;
+        for (List<CartItem> lines : linesByShop.values()) {
+            Order order = new Order();
+            order.setOrderNumber(generateOrderNumber());
+            order.setCheckoutReference(checkoutReference);
+            order.setUser(user);
+            order.setShop(lines.get(0).getShopMedicine().getShop());
+            order.setStatus(OrderStatus.PENDING);
+            order.setShippingName(request.getShippingName());
+            order.setShippingPhone(request.getShippingPhone());
+            order.setShippingAddress(request.getShippingAddress());
+            order.setShippingCity(request.getShippingCity());
+            order.setShippingArea(request.getShippingArea());
+            order.setShippingPostalCode(request.getShippingPostalCode());
+            order.setCustomerNotes(request.getCustomerNotes());
+            order.setItems(new ArrayList<>());
+            
+            BigDecimal subtotal = BigDecimal.ZERO;
+            for (CartItem cartItem : lines) {
+                ShopMedicine shopMedicine = cartItem.getShopMedicine();
+                
+                // Version-checked cart price, so cart, order and payment agree
+                BigDecimal unitPrice = cartItem.getEffectivePrice();
+                BigDecimal lineTotal = cartItem.getLineTotal();
+                
+                // Create order item with snapshot of medicine details
+                OrderItem orderItem = new OrderItem();
+                orderItem.setOrder(order);
+                orderItem.setShopMedicine(shopMedicine);
+                orderItem.setMedicineName(shopMedicine.getMedicine().getBrandName());
+                orderItem.setMedicineStrength(shopMedicine.getMedicine().getStrength());
+                orderItem.setMedicineForm(shopMedicine.getMedicine().getDosageForm());
+                if (shopMedicine.getMedicine().getManufacturer() != null) {
+                    orderItem.setManufacturerName(shopMedicine.getMedicine().getManufacturer().getName());
+                }
+                orderItem.setQuantity(cartItem.getQuantity());
+                orderItem.setUnitPrice(unitPrice);
+                orderItem.setLineTotal(lineTotal);
+                order.getItems().add(orderItem);
+                
+                subtotal = subtotal.add(lineTotal);
+                
+                // Update stock, first-expiry-first-out across batches
+                inventoryBatchService.consumeFefo(shopMedicine, cartItem.getQuantity());
+            }
+            
+            order.setSubtotal(subtotal);
+            order.setTotal(subtotal);
+            orders.add(order);
+            checkoutTotal = checkoutTotal.add(subtotal);
+        }
+        
+        // Orders and items go out in one flush
+        orders = orderRepository.saveAll(orders);
+        
+        // One payment for the whole checkout, attached to the first order
+        Payment payment = new Payment();
+        payment.setOrder(orders.get(0));
+        payment.setAmount(checkoutTotal);
+        payment.setStatus(PaymentStatus.PENDING);
+        payment.setPaymentMethod("ONLINE");
+        payment = paymentRepository.save(payment);
+        
+        // Clear cart
+        cart.getItems().clear();
+        cart.recalculateTotals();
+        cartRepository.save(cart);
+        
+        // Shop owners are notified asynchronously after commit
+        eventPublisher.publishEvent(new OrdersPlacedEvent(checkoutReference, orders.stream()
+                .map(o -> new OrdersPlacedEvent.PlacedOrder(
+                        o.getShop().getOwner().getId(), o.getOrderNumber(), o.getStatus().name()))
+                .collect(Collectors.toList())));
+        
+        log.info("Checkout {} created {} orders for user {}", checkoutReference, orders.size(), user.getId());
+        return new CheckoutResult(checkoutReference, orders, payment);
+    }
+    
+    private String generateCheckoutReference() {
+        return "CHK-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+    
     private String generateOrderNumber() {
         return "ORD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
     }
     
-    private PageResponse<OrderResponse> mapToPageResponse(Page<Order> page) {
-        List<OrderResponse> content = page.getContent().stream()
-                .map(this::mapToResponse)
+    /**
+     * Second phase of a paged order listing: loads orders, users, shops and items for
+     * the ids of the page in a single query and keeps the page ordering.
+     */
+    private PageResponse<OrderResponse> mapIdPageToResponse(Page<Long> idPage) {
+        List<Long> ids = idPage.getContent();
+        Map<Long, Order> ordersById = ids.isEmpty() ? Map.of() :
+                orderRepository.findAllWithItemsByIdIn(ids).stream()
+                        .collect(Collectors.toMap(Order::getId, Function.identity()));
+        List<Order> orders = ids.stream()
+                .map(ordersById::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
+        return mapToPageResponse(new PageImpl<>(orders, idPage.getPageable(), idPage.getTotalElements()));
+    }
+    
+    private PageResponse<OrderResponse> mapToPageResponse(Page<Order> page) {
+        return toPageResponse(page.map(this::mapToResponse));
+    }
+    
+    private PageResponse<OrderResponse> toPageResponse(Page<OrderResponse> page) {
         return PageResponse.<OrderResponse>builder()
-                .content(content)
+                .content(page.getContent())
                 .pageNumber(page.getNumber())
                 .pageSize(page.getSize())
                 .totalElements(page.getTotalElements())
@@ -404,6 +635,16 @@ public class OrderService {
                 .build();
     }
     
+    private CheckoutResponse mapToCheckoutResponse(CheckoutResult result) {
+        return CheckoutResponse.builder()
+                .checkoutReference(result.checkoutReference())
+                .orders(result.orders().stream().map(this::mapToResponse).collect(Collectors.toList()))
+                .paymentId(result.payment().getId())
+                .paymentStatus(result.payment().getStatus())
+                .totalAmount(result.payment().getAmount())
+                .build();
+    }
+    
     private OrderResponse mapToResponse(Order order) {
         List<OrderItemResponse> items = order.getItems().stream()
                 .map(this::mapItemToResponse)
@@ -412,6 +653,7 @@ public class OrderService {
         return OrderResponse.builder()
                 .id(order.getId())
                 .orderNumber(order.getOrderNumber())
+                .checkoutReference(order.getCheckoutReference())
                 .userId(order.getUser().getId())
                 .userName(order.getUser().getName())
                 .userEmail(order.getUser().getEmail())
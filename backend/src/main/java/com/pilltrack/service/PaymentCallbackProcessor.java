@@ -0,0 +1,200 @@
+package com.pilltrack.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pilltrack.exception.BadRequestException;
+import com.pilltrack.model.entity.PaymentCallback;
+import com.pilltrack.model.enums.PaymentCallbackStatus;
+import com.pilltrack.model.enums.PaymentCallbackType;
+import com.pilltrack.repository.PaymentCallbackRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Idempotent intake for SSLCommerz callbacks.
+ * Each callback is keyed by tran_id and val_id (or by outcome when there is no val_id). Repeats are
+ * dropped by an in-memory filter of recent keys, or by the unique key of payment_callbacks when the
+ * filter has forgotten them or another node saw the first copy. New callbacks are stored and handed to
+ * a single queue worker, so the HTTP callback returns immediately and retries never reach the gateway.
+ */
+@Service
+@Slf4j
+public class PaymentCallbackProcessor {
+
+    private static final int RECENT_KEYS = 10_000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int SWEEP_BATCH = 200;
+    private static final TypeReference<Map<String, String>> PARAMS = new TypeReference<>() {};
+
+    private final PaymentCallbackRepository callbackRepository;
+    private final PaymentService paymentService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor executor;
+
+    // Access-ordered LRU of recently accepted keys
+    private final Set<String> recentKeys = Collections.synchronizedSet(Collections.newSetFromMap(
+            new LinkedHashMap<>(RECENT_KEYS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > RECENT_KEYS;
+                }
+            }));
+
+    public PaymentCallbackProcessor(PaymentCallbackRepository callbackRepository,
+                                    PaymentService paymentService,
+                                    ObjectMapper objectMapper,
+                                    TransactionTemplate transactionTemplate,
+                                    @Qualifier("paymentCallbackExecutor") ThreadPoolTaskExecutor executor) {
+        this.callbackRepository = callbackRepository;
+        this.paymentService = paymentService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+    }
+
+    /**
+     * Record a callback and queue it. Returns false when it is a repeat of one already accepted.
+     */
+    public boolean accept(PaymentCallbackType type, Map<String, String> params) {
+        String transactionId = params.get("tran_id");
+        if (transactionId == null || transactionId.isBlank()) {
+            throw new BadRequestException("Missing tran_id");
+        }
+
+        String key = idempotencyKey(type, params);
+        if (!recentKeys.add(key)) {
+            log.debug("Duplicate payment callback {} dropped in memory", key);
+            return false;
+        }
+
+        Long id;
+        try {
+            id = transactionTemplate.execute(status -> callbackRepository.saveAndFlush(PaymentCallback.builder()
+                    .idempotencyKey(key)
+                    .transactionId(transactionId)
+                    .validationId(params.get("val_id"))
+                    .type(type)
+                    .payload(toJson(params))
+                    .build()).getId());
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Duplicate payment callback {} dropped by unique key", key);
+            return false;
+        } catch (RuntimeException e) {
+            // Not stored, so a gateway retry must still get through
+            recentKeys.remove(key);
+            throw e;
+        }
+
+        enqueue(id);
+        return true;
+    }
+
+    /**
+     * Requeue callbacks the worker never got to, e.g. after a restart or a full queue,
+     * and release ones left half-processed by a crash.
+     */
+    @Scheduled(fixedDelayString = "${app.payment-callbacks.sweep-interval-ms:60000}")
+    public void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status ->
+                callbackRepository.releaseStuck(now.minusMinutes(5), now));
+
+        List<Long> ids = callbackRepository.findIdsByStatusUpdatedBefore(
+                PaymentCallbackStatus.RECEIVED, now.minusSeconds(30), PageRequest.of(0, SWEEP_BATCH));
+        if (!ids.isEmpty()) {
+            log.info("Requeueing {} stored payment callbacks", ids.size());
+            ids.forEach(this::enqueue);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", executor.getThreadPoolExecutor().getQueue().size());
+        stats.put("recentKeys", recentKeys.size());
+        return stats;
+    }
+
+    private void enqueue(Long id) {
+        try {
+            executor.execute(() -> process(id));
+        } catch (RejectedExecutionException e) {
+            log.warn("Payment callback queue full, callback {} left for the sweep", id);
+        }
+    }
+
+    private void process(Long id) {
+        Integer claimed = transactionTemplate.execute(status -> callbackRepository.transition(
+                id, PaymentCallbackStatus.RECEIVED, PaymentCallbackStatus.PROCESSING, LocalDateTime.now()));
+        if (claimed == null || claimed == 0) {
+            return;
+        }
+
+        PaymentCallback callback = callbackRepository.findById(id).orElse(null);
+        if (callback == null) {
+            return;
+        }
+
+        try {
+            paymentService.handleCallback(callback.getType(), fromJson(callback.getPayload()));
+            callback.setStatus(PaymentCallbackStatus.PROCESSED);
+            callback.setProcessedAt(LocalDateTime.now());
+            callback.setLastError(null);
+        } catch (Exception e) {
+            int attempts = callback.getAttempts() + 1;
+            log.error("Payment callback {} failed (attempt {}): {}", id, attempts, e.getMessage());
+            callback.setAttempts(attempts);
+            callback.setLastError(e.getMessage());
+            // Left RECEIVED for the sweep until attempts run out
+            callback.setStatus(attempts >= MAX_ATTEMPTS ? PaymentCallbackStatus.FAILED : PaymentCallbackStatus.RECEIVED);
+        }
+        callbackRepository.save(callback);
+    }
+
+    private static String idempotencyKey(PaymentCallbackType type, Map<String, String> params) {
+        String transactionId = params.get("tran_id");
+        String valId = params.get("val_id");
+        String status = params.get("status");
+
+        // The success redirect and a VALID IPN carry the same val_id and share a key
+        boolean valid = type == PaymentCallbackType.SUCCESS ||
+                (type == PaymentCallbackType.IPN && ("VALID".equals(status) || "VALIDATED".equals(status)));
+        if (valid && valId != null && !valId.isBlank()) {
+            return transactionId + ":" + valId;
+        }
+        String outcome = switch (type) {
+            case SUCCESS -> "VALID";
+            case FAIL -> "FAILED";
+            case CANCEL -> "CANCELLED";
+            case IPN -> status != null ? status : "UNKNOWN";
+        };
+        return transactionId + ":" + outcome;
+    }
+
+    private String toJson(Map<String, String> params) {
+        try {
+            return objectMapper.writeValueAsString(params);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize payment callback", e);
+        }
+    }
+
+    private Map<String, String> fromJson(String payload) throws JsonProcessingException {
+        return objectMapper.readValue(payload, PARAMS);
+    }
+}
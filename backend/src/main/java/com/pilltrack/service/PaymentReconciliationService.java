@@ -0,0 +1,325 @@
+package com.pilltrack.service;
+
+import com.pilltrack.model.entity.Order;
+import com.pilltrack.model.entity.OrderItem;
+import com.pilltrack.model.entity.Payment;
+import com.pilltrack.model.entity.ShopMedicine;
+import com.pilltrack.model.enums.OrderStatus;
+import com.pilltrack.model.enums.PaymentStatus;
+import com.pilltrack.repository.OrderRepository;
+import com.pilltrack.repository.PaymentRepository;
+import com.pilltrack.repository.ShopMedicineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Settles payments left PENDING, e.g. when the customer closed the browser on the gateway page.
+ * Only payments whose gateway session was initiated (they have a transaction id) are reconciled;
+ * cash on delivery payments stay PENDING until delivery.
+ * Stale payments are paged in id order, looked up in the gateway transaction query API with bounded
+ * concurrency (no transaction is held meanwhile), and each page is applied in one transaction:
+ * paid payments confirm their orders at once. Unpaid ones cancel their orders and put the stock back
+ * only once expire-after-hours have passed since the last session was initiated, because a failed
+ * card attempt can still be retried in the same session. All sessions share the payment's tran_id,
+ * so the query covers attempts made on earlier sessions too.
+ * A paid attempt whose amount or currency differs from the payment is left PENDING for review.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentReconciliationService {
+
+    private enum Outcome {
+        PAID,
+        FAILED,
+        UNRESOLVED,
+        NOT_FOUND,
+        // Gateway unreachable; never treated as expired
+        ERROR
+    }
+
+    private record GatewayResult(Outcome outcome, Map<String, Object> element) {
+    }
+
+    private final PaymentRepository paymentRepository;
+    private final OrderRepository orderRepository;
+    private final ShopMedicineRepository shopMedicineRepository;
+    private final ShopInventoryBatchService inventoryBatchService;
+    private final NotificationService notificationService;
+    private final SslCommerzClient sslCommerzClient;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.payment-reconciliation.stale-after-minutes:30}")
+    private long staleAfterMinutes;
+
+    @Value("${app.payment-reconciliation.expire-after-hours:24}")
+    private long expireAfterHours;
+
+    @Value("${app.payment-reconciliation.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.payment-reconciliation.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${app.payment-reconciliation.max-per-run:5000}")
+    private int maxPerRun;
+
+    // Metrics
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong paymentsChecked = new AtomicLong();
+    private final AtomicLong paymentsConfirmed = new AtomicLong();
+    private final AtomicLong paymentsFailed = new AtomicLong();
+    private final AtomicLong gatewayErrors = new AtomicLong();
+    private final AtomicLong amountMismatches = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile double lastRunThroughput;
+    private volatile long pendingLagSeconds;
+
+    /**
+     * One reconciliation pass over PENDING payments older than the stale threshold.
+     * Returns the number of payments checked.
+     */
+    public int reconcile() {
+        long started = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minusMinutes(staleAfterMinutes);
+        LocalDateTime expireBefore = now.minusHours(expireAfterHours);
+
+        int checked = 0;
+        long afterId = 0;
+        while (checked < maxPerRun) {
+            List<Payment> page = paymentRepository.findStalePendingAfter(
+                    staleBefore, afterId, PageRequest.of(0, Math.min(batchSize, maxPerRun - checked)));
+            if (page.isEmpty()) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getId();
+            checked += page.size();
+
+            Map<Long, GatewayResult> results = queryGateway(page);
+            transactionTemplate.executeWithoutResult(status -> apply(results, expireBefore));
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        runs.incrementAndGet();
+        paymentsChecked.addAndGet(checked);
+        lastRunAt = now;
+        lastRunMillis = elapsed;
+        lastRunThroughput = elapsed > 0 ? checked * 1000.0 / elapsed : checked;
+        LocalDateTime oldestPending = paymentRepository.findOldestPendingGatewayCreatedAt();
+        pendingLagSeconds = oldestPending != null ? Duration.between(oldestPending, LocalDateTime.now()).getSeconds() : 0;
+
+        log.info("Payment reconciliation checked {} payments in {} ms, oldest pending payment is {} s old",
+                checked, elapsed, pendingLagSeconds);
+        return checked;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.get());
+        stats.put("paymentsChecked", paymentsChecked.get());
+        stats.put("paymentsConfirmed", paymentsConfirmed.get());
+        stats.put("paymentsFailed", paymentsFailed.get());
+        stats.put("gatewayErrors", gatewayErrors.get());
+        stats.put("amountMismatches", amountMismatches.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunPaymentsPerSecond", lastRunThroughput);
+        stats.put("pendingLagSeconds", pendingLagSeconds);
+        return stats;
+    }
+
+    private Map<Long, GatewayResult> queryGateway(List<Payment> payments) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        Map<Long, CompletableFuture<GatewayResult>> calls = new LinkedHashMap<>();
+
+        for (Payment payment : payments) {
+            permits.acquireUninterruptibly();
+            CompletableFuture<GatewayResult> call = sslCommerzClient.queryTransactionAsync(payment.getTransactionId())
+                    .thenApply(PaymentReconciliationService::classify)
+                    .exceptionally(e -> {
+                        gatewayErrors.incrementAndGet();
+                        log.warn("Transaction query failed for {}: {}", payment.getTransactionId(), e.getMessage());
+                        return new GatewayResult(Outcome.ERROR, null);
+                    })
+                    .whenComplete((result, e) -> permits.release());
+            calls.put(payment.getId(), call);
+        }
+
+        Map<Long, GatewayResult> results = new LinkedHashMap<>();
+        calls.forEach((paymentId, call) -> results.put(paymentId, call.join()));
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GatewayResult classify(Map<String, Object> response) {
+        Object elements = response.get("element");
+        if (!(elements instanceof List<?> list) || list.isEmpty()) {
+            return new GatewayResult(Outcome.NOT_FOUND, null);
+        }
+
+        Map<String, Object> failed = null;
+        for (Object item : list) {
+            if (!(item instanceof Map<?, ?>)) {
+                continue;
+            }
+            Map<String, Object> element = (Map<String, Object>) item;
+            String status = String.valueOf(element.get("status"));
+            if ("VALID".equals(status) || "VALIDATED".equals(status)) {
+                return new GatewayResult(Outcome.PAID, element);
+            }
+            if ("FAILED".equals(status) || "CANCELLED".equals(status) || "EXPIRED".equals(status)) {
+                failed = element;
+            }
+        }
+        return failed != null ? new GatewayResult(Outcome.FAILED, failed) : new GatewayResult(Outcome.UNRESOLVED, null);
+    }
+
+    private void apply(Map<Long, GatewayResult> results, LocalDateTime expireBefore) {
+        // Reload inside the transaction; callbacks may have settled some payments meanwhile
+        List<Payment> payments = paymentRepository.findAllWithOrderByIdIn(results.keySet()).stream()
+                .filter(p -> p.getStatus() == PaymentStatus.PENDING)
+                .collect(Collectors.toList());
+        if (payments.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<Order>> ordersByPayment = coveredOrders(payments);
+        LocalDateTime now = LocalDateTime.now();
+        List<Order> confirmed = new ArrayList<>();
+        List<Order> cancelled = new ArrayList<>();
+
+        for (Payment payment : payments) {
+            GatewayResult result = results.get(payment.getId());
+            Outcome outcome = result.outcome();
+            LocalDateTime sessionStartedAt = payment.getSessionStartedAt() != null ?
+                    payment.getSessionStartedAt() : payment.getCreatedAt();
+            boolean expired = outcome != Outcome.ERROR && sessionStartedAt.isBefore(expireBefore);
+
+            if (outcome == Outcome.PAID && !matchesPayment(payment, result.element())) {
+                // Money was taken, so never expire it; left for manual review
+                amountMismatches.incrementAndGet();
+                log.error("Gateway reports {} {} paid for transaction {}, but payment {} is {} {}",
+                        stringValue(result.element(), "amount"), stringValue(result.element(), "currency"),
+                        payment.getTransactionId(), payment.getId(), payment.getAmount(), payment.getCurrency());
+            } else if (outcome == Outcome.PAID) {
+                payment.markAsPaid(payment.getTransactionId(), stringValue(result.element(), "val_id"));
+                payment.setBankTransactionId(stringValue(result.element(), "bank_tran_id"));
+                String cardType = stringValue(result.element(), "card_type");
+                if (cardType != null) {
+                    payment.setPaymentMethod(cardType);
+                }
+                for (Order order : ordersByPayment.get(payment.getId())) {
+                    if (order.getStatus() == OrderStatus.PENDING) {
+                        order.setStatus(OrderStatus.CONFIRMED);
+                        order.setConfirmedAt(now);
+                        confirmed.add(order);
+                    }
+                }
+                paymentsConfirmed.incrementAndGet();
+            } else if (expired) {
+                payment.markAsFailed(outcome == Outcome.FAILED ?
+                        "Reported " + stringValue(result.element(), "status") + " by gateway" :
+                        "Expired without a completed payment");
+                for (Order order : ordersByPayment.get(payment.getId())) {
+                    if (order.getStatus() == OrderStatus.PENDING) {
+                        order.setStatus(OrderStatus.CANCELLED);
+                        order.setCancelledAt(now);
+                        order.setCancellationReason("Payment not completed");
+                        cancelled.add(order);
+                    }
+                }
+                paymentsFailed.incrementAndGet();
+            }
+        }
+
+        releaseStock(cancelled);
+
+        // Managed entities are written on commit as batched UPDATEs (hibernate.jdbc.batch_size)
+        for (Order order : confirmed) {
+            notificationService.sendOrderStatusUpdate(order.getUser().getId(), order.getOrderNumber(), "CONFIRMED");
+        }
+        for (Order order : cancelled) {
+            notificationService.sendOrderStatusUpdate(order.getUser().getId(), order.getOrderNumber(), "CANCELLED");
+        }
+    }
+
+    // Orders each payment covers: its own order, or every order of its checkout
+    private Map<Long, List<Order>> coveredOrders(List<Payment> payments) {
+        Set<String> references = payments.stream()
+                .map(p -> p.getOrder().getCheckoutReference())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, List<Order>> byReference = references.isEmpty() ? Map.of() :
+                orderRepository.findByCheckoutReferenceIn(references).stream()
+                        .collect(Collectors.groupingBy(Order::getCheckoutReference));
+
+        Map<Long, List<Order>> covered = new HashMap<>();
+        for (Payment payment : payments) {
+            String reference = payment.getOrder().getCheckoutReference();
+            covered.put(payment.getId(), reference != null ?
+                    byReference.getOrDefault(reference, List.of(payment.getOrder())) : List.of(payment.getOrder()));
+        }
+        return covered;
+    }
+
+    private void releaseStock(List<Order> cancelled) {
+        if (cancelled.isEmpty()) {
+            return;
+        }
+
+        List<Long> orderIds = cancelled.stream().map(Order::getId).collect(Collectors.toList());
+        Map<Long, Integer> quantityByShopMedicine = new HashMap<>();
+        for (Order order : orderRepository.findAllWithItemsByIdIn(orderIds)) {
+            for (OrderItem item : order.getItems()) {
+                quantityByShopMedicine.merge(item.getShopMedicine().getId(), item.getQuantity(), Integer::sum);
+            }
+        }
+
+        Map<Long, ShopMedicine> shopMedicines = shopMedicineRepository.findAllById(quantityByShopMedicine.keySet()).stream()
+                .collect(Collectors.toMap(ShopMedicine::getId, Function.identity()));
+        quantityByShopMedicine.forEach((shopMedicineId, quantity) -> {
+            ShopMedicine shopMedicine = shopMedicines.get(shopMedicineId);
+            if (shopMedicine != null) {
+                inventoryBatchService.restock(shopMedicine, quantity);
+            }
+        });
+    }
+
+    private static boolean matchesPayment(Payment payment, Map<String, Object> element) {
+        String amount = stringValue(element, "amount");
+        String currency = stringValue(element, "currency");
+        try {
+            return amount != null && new BigDecimal(amount).compareTo(payment.getAmount()) == 0
+                    && (currency == null || currency.equals(payment.getCurrency()));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String stringValue(Map<String, Object> element, String key) {
+        Object value = element != null ? element.get(key) : null;
+        return value != null ? value.toString() : null;
+    }
+}
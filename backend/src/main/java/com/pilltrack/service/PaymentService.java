@@ -8,6 +8,7 @@ import com.pilltrack.model.entity.Order;
 import com.pilltrack.model.entity.Payment;
 import com.pilltrack.model.entity.User;
 import com.pilltrack.model.enums.OrderStatus;
+import com.pilltrack.model.enums.PaymentCallbackType;
 import com.pilltrack.model.enums.PaymentStatus;
 import com.pilltrack.repository.OrderRepository;
 import com.pilltrack.repository.PaymentRepository;
@@ -15,17 +16,16 @@ import com.pilltrack.security.CurrentUser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -36,15 +36,7 @@ public class PaymentService {
     private final OrderRepository orderRepository;
     private final CurrentUser currentUser;
     private final NotificationService notificationService;
-    
-    @Value("${sslcommerz.store-id:test}")
-    private String storeId;
-    
-    @Value("${sslcommerz.store-password:test}")
-    private String storePassword;
-    
-    @Value("${sslcommerz.api-url:https://sandbox.sslcommerz.com}")
-    private String apiUrl;
+    private final SslCommerzClient sslCommerzClient;
     
     @Value("${sslcommerz.success-url:http://localhost:5173/payment/success}")
     private String successUrl;
@@ -58,7 +50,24 @@ public class PaymentService {
     @Value("${sslcommerz.ipn-url:http://localhost:8080/api/v1/payments/ipn}")
     private String ipnUrl;
     
+    private record GatewaySession(String transactionId, Map<String, String> params) {
+    }
+    
     public Map<String, Object> initiatePayment(Long orderId) {
+        GatewaySession session = prepareSession(orderId);
+        return toInitiationResult(session.transactionId(), sslCommerzClient.initiateSession(session.params()));
+    }
+    
+    /**
+     * Same as initiatePayment, but the gateway round trip does not hold the calling thread.
+     */
+    public CompletableFuture<Map<String, Object>> initiatePaymentAsync(Long orderId) {
+        GatewaySession session = prepareSession(orderId);
+        return sslCommerzClient.initiateSessionAsync(session.params())
+                .thenApply(response -> toInitiationResult(session.transactionId(), response));
+    }
+    
+    private GatewaySession prepareSession(Long orderId) {
         User user = currentUser.getUser();
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
@@ -67,80 +76,78 @@ public class PaymentService {
             throw new BadRequestException("You can only pay for your own orders");
         }
         
-        Payment payment = paymentRepository.findByOrderId(orderId)
+        // Orders from one checkout share a payment covering all of them
+        Payment payment = paymentRepository.findCoveringOrderId(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment", "order", orderId));
         
         if (payment.getStatus() == PaymentStatus.SUCCESS) {
             throw new BadRequestException("Payment already completed");
         }
         
-        // Generate transaction ID
-        String transactionId = "TXN-" + UUID.randomUUID().toString().substring(0, 12).toUpperCase();
-        payment.setTransactionId(transactionId);
+        if (order.getStatus() == OrderStatus.CANCELLED) {
+            throw new BadRequestException("Cannot pay for a cancelled order");
+        }
+        
+        // Every session reuses the payment's tran_id, so the transaction query API reports the
+        // attempts of earlier sessions too and their late callbacks still find the payment
+        String transactionId = payment.getTransactionId();
+        if (transactionId == null) {
+            transactionId = "TXN-" + UUID.randomUUID().toString().substring(0, 12).toUpperCase();
+            payment.setTransactionId(transactionId);
+        }
+        // A new session reopens a failed or cancelled attempt for callbacks and reconciliation
+        if (payment.getStatus() == PaymentStatus.FAILED || payment.getStatus() == PaymentStatus.CANCELLED) {
+            payment.setStatus(PaymentStatus.PENDING);
+        }
+        payment.setSessionStartedAt(LocalDateTime.now());
         paymentRepository.save(payment);
         
-        // Prepare SSLCommerz request
-        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
-        params.add("store_id", storeId);
-        params.add("store_passwd", storePassword);
-        params.add("total_amount", order.getTotal().toString());
-        params.add("currency", "BDT");
-        params.add("tran_id", transactionId);
-        params.add("success_url", successUrl);
-        params.add("fail_url", failUrl);
-        params.add("cancel_url", cancelUrl);
-        params.add("ipn_url", ipnUrl);
+        // Prepare SSLCommerz request; store credentials are added by the client
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("total_amount", payment.getAmount().toString());
+        params.put("currency", "BDT");
+        params.put("tran_id", transactionId);
+        params.put("success_url", successUrl);
+        params.put("fail_url", failUrl);
+        params.put("cancel_url", cancelUrl);
+        params.put("ipn_url", ipnUrl);
         
         // Customer info
-        params.add("cus_name", user.getName());
-        params.add("cus_email", user.getEmail());
-        params.add("cus_phone", order.getShippingPhone() != null ? order.getShippingPhone() : "01700000000");
-        params.add("cus_add1", order.getShippingAddress());
-        params.add("cus_city", order.getShippingCity());
-        params.add("cus_postcode", order.getShippingPostalCode() != null ? order.getShippingPostalCode() : "1000");
-        params.add("cus_country", "Bangladesh");
+        params.put("cus_name", user.getName());
+        params.put("cus_email", user.getEmail());
+        params.put("cus_phone", order.getShippingPhone() != null ? order.getShippingPhone() : "01700000000");
+        params.put("cus_add1", order.getShippingAddress());
+        params.put("cus_city", order.getShippingCity());
+        params.put("cus_postcode", order.getShippingPostalCode() != null ? order.getShippingPostalCode() : "1000");
+        params.put("cus_country", "Bangladesh");
         
         // Shipping info
-        params.add("shipping_method", "Courier");
-        params.add("ship_name", order.getShippingName());
-        params.add("ship_add1", order.getShippingAddress());
-        params.add("ship_city", order.getShippingCity());
-        params.add("ship_postcode", order.getShippingPostalCode() != null ? order.getShippingPostalCode() : "1000");
-        params.add("ship_country", "Bangladesh");
+        params.put("shipping_method", "Courier");
+        params.put("ship_name", order.getShippingName());
+        params.put("ship_add1", order.getShippingAddress());
+        params.put("ship_city", order.getShippingCity());
+        params.put("ship_postcode", order.getShippingPostalCode() != null ? order.getShippingPostalCode() : "1000");
+        params.put("ship_country", "Bangladesh");
         
         // Product info
-        params.add("product_name", "Medicine Order #" + order.getOrderNumber());
-        params.add("product_category", "Medicine");
-        params.add("product_profile", "physical-goods");
+        params.put("product_name", "Medicine Order #" + order.getOrderNumber());
+        params.put("product_category", "Medicine");
+        params.put("product_profile", "physical-goods");
         
-        try {
-            RestTemplate restTemplate = new RestTemplate();
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-            
-            HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(params, headers);
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = restTemplate.postForObject(
-                    apiUrl + "/gwprocess/v4/api.php",
-                    request,
-                    Map.class
-            );
-            
-            if (response != null && "SUCCESS".equals(response.get("status"))) {
-                Map<String, Object> result = new HashMap<>();
-                result.put("gatewayUrl", response.get("GatewayPageURL"));
-                result.put("transactionId", transactionId);
-                result.put("sessionKey", response.get("sessionkey"));
-                return result;
-            } else {
-                String error = response != null ? (String) response.get("failedreason") : "Unknown error";
-                throw new PaymentException("Payment initiation failed: " + error);
-            }
-        } catch (Exception e) {
-            log.error("Payment initiation error: ", e);
-            throw new PaymentException("Payment initiation failed: " + e.getMessage());
+        return new GatewaySession(transactionId, params);
+    }
+    
+    private Map<String, Object> toInitiationResult(String transactionId, Map<String, Object> response) {
+        if (response != null && "SUCCESS".equals(response.get("status"))) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("gatewayUrl", response.get("GatewayPageURL"));
+            result.put("transactionId", transactionId);
+            result.put("sessionKey", response.get("sessionkey"));
+            return result;
         }
+        String error = response != null ? (String) response.get("failedreason") : "Unknown error";
+        log.error("Payment initiation failed for transaction {}: {}", transactionId, error);
+        throw new PaymentException("Payment initiation failed: " + error);
     }
     
     @Transactional
@@ -152,8 +159,14 @@ public class PaymentService {
         Payment payment = paymentRepository.findByTransactionId(transactionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment", "transactionId", transactionId));
         
-        // Validate payment
-        if (validatePayment(valId)) {
+        // Already confirmed by an earlier callback: no re-validation, no repeat notifications
+        if (payment.getStatus() == PaymentStatus.SUCCESS) {
+            log.info("Ignoring repeated success callback for transaction: {}", transactionId);
+            return;
+        }
+        
+        // Success callbacks are unsigned too; a gateway error propagates and the callback is retried
+        if (sslCommerzClient.validate(valId)) {
             payment.setStatus(PaymentStatus.SUCCESS);
             payment.setValidationId(valId);
             payment.setBankTransactionId(bankTransactionId);
@@ -161,21 +174,24 @@ public class PaymentService {
             payment.setPaidAt(LocalDateTime.now());
             paymentRepository.save(payment);
             
-            // Update order status
-            Order order = payment.getOrder();
-            order.setStatus(OrderStatus.CONFIRMED);
-            order.setConfirmedAt(LocalDateTime.now());
-            orderRepository.save(order);
-            
-            // Notify user
-            notificationService.sendOrderStatusUpdate(order.getUser().getId(), order.getOrderNumber(), "CONFIRMED");
+            // Update order status of every order the payment covers
+            for (Order order : coveredOrders(payment)) {
+                if (order.getStatus() == OrderStatus.CANCELLED) {
+                    continue;
+                }
+                order.setStatus(OrderStatus.CONFIRMED);
+                order.setConfirmedAt(LocalDateTime.now());
+                orderRepository.save(order);
+                
+                // Notify user
+                notificationService.sendOrderStatusUpdate(order.getUser().getId(), order.getOrderNumber(), "CONFIRMED");
+            }
             
             log.info("Payment successful for transaction: {}", transactionId);
         } else {
-            payment.setStatus(PaymentStatus.FAILED);
-            paymentRepository.save(payment);
-            
-            log.error("Payment validation failed for transaction: {}", transactionId);
+            // A bogus val_id must not fail someone else's payment; reconciliation settles it
+            log.warn("Ignoring success callback for transaction {} with a val_id the gateway does not validate",
+                    transactionId);
         }
     }
     
@@ -186,6 +202,16 @@ public class PaymentService {
         Payment payment = paymentRepository.findByTransactionId(transactionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment", "transactionId", transactionId));
         
+        // A late failure callback must not undo a confirmed payment
+        if (payment.getStatus() == PaymentStatus.SUCCESS || payment.getStatus() == PaymentStatus.FAILED) {
+            return;
+        }
+        
+        if (!gatewayReportsUnpaid(transactionId)) {
+            log.warn("Ignoring failure callback for transaction {} the gateway does not report as failed", transactionId);
+            return;
+        }
+        
         payment.setStatus(PaymentStatus.FAILED);
         paymentRepository.save(payment);
         
@@ -199,12 +225,34 @@ public class PaymentService {
         Payment payment = paymentRepository.findByTransactionId(transactionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment", "transactionId", transactionId));
         
+        if (payment.getStatus() != PaymentStatus.PENDING && payment.getStatus() != PaymentStatus.PROCESSING) {
+            return;
+        }
+        
+        if (!gatewayReportsUnpaid(transactionId)) {
+            log.warn("Ignoring cancel callback for transaction {} the gateway does not report as cancelled", transactionId);
+            return;
+        }
+        
         payment.setStatus(PaymentStatus.CANCELLED);
         paymentRepository.save(payment);
         
         log.info("Payment cancelled for transaction: {}", transactionId);
     }
     
+    /**
+     * Apply a queued gateway callback. Called once per distinct callback by PaymentCallbackProcessor.
+     */
+    @Transactional
+    public void handleCallback(PaymentCallbackType type, Map<String, String> params) {
+        switch (type) {
+            case SUCCESS -> handlePaymentSuccess(params);
+            case FAIL -> handlePaymentFailure(params);
+            case CANCEL -> handlePaymentCancel(params);
+            case IPN -> handleIpn(params);
+        }
+    }
+    
     @Transactional
     public void handleIpn(Map<String, String> params) {
         String transactionId = params.get("tran_id");
@@ -216,6 +264,8 @@ public class PaymentService {
             handlePaymentSuccess(params);
         } else if ("FAILED".equals(status)) {
             handlePaymentFailure(params);
+        } else if ("CANCELLED".equals(status)) {
+            handlePaymentCancel(params);
         }
     }
     
@@ -228,7 +278,7 @@ public class PaymentService {
             throw new BadRequestException("You don't have permission to view this payment");
         }
         
-        Payment payment = paymentRepository.findByOrderId(orderId)
+        Payment payment = paymentRepository.findCoveringOrderId(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment", "order", orderId));
         
         return mapToResponse(payment);
@@ -241,26 +291,40 @@ public class PaymentService {
         return mapToResponse(payment);
     }
     
-    private boolean validatePayment(String valId) {
-        if (valId == null || valId.isEmpty()) {
+    private List<Order> coveredOrders(Payment payment) {
+        String checkoutReference = payment.getOrder().getCheckoutReference();
+        return checkoutReference != null ?
+                orderRepository.findByCheckoutReference(checkoutReference) : List.of(payment.getOrder());
+    }
+    
+    /**
+     * Fail and cancel callbacks are unsigned and anyone can post them, so they only count once the
+     * transaction query API shows no paid attempt and at least one failed, cancelled or expired one.
+     * A gateway error propagates, which leaves the callback queued for a retry.
+     */
+    private boolean gatewayReportsUnpaid(String transactionId) {
+        Object elements = sslCommerzClient.queryTransaction(transactionId).get("element");
+        if (!(elements instanceof List<?> list)) {
             return false;
         }
-        
-        try {
-            RestTemplate restTemplate = new RestTemplate();
-            String validationUrl = String.format(
-                    "%s/validator/api/validationserverAPI.php?val_id=%s&store_id=%s&store_passwd=%s&format=json",
-                    apiUrl, valId, storeId, storePassword
-            );
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = restTemplate.getForObject(validationUrl, Map.class);
-            
-            return response != null && "VALID".equals(response.get("status"));
-        } catch (Exception e) {
-            log.error("Payment validation error: ", e);
-            return false;
+        boolean unpaid = false;
+        for (Object item : list) {
+            if (!(item instanceof Map<?, ?> element)) {
+                continue;
+            }
+            String status = String.valueOf(element.get("status"));
+            if ("VALID".equals(status) || "VALIDATED".equals(status)) {
+                return false;
+            }
+            if ("FAILED".equals(status) || "CANCELLED".equals(status) || "EXPIRED".equals(status)) {
+                unpaid = true;
+            }
         }
+        return unpaid;
+    }
+    
+    public Map<String, Object> getGatewayStats() {
+        return sslCommerzClient.getStats();
     }
     
     private PaymentResponse mapToResponse(Payment payment) {
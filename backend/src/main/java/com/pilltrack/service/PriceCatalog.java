@@ -0,0 +1,130 @@
+package com.pilltrack.service;
+
+import com.pilltrack.model.entity.ShopMedicine;
+import com.pilltrack.repository.ShopMedicineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory, version-stamped price snapshots per shop medicine.
+ * ShopMedicine.priceVersion in the database is the source of truth: a snapshot is only served
+ * when its version matches the version the caller asks for, so a stale entry is never used and
+ * no invalidation across instances is needed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PriceCatalog {
+
+    private static final int MAX_ENTRIES = 50_000;
+
+    private final ShopMedicineRepository shopMedicineRepository;
+
+    private final Map<Long, PriceSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong versionChecks = new AtomicLong();
+    private final AtomicLong staleLines = new AtomicLong();
+
+    public record PriceSnapshot(Long shopMedicineId, Long version, BigDecimal price, BigDecimal discountPrice) {
+        public BigDecimal effectivePrice() {
+            return discountPrice != null ? discountPrice : price;
+        }
+    }
+
+    /**
+     * Current price versions of the given shop medicines, in one query.
+     */
+    public Map<Long, Long> currentVersions(Collection<Long> shopMedicineIds) {
+        versionChecks.incrementAndGet();
+        Map<Long, Long> versions = new HashMap<>();
+        for (Object[] row : shopMedicineRepository.findPriceVersionsByIdIn(shopMedicineIds)) {
+            versions.put((Long) row[0], (Long) row[1]);
+        }
+        return versions;
+    }
+
+    /**
+     * Snapshots at exactly the requested versions (shop medicine id -> version). Entries cached
+     * at another version are reloaded, all misses in one query.
+     */
+    public Map<Long, PriceSnapshot> snapshots(Map<Long, Long> requiredVersions) {
+        Map<Long, PriceSnapshot> result = new LinkedHashMap<>();
+        List<Long> missing = requiredVersions.entrySet().stream()
+                .filter(e -> {
+                    PriceSnapshot cached = snapshots.get(e.getKey());
+                    if (cached != null && cached.version().equals(e.getValue())) {
+                        result.put(e.getKey(), cached);
+                        return false;
+                    }
+                    return true;
+                })
+                .map(Map.Entry::getKey)
+                .toList();
+        hits.addAndGet(result.size());
+
+        if (!missing.isEmpty()) {
+            misses.addAndGet(missing.size());
+            for (Object[] row : shopMedicineRepository.findPricesByIdIn(missing)) {
+                PriceSnapshot snapshot = new PriceSnapshot((Long) row[0], (Long) row[1],
+                        (BigDecimal) row[2], (BigDecimal) row[3]);
+                remember(snapshot);
+                result.put(snapshot.shopMedicineId(), snapshot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Snapshot of an entity already loaded by the caller.
+     */
+    public PriceSnapshot snapshotOf(ShopMedicine shopMedicine) {
+        PriceSnapshot cached = snapshots.get(shopMedicine.getId());
+        if (cached != null && cached.version().equals(shopMedicine.getPriceVersion())) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        PriceSnapshot snapshot = new PriceSnapshot(shopMedicine.getId(), shopMedicine.getPriceVersion(),
+                shopMedicine.getPrice(), shopMedicine.getDiscountPrice());
+        remember(snapshot);
+        return snapshot;
+    }
+
+    public void recordStaleLines(int count) {
+        staleLines.addAndGet(count);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", snapshots.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("versionChecks", versionChecks.get());
+        stats.put("staleLinesRepriced", staleLines.get());
+        return stats;
+    }
+
+    private void remember(PriceSnapshot snapshot) {
+        if (snapshot.shopMedicineId() == null || snapshot.version() == null) {
+            return;
+        }
+        if (snapshots.size() >= MAX_ENTRIES) {
+            // Crude bound; entries are cheap to reload
+            log.debug("Price catalog full, clearing {} entries", snapshots.size());
+            snapshots.clear();
+        }
+        snapshots.merge(snapshot.shopMedicineId(), snapshot,
+                (old, fresh) -> fresh.version() >= old.version() ? fresh : old);
+    }
+}
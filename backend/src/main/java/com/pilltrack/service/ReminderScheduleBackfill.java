@@ -0,0 +1,66 @@
+package com.pilltrack.service;
+
+import com.pilltrack.model.entity.Reminder;
+import com.pilltrack.repository.ReminderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Compiles and saves, once, the schedules of active reminders saved before schedules were compiled
+ * (schedule_minutes is null), so nextDose never parses scheduleInfo. Reminders whose rules do not
+ * compile are deactivated rather than retried.
+ * Runs on startup, one page per transaction. Saved rows leave the query, so a run cut short is finished
+ * by the next start and nodes starting together only repeat the same writes. The saves bump updated_at,
+ * which is how every node's reminder wheel picks the rows up.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReminderScheduleBackfill {
+
+    private final ReminderRepository reminderRepository;
+    private final ReminderScheduleCompiler scheduleCompiler;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.jobs.chunk-size:500}")
+    private int pageSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void compileLegacySchedules() {
+        int[] compiled = {0};
+        int[] deactivated = {0};
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            List<Reminder> page = transactionTemplate.execute(status -> {
+                List<Reminder> reminders = reminderRepository.findActiveUncompiledAfter(from, PageRequest.of(0, pageSize));
+                for (Reminder reminder : reminders) {
+                    if (scheduleCompiler.compile(reminder)) {
+                        compiled[0]++;
+                    } else {
+                        reminder.setIsActive(false);
+                        deactivated[0]++;
+                    }
+                }
+                return reminders;
+            });
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+
+        if (compiled[0] > 0 || deactivated[0] > 0) {
+            log.info("Reminder schedule backfill: {} reminders compiled, {} with invalid rules deactivated",
+                    compiled[0], deactivated[0]);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.pilltrack.service;
+
+import com.pilltrack.exception.BadRequestException;
+import com.pilltrack.model.entity.Medication;
+import com.pilltrack.model.entity.Reminder;
+import com.pilltrack.model.enums.MealAnchor;
+import com.pilltrack.model.enums.ReminderType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles reminder rules into the typed schedule stored on Reminder, once, when they are saved:
+ * <ul>
+ *   <li>FIXED_TIME: dose times "HH:mm" become ascending minutes of the day</li>
+ *   <li>MEAL_BASED: meal anchors with an optional offset ("BREAKFAST-30", "DINNER+15") become minutes
+ *   of the day, using the meal times in app.reminders.meals</li>
+ *   <li>INTERVAL_BASED: one first dose time plus the interval in seconds, repeating from the medication's
+ *   start date</li>
+ * </ul>
+ * scheduleInfo keeps the normalized rules for display.
+ */
+@Component
+@Slf4j
+public class ReminderScheduleCompiler {
+    
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int MINUTES_PER_DAY = 24 * MINUTES_PER_HOUR;
+    // Bound on the occurrence search; schedules repeat at least weekly
+    private static final long MAX_LOOKAHEAD_MINUTES = 8L * MINUTES_PER_DAY;
+    private static final int MIN_INTERVAL_MINUTES = 30;
+    private static final int MAX_INTERVAL_MINUTES = 7 * MINUTES_PER_DAY;
+    private static final Pattern MEAL_RULE = Pattern.compile("([A-Za-z]+)\\s*(?:([+-])\\s*(\\d{1,3}))?");
+    
+    private final Map<MealAnchor, Integer> mealMinutes = new EnumMap<>(MealAnchor.class);
+    
+    public ReminderScheduleCompiler(@Value("${app.reminders.meals.breakfast:08:00}") String breakfast,
+                                    @Value("${app.reminders.meals.lunch:13:00}") String lunch,
+                                    @Value("${app.reminders.meals.dinner:20:00}") String dinner,
+                                    @Value("${app.reminders.meals.bedtime:22:30}") String bedtime) {
+        mealMinutes.put(MealAnchor.BREAKFAST, LocalTime.parse(breakfast).toSecondOfDay() / 60);
+        mealMinutes.put(MealAnchor.LUNCH, LocalTime.parse(lunch).toSecondOfDay() / 60);
+        mealMinutes.put(MealAnchor.DINNER, LocalTime.parse(dinner).toSecondOfDay() / 60);
+        mealMinutes.put(MealAnchor.BEDTIME, LocalTime.parse(bedtime).toSecondOfDay() / 60);
+    }
+    
+    public record CompiledSchedule(String scheduleInfo, int[] minutes, Integer intervalSeconds) {}
+    
+    /**
+     * A dose: its UTC epoch minute and its wall-clock time in the user's zone.
+     */
+    public record Occurrence(long epochMinute, LocalDateTime doseTime) {}
+    
+    /**
+     * Compile the rules of a new reminder; invalid rules are rejected.
+     */
+    public CompiledSchedule compile(ReminderType type, List<String> rules, Integer intervalMinutes) {
+        if (rules == null || rules.isEmpty()) {
+            throw new BadRequestException("At least one reminder time is required");
+        }
+        ReminderType reminderType = type != null ? type : ReminderType.FIXED_TIME;
+        switch (reminderType) {
+            case FIXED_TIME -> {
+                int[] minutes = sorted(rules.stream().mapToInt(this::parseTime).toArray());
+                return new CompiledSchedule(format(minutes), minutes, null);
+            }
+            case MEAL_BASED -> {
+                int[] minutes = sorted(rules.stream().mapToInt(this::parseMealRule).toArray());
+                String info = rules.stream().map(this::normalizeMealRule).collect(Collectors.joining(","));
+                return new CompiledSchedule(info, minutes, null);
+            }
+            case INTERVAL_BASED -> {
+                if (rules.size() != 1) {
+                    throw new BadRequestException("Interval reminders take exactly one first dose time");
+                }
+                if (intervalMinutes == null || intervalMinutes < MIN_INTERVAL_MINUTES
+                        || intervalMinutes > MAX_INTERVAL_MINUTES) {
+                    throw new BadRequestException(String.format("Reminder interval must be between %d and %d minutes",
+                            MIN_INTERVAL_MINUTES, MAX_INTERVAL_MINUTES));
+                }
+                int[] minutes = {parseTime(rules.get(0))};
+                return new CompiledSchedule(format(minutes), minutes, intervalMinutes * 60);
+            }
+            default -> throw new BadRequestException("Unsupported reminder type: " + reminderType);
+        }
+    }
+    
+    /**
+     * Compile a reminder saved before schedules were compiled, from its scheduleInfo (see
+     * ReminderScheduleBackfill). Returns false (and logs) when the stored rules cannot be compiled.
+     */
+    public boolean compile(Reminder reminder) {
+        try {
+            List<String> rules = splitRules(reminder.getScheduleInfo());
+            Integer intervalMinutes = reminder.getIntervalSeconds() != null ? reminder.getIntervalSeconds() / 60 : null;
+            CompiledSchedule schedule = compile(reminder.getReminderType(), rules, intervalMinutes);
+            reminder.setScheduleMinutes(schedule.minutes());
+            reminder.setIntervalSeconds(schedule.intervalSeconds());
+            return true;
+        } catch (BadRequestException e) {
+            log.warn("Could not compile schedule info: {} for reminder: {} ({})",
+                    reminder.getScheduleInfo(), reminder.getId(), e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * First dose of a reminder strictly after the given UTC epoch minute, within the medication's dates,
+     * or null if there is none. The medication must be loaded; reminders without a compiled schedule have
+     * none until ReminderScheduleBackfill compiles them. Steps through the compiled schedule in local epoch
+     * minutes; only the resolution to UTC looks at the zone.
+     */
+    public Occurrence nextDose(Reminder reminder, ZoneId zone, long afterMinute) {
+        if (reminder.getReminderType() == null || reminder.getScheduleMinutes() == null) {
+            return null;
+        }
+        int[] minutes = reminder.getScheduleMinutes();
+        if (minutes.length == 0) {
+            return null;
+        }
+        long intervalMinutes = reminder.getReminderType() == ReminderType.INTERVAL_BASED
+                && reminder.getIntervalSeconds() != null ? reminder.getIntervalSeconds() / 60 : 0;
+        Medication medication = reminder.getMedication();
+        ZoneRules rules = zone.getRules();
+        
+        long startDay = medication.getStartDate() != null ? medication.getStartDate().toEpochDay() : 0;
+        long endLocal = medication.getEndDate() != null
+                ? (medication.getEndDate().toEpochDay() + 1) * MINUTES_PER_DAY : Long.MAX_VALUE;
+        
+        // Start two hours early in local time: DST can move a local time either way by up to that much
+        long from = Math.max(afterMinute + offsetMinutes(rules, afterMinute) - 2 * MINUTES_PER_HOUR,
+                startDay * MINUTES_PER_DAY);
+        long bestLocal = -1;
+        long bestDose = Long.MAX_VALUE;
+        for (long local = occurrenceAtOrAfter(minutes, intervalMinutes, startDay, from);
+             local < endLocal && local < from + MAX_LOOKAHEAD_MINUTES;
+             local = occurrenceAtOrAfter(minutes, intervalMinutes, startDay, local + 1)) {
+            long dose = toEpochMinute(local, zone, rules);
+            if (dose > afterMinute && dose < bestDose) {
+                bestLocal = local;
+                bestDose = dose;
+            }
+            // Gap times resolve later than their neighbours, so look a little past the first match
+            if (bestLocal >= 0 && local >= bestLocal + 2 * MINUTES_PER_HOUR) {
+                break;
+            }
+        }
+        if (bestLocal < 0) {
+            return null;
+        }
+        return new Occurrence(bestDose, LocalDateTime.ofEpochSecond(bestLocal * 60, 0, ZoneOffset.UTC));
+    }
+    
+    /**
+     * The rules of a stored scheduleInfo, as given when the reminder was created.
+     */
+    public static List<String> splitRules(String scheduleInfo) {
+        if (scheduleInfo == null || scheduleInfo.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(scheduleInfo.split(","))
+                .map(String::trim)
+                .filter(rule -> !rule.isEmpty())
+                .collect(Collectors.toList());
+    }
+    
+    private int parseTime(String time) {
+        try {
+            return LocalTime.parse(time.trim()).toSecondOfDay() / 60;
+        } catch (DateTimeException | NullPointerException e) {
+            throw new BadRequestException("Invalid reminder time: " + time + " (expected HH:mm)");
+        }
+    }
+    
+    private int parseMealRule(String rule) {
+        Matcher matcher = matchMealRule(rule);
+        int minute = mealMinutes.get(MealAnchor.valueOf(matcher.group(1).toUpperCase(Locale.ROOT)));
+        if (matcher.group(2) != null) {
+            int offset = Integer.parseInt(matcher.group(3));
+            minute += "-".equals(matcher.group(2)) ? -offset : offset;
+        }
+        return Math.floorMod(minute, MINUTES_PER_DAY);
+    }
+    
+    private String normalizeMealRule(String rule) {
+        Matcher matcher = matchMealRule(rule);
+        String anchor = matcher.group(1).toUpperCase(Locale.ROOT);
+        return matcher.group(2) != null ? anchor + matcher.group(2) + Integer.parseInt(matcher.group(3)) : anchor;
+    }
+    
+    private Matcher matchMealRule(String rule) {
+        Matcher matcher = MEAL_RULE.matcher(rule != null ? rule.trim() : "");
+        if (!matcher.matches() || Arrays.stream(MealAnchor.values())
+                .noneMatch(anchor -> anchor.name().equalsIgnoreCase(matcher.group(1)))) {
+            throw new BadRequestException("Invalid meal reminder: " + rule
+                    + " (expected BREAKFAST, LUNCH, DINNER or BEDTIME with an optional +/- minutes offset)");
+        }
+        return matcher;
+    }
+    
+    // First scheduled local epoch minute at or after the given one
+    private static long occurrenceAtOrAfter(int[] minutes, long intervalMinutes, long startDay, long local) {
+        if (intervalMinutes > 0) {
+            long first = startDay * MINUTES_PER_DAY + minutes[0];
+            return local <= first ? first : first + ceilDiv(local - first, intervalMinutes) * intervalMinutes;
+        }
+        long day = Math.floorDiv(local, MINUTES_PER_DAY);
+        long minuteOfDay = Math.floorMod(local, MINUTES_PER_DAY);
+        for (int minute : minutes) {
+            if (minute >= minuteOfDay) {
+                return day * MINUTES_PER_DAY + minute;
+            }
+        }
+        return (day + 1) * MINUTES_PER_DAY + minutes[0];
+    }
+    
+    // A local time in a spring-forward gap moves forward by the gap; in an overlap the earlier offset wins
+    private static long toEpochMinute(long local, ZoneId zone, ZoneRules rules) {
+        if (rules.isFixedOffset()) {
+            return local - rules.getOffset(Instant.EPOCH).getTotalSeconds() / 60;
+        }
+        LocalDateTime localTime = LocalDateTime.ofEpochSecond(local * 60, 0, ZoneOffset.UTC);
+        return Math.floorDiv(ZonedDateTime.ofLocal(localTime, zone, null).toEpochSecond(), 60);
+    }
+    
+    private static long offsetMinutes(ZoneRules rules, long epochMinute) {
+        return rules.getOffset(Instant.ofEpochSecond(epochMinute * 60)).getTotalSeconds() / 60;
+    }
+    
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+    
+    private static int[] sorted(int[] minutes) {
+        return Arrays.stream(minutes).distinct().sorted().toArray();
+    }
+    
+    private static String format(int[] minutes) {
+        return Arrays.stream(minutes)
+                .mapToObj(minute -> LocalTime.ofSecondOfDay(minute * 60L).toString())
+                .collect(Collectors.joining(","));
+    }
+}
@@ -2,6 +2,7 @@ package com.pilltrack.service;
 
 import com.pilltrack.model.entity.Medication;
 import com.pilltrack.model.entity.Reminder;
+import com.pilltrack.model.enums.MedicationStatus;
 import com.pilltrack.model.enums.ReminderType;
 import com.pilltrack.repository.ReminderRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,50 +10,74 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ReminderService {
     
+    public static final String JOB_NAME = "medicationReminder";
+    
+    private static final Comparator<ReminderWheel.Due> TICK_ORDER = Comparator
+            .comparingLong(ReminderWheel.Due::fireMinute)
+            .thenComparing(ReminderWheel.Due::reminderId);
+    
     private final ReminderRepository reminderRepository;
+    private final ReminderWheel reminderWheel;
+    private final NotificationService notificationService;
+    private final UserTimeZones userTimeZones;
+    private final ReminderScheduleCompiler scheduleCompiler;
+    private final DoseLogPlanner doseLogPlanner;
+    private final ChunkedJobRunner jobRunner;
+    private final AdherenceRollupService adherenceRollups;
     
+    /**
+     * Create the reminder of a medication. The rules are compiled up front (see ReminderScheduleCompiler);
+     * invalid ones are rejected with a BadRequestException.
+     */
     @Transactional
-    public void createRemindersForMedication(Medication medication, List<String> reminderTimes, Integer minutesBefore) {
+    public void createRemindersForMedication(Medication medication, ReminderType type, List<String> rules,
+                                             Integer intervalMinutes, Integer minutesBefore) {
+        if (rules == null || rules.isEmpty()) {
+            return;
+        }
         int reminderMinutes = minutesBefore != null ? minutesBefore : 5; // Default to 5 minutes before
+        ReminderType reminderType = type != null ? type : ReminderType.FIXED_TIME;
+        ReminderScheduleCompiler.CompiledSchedule schedule = scheduleCompiler.compile(reminderType, rules, intervalMinutes);
         
-        for (String timeStr : reminderTimes) {
-            try {
-                LocalTime time = LocalTime.parse(timeStr, DateTimeFormatter.ofPattern("HH:mm"));
-                
-                // Adjust time for early reminder if specified
-                LocalTime reminderTime = time.minusMinutes(reminderMinutes);
-                
-                // Create cron expression: seconds minutes hours * * ?
-                String cronExpression = String.format("0 %d %d * * ?", reminderTime.getMinute(), reminderTime.getHour());
-                
-                Reminder reminder = Reminder.builder()
-                        .medication(medication)
-                        .reminderType(ReminderType.FIXED_TIME)
-                        .scheduleInfo(timeStr) // Keep original time for display
-                        .cronExpression(cronExpression)
-                        .jobKey("reminder_" + medication.getId() + "_" + UUID.randomUUID().toString().substring(0, 8))
-                        .isActive(true)
-                        .minutesBefore(reminderMinutes)
-                        .build();
-                
-                reminderRepository.save(reminder);
-                log.info("Reminder created for medication {} at {} ({} min before)", 
-                        medication.getName(), time, reminderMinutes);
-                
-            } catch (Exception e) {
-                log.error("Failed to create reminder for time: {}", timeStr, e);
-            }
-        }
+        Reminder reminder = Reminder.builder()
+                .medication(medication)
+                .reminderType(reminderType)
+                .scheduleInfo(schedule.scheduleInfo()) // Keep normalized rules for display
+                .scheduleMinutes(schedule.minutes())
+                .intervalSeconds(schedule.intervalSeconds())
+                .jobKey("reminder_" + medication.getId() + "_" + UUID.randomUUID().toString().substring(0, 8))
+                .isActive(true)
+                .minutesBefore(reminderMinutes)
+                .build();
+        
+        reminderRepository.save(reminder);
+        ZoneId zone = userTimeZones.zoneOf(medication.getUser().getId());
+        reminderWheel.schedule(reminder, zone);
+        doseLogPlanner.plan(List.of(reminder), Map.of(medication.getUser().getId(), zone));
+        log.info("{} reminder created for medication {} at {} ({} min before)",
+                reminderType, medication.getName(), schedule.scheduleInfo(), reminderMinutes);
+    }
+    
+    @Transactional
+    public void createRemindersForMedication(Medication medication, List<String> reminderTimes, Integer minutesBefore) {
+        createRemindersForMedication(medication, ReminderType.FIXED_TIME, reminderTimes, null, minutesBefore);
     }
     
     @Transactional
@@ -61,12 +86,18 @@ public class ReminderService {
     }
     
     @Transactional
-    public void updateRemindersForMedication(Medication medication, List<String> reminderTimes, Integer minutesBefore) {
+    public void updateRemindersForMedication(Medication medication, ReminderType type, List<String> rules,
+                                             Integer intervalMinutes, Integer minutesBefore) {
         // Deactivate existing reminders
         deactivateRemindersForMedication(medication.getId());
         
         // Create new reminders
-        createRemindersForMedication(medication, reminderTimes, minutesBefore);
+        createRemindersForMedication(medication, type, rules, intervalMinutes, minutesBefore);
+    }
+    
+    @Transactional
+    public void updateRemindersForMedication(Medication medication, List<String> reminderTimes, Integer minutesBefore) {
+        updateRemindersForMedication(medication, ReminderType.FIXED_TIME, reminderTimes, null, minutesBefore);
     }
     
     @Transactional
@@ -80,10 +111,123 @@ public class ReminderService {
         for (Reminder reminder : reminders) {
             reminder.setIsActive(false);
             reminderRepository.save(reminder);
+            reminderWheel.cancel(reminder.getId());
+        }
+        if (!reminders.isEmpty()) {
+            // Planned doses past now no longer apply
+            Long userId = reminders.get(0).getMedication().getUser().getId();
+            adherenceRollups.deletePendingAfter(userId, medicationId, userTimeZones.now(userId));
         }
         log.info("Deactivated {} reminders for medication {}", reminders.size(), medicationId);
     }
     
+    /**
+     * Re-plan the active reminders of a medication after its dates or status changed: future pending
+     * doses are dropped and planned again from the current schedule.
+     */
+    @Transactional
+    public void rescheduleRemindersForMedication(Medication medication) {
+        Long userId = medication.getUser().getId();
+        ZoneId zone = userTimeZones.zoneOf(userId);
+        adherenceRollups.deletePendingAfter(userId, medication.getId(), userTimeZones.now(userId));
+        // Wheels on other nodes pick the change up by updatedAt
+        reminderRepository.touchByMedicationId(medication.getId(), LocalDateTime.now());
+        List<Reminder> reminders = reminderRepository.findByMedicationIdAndIsActiveTrue(medication.getId());
+        for (Reminder reminder : reminders) {
+            reminderWheel.schedule(reminder, zone);
+        }
+        doseLogPlanner.plan(reminders, Map.of(userId, zone));
+    }
+    
+    /**
+     * Fire the reminders of a shard the wheel has due by now: make sure their pending doses exist (one
+     * insert, normally a no-op after the planner ran) and notify the users in one batch, then schedule
+     * each reminder's next occurrence. Minutes up to the watermark were fired by an earlier run.
+     * Due reminders are processed in chunks by (fire minute, reminder id), each in its own transaction
+     * (see ChunkedJobRunner); if a chunk fails, the shard's wheel is dropped so the next tick hands the
+     * reminders out again, and the chunks already committed are skipped by their checkpoint.
+     * Returns the new watermark.
+     */
+    public long fireDueReminders(int shard, Long watermark) {
+        ReminderWheel.Tick tick;
+        try {
+            tick = reminderWheel.advance(shard, watermark, Instant.now());
+        } catch (RuntimeException e) {
+            reminderWheel.reset(shard);
+            throw e;
+        }
+        long minute = watermark != null ? Math.max(watermark, tick.minute()) : tick.minute();
+        if (tick.due().isEmpty() && tick.passed().isEmpty()) {
+            return minute;
+        }
+        
+        // Passed reminders were fired by another node and only need their next occurrence scheduled
+        Set<ReminderWheel.Due> passed = new HashSet<>(tick.passed());
+        List<ReminderWheel.Due> items = new ArrayList<>(tick.due());
+        items.addAll(tick.passed());
+        items.sort(TICK_ORDER);
+        
+        ChunkedJobRunner.RunResult result;
+        try {
+            result = jobRunner.run(JOB_NAME, shard,
+                    (checkpoint, chunkSize) -> {
+                        ReminderWheel.Due after = checkpoint != null ? parseCheckpoint(checkpoint) : null;
+                        return items.stream()
+                                .filter(due -> after == null || TICK_ORDER.compare(due, after) > 0)
+                                .limit(chunkSize)
+                                .collect(Collectors.toList());
+                    },
+                    chunk -> fireChunk(chunk, passed));
+        } catch (RuntimeException e) {
+            reminderWheel.reset(shard);
+            throw e;
+        }
+        
+        log.info("Shard {}: processed {} due and {} passed reminders in {} chunks in {} ms",
+                shard, tick.due().size(), passed.size(), result.chunks(), result.millis());
+        return minute;
+    }
+    
+    // Returns the checkpoint of the chunk's last reminder
+    private String fireChunk(List<ReminderWheel.Due> chunk, Set<ReminderWheel.Due> passed) {
+        Map<Long, ReminderWheel.Due> dueById = chunk.stream()
+                .collect(Collectors.toMap(ReminderWheel.Due::reminderId, due -> due, (a, b) -> a));
+        List<Reminder> reminders = reminderRepository.findAllWithMedicationByIdIn(dueById.keySet());
+        Map<Long, ZoneId> zones = userTimeZones.zonesOf(reminders.stream()
+                .map(r -> r.getMedication().getUser().getId())
+                .collect(Collectors.toSet()));
+        List<DoseLogPlanner.PlannedDose> doses = new ArrayList<>();
+        List<NotificationService.NotificationDraft> drafts = new ArrayList<>();
+        for (Reminder reminder : reminders) {
+            Medication medication = reminder.getMedication();
+            ReminderWheel.Due due = dueById.get(reminder.getId());
+            reminderWheel.schedule(reminder, zones.get(medication.getUser().getId()));
+            
+            // Paused medications keep their place in the wheel but are not reminded
+            if (passed.contains(due) || !reminder.getIsActive() || medication.getStatus() != MedicationStatus.ACTIVE) {
+                continue;
+            }
+            
+            doses.add(new DoseLogPlanner.PlannedDose(medication.getUser().getId(), medication.getId(), due.doseTime()));
+            drafts.add(notificationService.medicationReminder(medication.getUser().getId(),
+                    medication.getName(), medication.getDosage(), due.doseTime().toLocalTime()));
+        }
+        
+        // The wheel hands out each occurrence once, so duplicates are only possible across instances
+        int created = doseLogPlanner.materialize(doses);
+        notificationService.createNotifications(drafts);
+        log.debug("Fired {} reminders ({} dose logs not planned ahead)", drafts.size(), created);
+        
+        ReminderWheel.Due last = chunk.get(chunk.size() - 1);
+        return last.fireMinute() + ":" + last.reminderId();
+    }
+    
+    private static ReminderWheel.Due parseCheckpoint(String checkpoint) {
+        int colon = checkpoint.indexOf(':');
+        return new ReminderWheel.Due(Long.parseLong(checkpoint.substring(colon + 1)),
+                Long.parseLong(checkpoint.substring(0, colon)), null);
+    }
+    
     @Transactional(readOnly = true)
     public List<Reminder> getActiveRemindersForUser(Long userId) {
         return reminderRepository.findActiveByUserId(userId);
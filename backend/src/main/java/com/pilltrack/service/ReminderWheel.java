@@ -0,0 +1,314 @@
+package com.pilltrack.service;
+
+import com.pilltrack.model.entity.Reminder;
+import com.pilltrack.repository.ReminderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Hierarchical timing wheels of the next fire minute of every active reminder, one per user shard
+ * (see ShardLeaseManager).
+ * Three levels of slots (minutes of the hour, hours of the day, days of the month) hold entries
+ * by absolute UTC epoch minute; as a wheel turns, a slot of a coarser level is cascaded into the
+ * finer ones, so each tick only touches the reminders due in that minute.
+ * Fire minutes are computed from the dose time in the user's own zone, so DST shifts are applied
+ * per date: a dose time in a spring-forward gap fires at the first valid time after it, and in an
+ * autumn overlap at the earlier of the two.
+ * A shard's wheel is built from the database the first time this node processes the shard, and
+ * before each tick picks up reminders changed since (edits may have been made on another node).
+ * Shards move between nodes, so each tick starts from the watermark the previous run left on the
+ * shard's lease: minutes another node already fired are passed without firing again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReminderWheel {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final int MINUTE_SLOTS = 60;
+    private static final int HOUR_SLOTS = 24;
+    private static final int DAY_SLOTS = 32;
+    private static final long MINUTES_PER_HOUR = 60;
+    private static final long MINUTES_PER_DAY = MINUTES_PER_HOUR * HOUR_SLOTS;
+    private static final long WHEEL_SPAN = MINUTES_PER_DAY * DAY_SLOTS;
+
+    // Reminders that came due at most this long before a tick (e.g. during a restart) still fire
+    private static final long CATCH_UP_MINUTES = 5;
+
+    // Change scans look back this much further, for clock differences between nodes
+    private static final long SYNC_OVERLAP_SECONDS = 120;
+
+    private final ReminderRepository reminderRepository;
+    private final UserTimeZones userTimeZones;
+    private final ReminderScheduleCompiler scheduleCompiler;
+    private final ShardLeaseManager shardLeases;
+
+    private final Map<Integer, ShardWheel> wheels = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+    private volatile LocalDateTime builtAt;
+    private volatile long buildMillis;
+
+    private record Entry(Long reminderId, long fireMinute, LocalDateTime doseTime) {}
+
+    /**
+     * A reminder that came due at fireMinute and the dose time it announces, in the user's zone.
+     */
+    public record Due(Long reminderId, long fireMinute, LocalDateTime doseTime) {}
+
+    /**
+     * Result of a tick: the reminders due, the reminders whose minute another node already fired
+     * (they only need their next occurrence scheduled), and the minute the wheel is at now.
+     */
+    public record Tick(List<Due> due, List<Due> passed, long minute) {}
+
+    /**
+     * Turn the wheel of a shard up to the given time. Minutes up to the watermark (the last minute
+     * fired for the shard, by any node) are passed, later ones fire. Due and passed reminders leave
+     * the wheel; the caller schedules their next occurrence.
+     */
+    public Tick advance(int shard, Long watermark, Instant now) {
+        long target = Math.floorDiv(now.getEpochSecond(), 60);
+        long start = Math.max(watermark != null ? watermark : Long.MIN_VALUE, target - CATCH_UP_MINUTES - 1);
+        ShardWheel wheel = wheels.computeIfAbsent(shard, ShardWheel::new);
+        synchronized (wheel) {
+            if (wheel.currentMinute < 0) {
+                build(wheel, start);
+            } else {
+                sync(wheel);
+            }
+            List<Due> passedDue = wheel.currentMinute < start ? wheel.turn(Math.min(start, target)) : List.of();
+            List<Due> due = wheel.turn(target);
+            fired.addAndGet(due.size());
+            passed.addAndGet(passedDue.size());
+            return new Tick(due, passedDue, wheel.currentMinute);
+        }
+    }
+
+    /**
+     * (Re)schedule the next occurrence of a reminder after its wheel's current minute, in the given
+     * user zone. The reminder's medication must be loaded. Inactive or finished reminders are dropped.
+     */
+    public void schedule(Reminder reminder, ZoneId zone) {
+        if (reminder.getId() == null) {
+            return;
+        }
+        ShardWheel wheel = wheels.get(shardLeases.shardOf(reminder.getMedication().getUser().getId()));
+        if (wheel == null) {
+            // Not built on this node; the first tick of the shard loads it from the database
+            return;
+        }
+        synchronized (wheel) {
+            if (wheel.currentMinute >= 0) {
+                wheel.put(reminder.getId(), nextEntry(reminder, wheel.currentMinute, zone));
+            }
+        }
+    }
+
+    /**
+     * Drop the wheel of a shard, e.g. after a tick failed to process what it handed out; the next tick
+     * builds it again from the watermark and hands those reminders out again.
+     */
+    public void reset(int shard) {
+        wheels.remove(shard);
+    }
+
+    public void cancel(Long reminderId) {
+        for (ShardWheel wheel : wheels.values()) {
+            synchronized (wheel) {
+                wheel.scheduled.remove(reminderId);
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (ShardWheel wheel : wheels.values()) {
+            synchronized (wheel) {
+                size += wheel.scheduled.size();
+            }
+        }
+        return size;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shardsBuilt", wheels.size());
+        stats.put("scheduled", size());
+        stats.put("fired", fired.get());
+        stats.put("passed", passed.get());
+        stats.put("builds", builds.get());
+        stats.put("builtAt", builtAt);
+        stats.put("buildMillis", buildMillis);
+        return stats;
+    }
+
+    private void build(ShardWheel wheel, long startMinute) {
+        long started = System.currentTimeMillis();
+        wheel.currentMinute = startMinute;
+        wheel.syncedAt = LocalDateTime.now();
+        // Earliest "today" of any zone; nextEntry applies each medication's end date exactly
+        LocalDate today = LocalDate.ofInstant(Instant.ofEpochSecond(startMinute * 60), ZoneOffset.UTC).minusDays(1);
+
+        int loaded = 0;
+        long afterId = 0;
+        List<Reminder> reminders;
+        do {
+            reminders = reminderRepository.findActiveWithMedicationInShardAfter(today, shardLeases.shardCount(),
+                    wheel.shard, afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            loaded += schedule(wheel, reminders);
+            if (!reminders.isEmpty()) {
+                afterId = reminders.get(reminders.size() - 1).getId();
+            }
+        } while (reminders.size() == LOAD_PAGE_SIZE);
+
+        builds.incrementAndGet();
+        builtAt = LocalDateTime.now();
+        buildMillis = System.currentTimeMillis() - started;
+        log.info("Reminder wheel of shard {} built with {} reminders in {} ms", wheel.shard, loaded, buildMillis);
+    }
+
+    // Apply reminders changed since the last sync, here or on other nodes
+    private void sync(ShardWheel wheel) {
+        LocalDateTime syncStarted = LocalDateTime.now();
+        List<Reminder> changed = reminderRepository.findChangedWithMedicationInShard(
+                wheel.syncedAt.minusSeconds(SYNC_OVERLAP_SECONDS), shardLeases.shardCount(), wheel.shard);
+        schedule(wheel, changed);
+        wheel.syncedAt = syncStarted;
+        if (!changed.isEmpty()) {
+            log.debug("Applied {} changed reminders to the wheel of shard {}", changed.size(), wheel.shard);
+        }
+    }
+
+    private int schedule(ShardWheel wheel, List<Reminder> reminders) {
+        Map<Long, ZoneId> zones = userTimeZones.zonesOf(reminders.stream()
+                .map(r -> r.getMedication().getUser().getId())
+                .collect(Collectors.toSet()));
+        int scheduled = 0;
+        for (Reminder reminder : reminders) {
+            Entry entry = nextEntry(reminder, wheel.currentMinute, zones.get(reminder.getMedication().getUser().getId()));
+            wheel.put(reminder.getId(), entry);
+            if (entry != null) {
+                scheduled++;
+            }
+        }
+        return scheduled;
+    }
+
+    // Next fire strictly after the given minute: dose time minus minutesBefore, within the medication's dates
+    private Entry nextEntry(Reminder reminder, long afterMinute, ZoneId zone) {
+        if (!Boolean.TRUE.equals(reminder.getIsActive())) {
+            return null;
+        }
+        int minutesBefore = reminder.getMinutesBefore() != null ? reminder.getMinutesBefore() : 5;
+        ReminderScheduleCompiler.Occurrence dose = scheduleCompiler.nextDose(reminder, zone, afterMinute + minutesBefore);
+        return dose != null ? new Entry(reminder.getId(), dose.epochMinute() - minutesBefore, dose.doseTime()) : null;
+    }
+
+    private static final class ShardWheel {
+
+        private final int shard;
+        private final List<List<Entry>> minuteSlots = slots(MINUTE_SLOTS);
+        private final List<List<Entry>> hourSlots = slots(HOUR_SLOTS);
+        private final List<List<Entry>> daySlots = slots(DAY_SLOTS);
+        private final List<Entry> overflow = new ArrayList<>();
+
+        // Live entry per reminder; wheel entries that are no longer the live one are skipped when reached
+        private final Map<Long, Entry> scheduled = new HashMap<>();
+
+        // Last epoch minute processed; -1 until the wheel is built
+        private long currentMinute = -1;
+        private LocalDateTime syncedAt;
+
+        private ShardWheel(int shard) {
+            this.shard = shard;
+        }
+
+        private void put(Long reminderId, Entry entry) {
+            if (entry == null) {
+                scheduled.remove(reminderId);
+                return;
+            }
+            scheduled.put(reminderId, entry);
+            place(entry);
+        }
+
+        private List<Due> turn(long target) {
+            List<Due> due = new ArrayList<>();
+            while (currentMinute < target) {
+                currentMinute++;
+                if (currentMinute % WHEEL_SPAN == 0) {
+                    List<Entry> pending = new ArrayList<>(overflow);
+                    overflow.clear();
+                    pending.forEach(this::place);
+                }
+                if (currentMinute % MINUTES_PER_DAY == 0) {
+                    cascade(daySlots.get((int) ((currentMinute / MINUTES_PER_DAY) % DAY_SLOTS)));
+                }
+                if (currentMinute % MINUTES_PER_HOUR == 0) {
+                    cascade(hourSlots.get((int) ((currentMinute / MINUTES_PER_HOUR) % HOUR_SLOTS)));
+                }
+                List<Entry> slot = minuteSlots.get((int) (currentMinute % MINUTE_SLOTS));
+                for (Entry entry : slot) {
+                    if (scheduled.get(entry.reminderId()) == entry) {
+                        scheduled.remove(entry.reminderId());
+                        due.add(new Due(entry.reminderId(), entry.fireMinute(), entry.doseTime()));
+                    }
+                }
+                slot.clear();
+            }
+            return due;
+        }
+
+        // Slot by distance from the current minute; a coarser slot is cascaded before its first minute comes up
+        private void place(Entry entry) {
+            long delta = entry.fireMinute() - currentMinute;
+            if (delta < MINUTES_PER_HOUR) {
+                minuteSlots.get((int) (Math.max(entry.fireMinute(), currentMinute) % MINUTE_SLOTS)).add(entry);
+            } else if (delta < MINUTES_PER_DAY) {
+                hourSlots.get((int) ((entry.fireMinute() / MINUTES_PER_HOUR) % HOUR_SLOTS)).add(entry);
+            } else if (delta < WHEEL_SPAN) {
+                daySlots.get((int) ((entry.fireMinute() / MINUTES_PER_DAY) % DAY_SLOTS)).add(entry);
+            } else {
+                overflow.add(entry);
+            }
+        }
+
+        private void cascade(List<Entry> slot) {
+            List<Entry> entries = new ArrayList<>(slot);
+            slot.clear();
+            for (Entry entry : entries) {
+                if (scheduled.get(entry.reminderId()) == entry) {
+                    place(entry);
+                }
+            }
+        }
+    }
+
+    private static List<List<Entry>> slots(int count) {
+        List<List<Entry>> slots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            slots.add(new ArrayList<>());
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,156 @@
+package com.pilltrack.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Shards of user-partitioned jobs and the leases that make their processing exclusive.
+ * Users map to one of app.sharding.shards fixed shards by id (MOD(user_id, shards) in SQL), so
+ * adding or removing nodes never moves users between shards; nodes only take shards over.
+ * Sharded jobs get one Quartz trigger per shard and the clustered scheduler spreads those over the
+ * nodes; a run takes the (job, shard) lease first, so a shard never runs on two nodes at once,
+ * and a crashed node's lease is free again after app.sharding.lease-seconds.
+ */
+@Component
+@Slf4j
+public class ShardLeaseManager {
+
+    // Job data key of the shard on sharded job triggers (a String: the job store uses properties)
+    public static final String SHARD_KEY = "shard";
+
+    private static final String ENSURE_SQL =
+            "INSERT INTO job_shard_leases (job_name, shard, fencing_token) VALUES (?, ?, 0) ON CONFLICT DO NOTHING";
+
+    private static final String ACQUIRE_SQL =
+            "UPDATE job_shard_leases SET owner = ?, lease_until = ?, fencing_token = fencing_token + 1 " +
+            "WHERE job_name = ? AND shard = ? AND (lease_until IS NULL OR lease_until < ?)";
+
+    private static final String READ_SQL =
+            "SELECT fencing_token, watermark FROM job_shard_leases WHERE job_name = ? AND shard = ? AND owner = ?";
+
+    private static final String RELEASE_SQL =
+            "UPDATE job_shard_leases SET owner = NULL, lease_until = NULL, watermark = COALESCE(?, watermark) " +
+            "WHERE job_name = ? AND shard = ? AND owner = ? AND fencing_token = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int shards;
+    private final int leaseSeconds;
+    private final String owner;
+
+    // Lease rows known to exist
+    private final Set<String> ensured = ConcurrentHashMap.newKeySet();
+
+    // Metrics
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong busy = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+
+    public record Lease(String jobName, int shard, long token, Long watermark) {}
+
+    public ShardLeaseManager(JdbcTemplate jdbcTemplate,
+                             @Value("${app.sharding.shards:8}") int shards,
+                             @Value("${app.sharding.lease-seconds:300}") int leaseSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+        this.leaseSeconds = leaseSeconds;
+        this.owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public int shardCount() {
+        return shards;
+    }
+
+    public int shardOf(Long userId) {
+        return (int) Math.floorMod(userId, (long) shards);
+    }
+
+    /**
+     * Run work on a shard while holding its lease. The work gets the lease (with the watermark the
+     * last run left) and returns the new watermark, or null to keep it. Returns false without
+     * running when another node holds the shard.
+     */
+    public boolean runWithLease(String jobName, int shard, Function<Lease, Long> work) {
+        Optional<Lease> lease = acquire(jobName, shard);
+        if (lease.isEmpty()) {
+            return false;
+        }
+        Long watermark = null;
+        try {
+            watermark = work.apply(lease.get());
+        } finally {
+            release(lease.get(), watermark);
+        }
+        return true;
+    }
+
+    public Optional<Lease> acquire(String jobName, int shard) {
+        if (shard < 0 || shard >= shards) {
+            log.warn("Ignoring {} run for shard {}: only {} shards are configured", jobName, shard, shards);
+            return Optional.empty();
+        }
+        if (ensured.add(jobName + ":" + shard)) {
+            jdbcTemplate.update(ENSURE_SQL, jobName, shard);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (jdbcTemplate.update(ACQUIRE_SQL, owner, now.plusSeconds(leaseSeconds), jobName, shard, now) == 0) {
+            busy.incrementAndGet();
+            log.debug("Shard {} of {} is held by another node", shard, jobName);
+            return Optional.empty();
+        }
+        List<Lease> leases = jdbcTemplate.query(READ_SQL, (rs, rowNum) -> new Lease(jobName, shard, rs.getLong(1),
+                rs.getObject(2) != null ? rs.getLong(2) : null), jobName, shard, owner);
+        if (leases.isEmpty()) {
+            // Expired and taken over already
+            lost.incrementAndGet();
+            return Optional.empty();
+        }
+        acquired.incrementAndGet();
+        return Optional.of(leases.get(0));
+    }
+
+    /**
+     * Free the shard and store the watermark (null keeps the previous one). Returns false if the
+     * lease had expired and another node took it, in which case nothing is written.
+     */
+    public boolean release(Lease lease, Long watermark) {
+        if (jdbcTemplate.update(RELEASE_SQL, watermark, lease.jobName(), lease.shard(), owner, lease.token()) == 0) {
+            lost.incrementAndGet();
+            log.warn("Lease on shard {} of {} expired before the run finished", lease.shard(), lease.jobName());
+            return false;
+        }
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("owner", owner);
+        stats.put("shards", shards);
+        stats.put("acquired", acquired.get());
+        stats.put("busy", busy.get());
+        stats.put("lost", lost.get());
+        return stats;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node";
+        }
+    }
+}
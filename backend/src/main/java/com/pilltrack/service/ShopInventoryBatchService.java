@@ -0,0 +1,196 @@
+package com.pilltrack.service;
+
+import com.pilltrack.exception.BadRequestException;
+import com.pilltrack.model.entity.ShopMedicine;
+import com.pilltrack.model.entity.ShopMedicineBatch;
+import com.pilltrack.repository.ShopMedicineBatchRepository;
+import com.pilltrack.repository.ShopMedicineRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch-level stock for shop medicines.
+ * ShopMedicine.stockQuantity stays the total; batches account for the part of it with a known
+ * batch number and expiry. Stock without a batch record (older rows, bulk imports, cancellations)
+ * is "untracked" and is consumed after all unexpired batches.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShopInventoryBatchService {
+
+    private final ShopMedicineBatchRepository batchRepository;
+    private final ShopMedicineRepository shopMedicineRepository;
+    private final ShopStockLevelMonitor stockLevelMonitor;
+
+    /**
+     * Add a delivery to stock, merging into an existing batch with the same number.
+     */
+    @Transactional
+    public ShopMedicineBatch receiveBatch(ShopMedicine shopMedicine, String batchNumber,
+                                          LocalDate expiryDate, LocalDate manufactureDate, int quantity) {
+        ShopMedicineBatch batch = findBatch(shopMedicine, batchNumber);
+        if (batch == null) {
+            batch = ShopMedicineBatch.builder()
+                    .shopMedicine(shopMedicine)
+                    .batchNumber(batchNumber)
+                    .quantity(0)
+                    .build();
+        }
+        batch.setQuantity(batch.getQuantity() + quantity);
+        if (expiryDate != null) {
+            batch.setExpiryDate(expiryDate);
+        }
+        if (manufactureDate != null) {
+            batch.setManufactureDate(manufactureDate);
+        }
+        batch = batchRepository.save(batch);
+
+        int previousQuantity = shopMedicine.getStockQuantity();
+        shopMedicine.setStockQuantity(previousQuantity + quantity);
+        shopMedicine.setIsAvailable(true);
+        refreshSummary(shopMedicine);
+        shopMedicineRepository.save(shopMedicine);
+        stockLevelMonitor.onStockChanged(shopMedicine, previousQuantity);
+        return batch;
+    }
+
+    /**
+     * Attach batch details coming from the single-batch inventory form. Updates the dates of a
+     * known batch, or turns the untracked part of the stock into a batch with these details.
+     */
+    @Transactional
+    public void recordBatchDetails(ShopMedicine shopMedicine, String batchNumber,
+                                   LocalDate expiryDate, LocalDate manufactureDate) {
+        if (batchNumber == null && expiryDate == null) {
+            return;
+        }
+
+        ShopMedicineBatch batch = findBatch(shopMedicine, batchNumber);
+        if (batch == null) {
+            int untracked = shopMedicine.getStockQuantity()
+                    - batchRepository.sumQuantityByShopMedicineId(shopMedicine.getId());
+            if (untracked <= 0) {
+                return;
+            }
+            batch = ShopMedicineBatch.builder()
+                    .shopMedicine(shopMedicine)
+                    .batchNumber(batchNumber)
+                    .quantity(untracked)
+                    .build();
+        }
+        batch.setExpiryDate(expiryDate);
+        batch.setManufactureDate(manufactureDate);
+        batch = batchRepository.save(batch);
+
+        refreshSummary(shopMedicine);
+        shopMedicineRepository.save(shopMedicine);
+    }
+
+    /**
+     * Take sold units first-expiry-first-out. Expired batches are never sold.
+     */
+    @Transactional
+    public void consumeFefo(ShopMedicine shopMedicine, int quantity) {
+        if (!consume(shopMedicine, quantity, false)) {
+            throw new BadRequestException("Insufficient stock for " + shopMedicine.getMedicine().getBrandName());
+        }
+    }
+
+    /**
+     * Put units back into stock, e.g. for a cancelled order. Returned units are untracked.
+     */
+    @Transactional
+    public void restock(ShopMedicine shopMedicine, int quantity) {
+        int previousQuantity = shopMedicine.getStockQuantity();
+        shopMedicine.setStockQuantity(previousQuantity + quantity);
+        shopMedicineRepository.save(shopMedicine);
+        stockLevelMonitor.onStockChanged(shopMedicine, previousQuantity);
+    }
+
+    /**
+     * Set the total stock from a manual count. Decreases are written off in FEFO order,
+     * expired batches included; increases are untracked.
+     */
+    @Transactional
+    public void adjustStock(ShopMedicine shopMedicine, int newQuantity) {
+        int delta = newQuantity - shopMedicine.getStockQuantity();
+        if (delta < 0) {
+            consume(shopMedicine, -delta, true);
+        } else if (delta > 0) {
+            int previousQuantity = shopMedicine.getStockQuantity();
+            shopMedicine.setStockQuantity(newQuantity);
+            shopMedicineRepository.save(shopMedicine);
+            stockLevelMonitor.onStockChanged(shopMedicine, previousQuantity);
+        }
+    }
+
+    @Transactional
+    public void deleteBatches(Long shopMedicineId) {
+        batchRepository.deleteByShopMedicineId(shopMedicineId);
+    }
+
+    private boolean consume(ShopMedicine shopMedicine, int quantity, boolean includeExpired) {
+        LocalDate today = LocalDate.now();
+        List<ShopMedicineBatch> batches = batchRepository.findAvailableByShopMedicineIdFefo(shopMedicine.getId());
+        int tracked = batches.stream().mapToInt(ShopMedicineBatch::getQuantity).sum();
+        int untracked = Math.max(0, shopMedicine.getStockQuantity() - tracked);
+
+        int remaining = quantity;
+        List<ShopMedicineBatch> changed = new ArrayList<>();
+        for (ShopMedicineBatch batch : batches) {
+            if (remaining == 0) {
+                break;
+            }
+            if (!includeExpired && batch.isExpired(today)) {
+                continue;
+            }
+            int take = Math.min(remaining, batch.getQuantity());
+            batch.setQuantity(batch.getQuantity() - take);
+            remaining -= take;
+            changed.add(batch);
+        }
+        remaining -= Math.min(remaining, untracked);
+
+        if (remaining > 0) {
+            return false;
+        }
+
+        batchRepository.saveAll(changed);
+        int previousQuantity = shopMedicine.getStockQuantity();
+        shopMedicine.setStockQuantity(Math.max(0, previousQuantity - quantity));
+        applySummary(shopMedicine, batches);
+        shopMedicineRepository.save(shopMedicine);
+        stockLevelMonitor.onStockChanged(shopMedicine, previousQuantity);
+        return true;
+    }
+
+    private ShopMedicineBatch findBatch(ShopMedicine shopMedicine, String batchNumber) {
+        if (batchNumber == null || shopMedicine.getId() == null) {
+            return null;
+        }
+        return batchRepository.findByShopMedicineIdAndBatchNumber(shopMedicine.getId(), batchNumber).orElse(null);
+    }
+
+    private void refreshSummary(ShopMedicine shopMedicine) {
+        applySummary(shopMedicine, batchRepository.findAvailableByShopMedicineIdFefo(shopMedicine.getId()));
+    }
+
+    // Keep the single batch/expiry columns pointing at the next batch to expire
+    private void applySummary(ShopMedicine shopMedicine, List<ShopMedicineBatch> fefoBatches) {
+        if (fefoBatches.isEmpty()) {
+            return;
+        }
+        ShopMedicineBatch next = fefoBatches.stream()
+                .filter(b -> b.getQuantity() > 0)
+                .findFirst()
+                .orElse(null);
+        shopMedicine.setBatchNumber(next != null ? next.getBatchNumber() : null);
+        shopMedicine.setExpiryDate(next != null ? next.getExpiryDate() : null);
+        shopMedicine.setManufactureDate(next != null ? next.getManufactureDate() : null);
+    }
+}
@@ -0,0 +1,436 @@
+package com.pilltrack.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.pilltrack.dto.request.InventoryImportRow;
+import com.pilltrack.dto.response.InventoryImportResponse;
+import com.pilltrack.dto.response.InventoryImportRowError;
+import com.pilltrack.exception.BadRequestException;
+import com.pilltrack.exception.ResourceNotFoundException;
+import com.pilltrack.model.entity.Medicine;
+import com.pilltrack.model.entity.MedicineShop;
+import com.pilltrack.model.entity.User;
+import com.pilltrack.repository.MedicineRepository;
+import com.pilltrack.repository.MedicineShopRepository;
+import com.pilltrack.security.CurrentUser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a CSV or JSON inventory file into a shop's stock, upserting in JDBC batches.
+ * Only one chunk of rows is held in memory at a time, whatever the size of the file.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShopMedicineImportService {
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO shop_medicines (shop_id, medicine_id, price, discount_price, discount_percent, " +
+            "stock_quantity, min_stock_alert, batch_number, expiry_date, manufacture_date, is_available, " +
+            "is_featured, sold_count, view_count, price_version, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false, 0, 0, 1, ?, ?) " +
+            "ON CONFLICT (shop_id, medicine_id) DO UPDATE SET " +
+            // Bump the price version only when the price actually changes
+            "price_version = CASE WHEN shop_medicines.price IS DISTINCT FROM EXCLUDED.price " +
+            "OR shop_medicines.discount_price IS DISTINCT FROM EXCLUDED.discount_price " +
+            "THEN COALESCE(shop_medicines.price_version, 1) + 1 ELSE shop_medicines.price_version END, " +
+            "price = EXCLUDED.price, discount_price = EXCLUDED.discount_price, " +
+            "discount_percent = EXCLUDED.discount_percent, stock_quantity = EXCLUDED.stock_quantity, " +
+            "min_stock_alert = EXCLUDED.min_stock_alert, batch_number = EXCLUDED.batch_number, " +
+            "expiry_date = EXCLUDED.expiry_date, manufacture_date = EXCLUDED.manufacture_date, " +
+            "is_available = EXCLUDED.is_available, updated_at = EXCLUDED.updated_at";
+
+    private final MedicineShopRepository shopRepository;
+    private final MedicineRepository medicineRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final CurrentUser currentUser;
+
+    /**
+     * Import a CSV file with a header row, e.g. brand_id,slug,price,stock_quantity,... Fields may be
+     * quoted as in RFC 4180; rows with a different number of columns than the header are rejected.
+     */
+    public InventoryImportResponse importCsv(InputStream input) {
+        ImportContext context = new ImportContext(getCurrentOwnerShop().getId());
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            CsvRecord headerRecord = readRecord(reader);
+            if (headerRecord == null) {
+                throw new BadRequestException("Import file is empty");
+            }
+            if (headerRecord.error() != null) {
+                throw new BadRequestException("Malformed header: " + headerRecord.error());
+            }
+            List<String> names = headerRecord.fields();
+            Map<String, Integer> header = parseHeader(names);
+            if (!header.containsKey("brandid") && !header.containsKey("slug")) {
+                throw new BadRequestException("Import file must have a brand_id or slug column");
+            }
+
+            CsvRecord record;
+            long rowNumber = 0;
+            while ((record = readRecord(reader)) != null) {
+                List<String> cols = record.fields();
+                if (cols.size() == 1 && cols.get(0).isBlank() && record.error() == null) {
+                    continue;
+                }
+                rowNumber++;
+                String reference = cols.get(0).trim();
+                if (record.error() != null) {
+                    context.fail(rowNumber, reference, "Malformed row: " + record.error());
+                    continue;
+                }
+                // A shifted row would import values into the wrong columns
+                if (cols.size() != names.size()) {
+                    context.fail(rowNumber, reference,
+                            "Malformed row: expected " + names.size() + " columns but found " + cols.size());
+                    continue;
+                }
+                try {
+                    context.accept(rowNumber, parseCsvRow(cols, header));
+                } catch (RuntimeException e) {
+                    context.fail(rowNumber, reference, "Malformed row: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new BadRequestException("Failed to read import file: " + e.getMessage());
+        }
+
+        return context.finish();
+    }
+
+    /**
+     * Import a JSON array of rows; elements are read one at a time from the stream.
+     */
+    public InventoryImportResponse importJson(InputStream input) {
+        ImportContext context = new ImportContext(getCurrentOwnerShop().getId());
+
+        try (MappingIterator<InventoryImportRow> rows = objectMapper.readerFor(InventoryImportRow.class).readValues(input)) {
+            long rowNumber = 0;
+            while (rows.hasNext()) {
+                rowNumber++;
+                try {
+                    context.accept(rowNumber, rows.next());
+                } catch (RuntimeException e) {
+                    context.fail(rowNumber, null, "Malformed row: " + e.getMessage());
+                }
+            }
+        } catch (IOException | RuntimeJsonMappingException e) {
+            throw new BadRequestException("Failed to read import file: " + e.getMessage());
+        }
+
+        return context.finish();
+    }
+
+    private MedicineShop getCurrentOwnerShop() {
+        User user = currentUser.getUser();
+        return shopRepository.findByOwnerId(user.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Shop", "owner", user.getEmail()));
+    }
+
+    private Map<String, Integer> parseHeader(List<String> names) {
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            // Accept brand_id, brandId and "Brand Id" alike
+            String key = names.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "").replace(" ", "");
+            if (key.startsWith("\uFEFF")) {
+                key = key.substring(1);
+            }
+            header.put(key, i);
+        }
+        return header;
+    }
+
+    private InventoryImportRow parseCsvRow(List<String> cols, Map<String, Integer> header) {
+        return InventoryImportRow.builder()
+                .brandId(parseInteger(column(cols, header, "brandid")))
+                .slug(column(cols, header, "slug"))
+                .price(parseDecimal(column(cols, header, "price")))
+                .discountPrice(parseDecimal(column(cols, header, "discountprice")))
+                .stockQuantity(parseInteger(column(cols, header, "stockquantity")))
+                .minStockAlert(parseInteger(column(cols, header, "minstockalert")))
+                .isAvailable(parseBoolean(column(cols, header, "isavailable")))
+                .batchNumber(column(cols, header, "batchnumber"))
+                .expiryDate(parseDate(column(cols, header, "expirydate")))
+                .manufactureDate(parseDate(column(cols, header, "manufacturedate")))
+                .build();
+    }
+
+    private String column(List<String> cols, Map<String, Integer> header, String name) {
+        Integer index = header.get(name);
+        if (index == null) {
+            return null;
+        }
+        String value = cols.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private record CsvRecord(List<String> fields, String error) {}
+
+    /**
+     * Read one RFC 4180 record: quoted fields may hold commas, line breaks and doubled quotes.
+     * A malformed record is read to its end and returned with an error. Null at the end of input.
+     */
+    private static CsvRecord readRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        String error = null;
+        boolean inQuotes = false;
+        boolean afterQuotes = false;
+        for (; c != -1; c = reader.read()) {
+            char ch = (char) c;
+            if (inQuotes) {
+                if (ch != '"') {
+                    field.append(ch);
+                    continue;
+                }
+                reader.mark(1);
+                if (reader.read() == '"') {
+                    field.append('"');
+                } else {
+                    reader.reset();
+                    inQuotes = false;
+                    afterQuotes = true;
+                }
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuotes = false;
+            } else if (ch == '\n') {
+                break;
+            } else if (ch == '\r') {
+                reader.mark(1);
+                if (reader.read() != '\n') {
+                    reader.reset();
+                }
+                break;
+            } else if (ch == '"' && !afterQuotes && field.toString().isBlank()) {
+                field.setLength(0);
+                inQuotes = true;
+            } else if (afterQuotes) {
+                if (!Character.isWhitespace(ch) && error == null) {
+                    error = "unexpected text after a quoted field";
+                }
+            } else {
+                if (ch == '"' && error == null) {
+                    error = "quote inside an unquoted field";
+                }
+                field.append(ch);
+            }
+        }
+        if (inQuotes) {
+            error = "unterminated quoted field";
+        }
+        fields.add(field.toString());
+        return new CsvRecord(fields, error);
+    }
+
+    private Integer parseInteger(String value) {
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    private BigDecimal parseDecimal(String value) {
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    private Boolean parseBoolean(String value) {
+        return value == null ? null : Boolean.valueOf(value);
+    }
+
+    private LocalDate parseDate(String value) {
+        return value == null ? null : LocalDate.parse(value);
+    }
+
+    private String validate(InventoryImportRow row) {
+        if (row.getBrandId() == null && (row.getSlug() == null || row.getSlug().isBlank())) {
+            return "Either brand id or slug is required";
+        }
+        if (row.getPrice() == null || row.getPrice().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Price must be greater than 0";
+        }
+        if (row.getDiscountPrice() != null && row.getDiscountPrice().compareTo(BigDecimal.ZERO) <= 0) {
+            return "Discount price must be greater than 0";
+        }
+        if (row.getStockQuantity() == null || row.getStockQuantity() < 0) {
+            return "Stock quantity must be non-negative";
+        }
+        if (row.getMinStockAlert() != null && row.getMinStockAlert() < 1) {
+            return "Minimum stock alert must be at least 1";
+        }
+        if (row.getBatchNumber() != null && row.getBatchNumber().length() > 50) {
+            return "Batch number must not exceed 50 characters";
+        }
+        return null;
+    }
+
+    private static String reference(InventoryImportRow row) {
+        return row.getBrandId() != null ? String.valueOf(row.getBrandId()) : row.getSlug();
+    }
+
+    private static int discountPercent(BigDecimal price, BigDecimal discountPrice) {
+        if (discountPrice == null || discountPrice.compareTo(price) >= 0) {
+            return 0;
+        }
+        return price.subtract(discountPrice)
+                .multiply(BigDecimal.valueOf(100))
+                .divide(price, 0, RoundingMode.HALF_UP)
+                .intValue();
+    }
+
+    private record PendingRow(long rowNumber, InventoryImportRow row) {}
+
+    /**
+     * Accumulates rows for one import and flushes them chunk by chunk.
+     */
+    private class ImportContext {
+
+        private final Long shopId;
+        private final List<PendingRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        private final List<InventoryImportRowError> errors = new ArrayList<>();
+        private long totalRows;
+        private long upsertedRows;
+        private long failedRows;
+
+        ImportContext(Long shopId) {
+            this.shopId = shopId;
+        }
+
+        void accept(long rowNumber, InventoryImportRow row) {
+            totalRows++;
+            String error = validate(row);
+            if (error != null) {
+                recordError(rowNumber, reference(row), error);
+                return;
+            }
+            chunk.add(new PendingRow(rowNumber, row));
+            if (chunk.size() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void fail(long rowNumber, String reference, String message) {
+            totalRows++;
+            recordError(rowNumber, reference, message);
+        }
+
+        InventoryImportResponse finish() {
+            flush();
+            log.info("Inventory import for shop {}: {} rows, {} upserted, {} failed",
+                    shopId, totalRows, upsertedRows, failedRows);
+            return InventoryImportResponse.builder()
+                    .shopId(shopId)
+                    .totalRows(totalRows)
+                    .upsertedRows(upsertedRows)
+                    .failedRows(failedRows)
+                    .errors(errors)
+                    .errorsTruncated(failedRows > errors.size())
+                    .build();
+        }
+
+        private void recordError(long rowNumber, String reference, String message) {
+            failedRows++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(InventoryImportRowError.builder()
+                        .rowNumber(rowNumber)
+                        .reference(reference)
+                        .message(message)
+                        .build());
+            }
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+
+            // Resolve every medicine reference of the chunk with at most two queries
+            Set<Integer> brandIds = chunk.stream()
+                    .map(p -> p.row().getBrandId())
+                    .filter(id -> id != null)
+                    .collect(Collectors.toSet());
+            Set<String> slugs = chunk.stream()
+                    .filter(p -> p.row().getBrandId() == null)
+                    .map(p -> p.row().getSlug())
+                    .collect(Collectors.toSet());
+            Map<Integer, Long> idsByBrandId = brandIds.isEmpty() ? Map.of() :
+                    medicineRepository.findByBrandIdIn(brandIds).stream()
+                            .collect(Collectors.toMap(Medicine::getBrandId, Medicine::getId, (a, b) -> a));
+            Map<String, Long> idsBySlug = slugs.isEmpty() ? Map.of() :
+                    medicineRepository.findBySlugIn(slugs).stream()
+                            .collect(Collectors.toMap(Medicine::getSlug, Medicine::getId, (a, b) -> a));
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<PendingRow> resolved = new ArrayList<>(chunk.size());
+            List<Object[]> batchArgs = new ArrayList<>(chunk.size());
+            for (PendingRow pending : chunk) {
+                InventoryImportRow row = pending.row();
+                Long medicineId = row.getBrandId() != null ?
+                        idsByBrandId.get(row.getBrandId()) : idsBySlug.get(row.getSlug());
+                if (medicineId == null) {
+                    recordError(pending.rowNumber(), reference(row), "Medicine not found");
+                    continue;
+                }
+                resolved.add(pending);
+                batchArgs.add(new Object[] {
+                        shopId,
+                        medicineId,
+                        row.getPrice(),
+                        row.getDiscountPrice(),
+                        discountPercent(row.getPrice(), row.getDiscountPrice()),
+                        row.getStockQuantity(),
+                        row.getMinStockAlert() != null ? row.getMinStockAlert() : 10,
+                        row.getBatchNumber(),
+                        row.getExpiryDate() != null ? Date.valueOf(row.getExpiryDate()) : null,
+                        row.getManufactureDate() != null ? Date.valueOf(row.getManufactureDate()) : null,
+                        row.getIsAvailable() != null ? row.getIsAvailable() : row.getStockQuantity() > 0,
+                        now,
+                        now
+                });
+            }
+
+            if (!batchArgs.isEmpty()) {
+                try {
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+                    upsertedRows += batchArgs.size();
+                } catch (DataAccessException e) {
+                    log.warn("Inventory import batch failed for shop {}: {}", shopId, e.getMessage());
+                    for (PendingRow pending : resolved) {
+                        recordError(pending.rowNumber(), reference(pending.row()), "Batch write failed");
+                    }
+                }
+            }
+            chunk.clear();
+        }
+    }
+}
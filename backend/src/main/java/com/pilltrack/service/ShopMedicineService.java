@@ -1,5 +1,6 @@
 package com.pilltrack.service;
 
+import com.pilltrack.dto.request.ShopMedicineBatchRequest;
 import com.pilltrack.dto.request.ShopMedicineRequest;
 import com.pilltrack.dto.response.PageResponse;
 import com.pilltrack.dto.response.ShopMedicineResponse;
@@ -22,6 +23,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -33,6 +35,7 @@ public class ShopMedicineService {
     private final MedicineShopRepository shopRepository;
     private final MedicineRepository medicineRepository;
     private final CurrentUser currentUser;
+    private final ShopInventoryBatchService inventoryBatchService;
     
     public PageResponse<ShopMedicineResponse> getShopMedicines(Long shopId, Pageable pageable) {
         shopRepository.findById(shopId)
@@ -95,8 +98,7 @@ public class ShopMedicineService {
         ShopMedicine shopMedicine = new ShopMedicine();
         shopMedicine.setShop(shop);
         shopMedicine.setMedicine(medicine);
-        shopMedicine.setPrice(request.getPrice());
-        shopMedicine.setDiscountPrice(request.getDiscountPrice());
+        shopMedicine.applyPrice(request.getPrice(), request.getDiscountPrice());
         shopMedicine.setStockQuantity(request.getStockQuantity());
         shopMedicine.setMinStockAlert(request.getMinStockAlert() != null ? request.getMinStockAlert() : 10);
         shopMedicine.setIsAvailable(request.getIsAvailable() != null ? request.getIsAvailable() : true);
@@ -106,6 +108,8 @@ public class ShopMedicineService {
         shopMedicine.setManufactureDate(request.getManufactureDate());
         
         shopMedicine = shopMedicineRepository.save(shopMedicine);
+        inventoryBatchService.recordBatchDetails(shopMedicine, request.getBatchNumber(),
+                request.getExpiryDate(), request.getManufactureDate());
         return mapToResponse(shopMedicine);
     }
     
@@ -119,9 +123,7 @@ public class ShopMedicineService {
             throw new AccessDeniedException("You don't have permission to update this inventory item");
         }
         
-        shopMedicine.setPrice(request.getPrice());
-        shopMedicine.setDiscountPrice(request.getDiscountPrice());
-        shopMedicine.setStockQuantity(request.getStockQuantity());
+        shopMedicine.applyPrice(request.getPrice(), request.getDiscountPrice());
         shopMedicine.setMinStockAlert(request.getMinStockAlert() != null ? request.getMinStockAlert() : 10);
         shopMedicine.setIsAvailable(request.getIsAvailable() != null ? request.getIsAvailable() : true);
         shopMedicine.setIsFeatured(request.getIsFeatured() != null ? request.getIsFeatured() : false);
@@ -130,6 +132,28 @@ public class ShopMedicineService {
         shopMedicine.setManufactureDate(request.getManufactureDate());
         
         shopMedicine = shopMedicineRepository.save(shopMedicine);
+        inventoryBatchService.adjustStock(shopMedicine, request.getStockQuantity());
+        inventoryBatchService.recordBatchDetails(shopMedicine, request.getBatchNumber(),
+                request.getExpiryDate(), request.getManufactureDate());
+        return mapToResponse(shopMedicine);
+    }
+    
+    @Transactional
+    public ShopMedicineResponse receiveBatch(Long id, ShopMedicineBatchRequest request) {
+        ShopMedicine shopMedicine = shopMedicineRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Shop Medicine", "id", id));
+        
+        User user = currentUser.getUser();
+        if (!shopMedicine.getShop().getOwner().getId().equals(user.getId()) && !currentUser.isAdmin()) {
+            throw new AccessDeniedException("You don't have permission to update this inventory item");
+        }
+        
+        if (request.getExpiryDate() != null && request.getExpiryDate().isBefore(LocalDate.now())) {
+            throw new BadRequestException("Cannot receive an already expired batch");
+        }
+        
+        inventoryBatchService.receiveBatch(shopMedicine, request.getBatchNumber(),
+                request.getExpiryDate(), request.getManufactureDate(), request.getQuantity());
         return mapToResponse(shopMedicine);
     }
     
@@ -147,8 +171,8 @@ public class ShopMedicineService {
             throw new BadRequestException("Stock quantity cannot be negative");
         }
         
-        shopMedicine.setStockQuantity(quantity);
         shopMedicine.setIsAvailable(quantity > 0);
+        inventoryBatchService.adjustStock(shopMedicine, quantity);
         
         shopMedicine = shopMedicineRepository.save(shopMedicine);
         return mapToResponse(shopMedicine);
@@ -164,6 +188,7 @@ public class ShopMedicineService {
             throw new AccessDeniedException("You don't have permission to remove this inventory item");
         }
         
+        inventoryBatchService.deleteBatches(shopMedicine.getId());
         shopMedicineRepository.delete(shopMedicine);
     }
     
@@ -0,0 +1,42 @@
+package com.pilltrack.service;
+
+import com.pilltrack.event.ShopStockLevelEvent;
+import com.pilltrack.event.ShopStockLevelEvent.Level;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShopStockAlertListener {
+    
+    private final NotificationService notificationService;
+    
+    // Last level alerted per shop medicine; entries are removed once stock recovers. Only updated
+    // here, after commit, so a rolled back stock change never suppresses the next real alert.
+    private final Map<Long, Level> alertedLevels = new ConcurrentHashMap<>();
+    
+    // Delivered only once the stock change has committed, off the request thread
+    @Async("notificationExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onShopStockLevel(ShopStockLevelEvent event) {
+        if (event.getLevel() == Level.OK) {
+            alertedLevels.remove(event.getShopMedicineId());
+            return;
+        }
+        if (alertedLevels.put(event.getShopMedicineId(), event.getLevel()) == event.getLevel()) {
+            return;
+        }
+        try {
+            notificationService.sendShopStockAlert(event);
+        } catch (Exception e) {
+            log.error("Failed to send stock alert for shop medicine {}", event.getShopMedicineId(), e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.pilltrack.service;
+
+import com.pilltrack.event.ShopStockLevelEvent;
+import com.pilltrack.event.ShopStockLevelEvent.Level;
+import com.pilltrack.model.entity.ShopMedicine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Detects stock level threshold crossings on every stock mutation, so low-stock alerts cost
+ * O(changes) rather than a scan over every shop's inventory.
+ * Crossings down to a worse level and recoveries above minStockAlert are published;
+ * ShopStockAlertListener alerts each item once per level after the change commits.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ShopStockLevelMonitor {
+    
+    private final ApplicationEventPublisher eventPublisher;
+    
+    public void onStockChanged(ShopMedicine shopMedicine, int previousQuantity) {
+        int minStockAlert = shopMedicine.getMinStockAlert();
+        Level previous = levelOf(previousQuantity, minStockAlert);
+        Level current = levelOf(shopMedicine.getStockQuantity(), minStockAlert);
+        
+        boolean worse = current.ordinal() > previous.ordinal();
+        boolean recovered = current == Level.OK && previous != Level.OK;
+        if (!worse && !recovered) {
+            return;
+        }
+        
+        ShopStockLevelEvent event = new ShopStockLevelEvent(
+                shopMedicine.getId(),
+                shopMedicine.getShop().getOwner().getId(),
+                shopMedicine.getMedicine().getBrandName(),
+                shopMedicine.getStockQuantity(),
+                minStockAlert,
+                current);
+        log.debug("Stock level crossed: {}", event);
+        eventPublisher.publishEvent(event);
+    }
+    
+    private static Level levelOf(int quantity, int minStockAlert) {
+        if (quantity <= 0) {
+            return Level.OUT_OF_STOCK;
+        }
+        return quantity <= minStockAlert ? Level.LOW_STOCK : Level.OK;
+    }
+}
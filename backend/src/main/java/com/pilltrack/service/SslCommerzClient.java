@@ -0,0 +1,206 @@
+package com.pilltrack.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pilltrack.exception.PaymentException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.net.URIBuilder;
+import org.apache.hc.core5.net.WWWFormCodec;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * SSLCommerz session and validation API client on the pooled, non-blocking gateway HTTP client.
+ * Calls fail fast with a PaymentException while the circuit breaker is open.
+ */
+@Component
+@Slf4j
+public class SslCommerzClient {
+
+    private static final TypeReference<Map<String, Object>> JSON_MAP = new TypeReference<>() {};
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final PoolingAsyncClientConnectionManager connectionManager;
+    private final ObjectMapper objectMapper;
+    private final GatewayCircuitBreaker circuitBreaker;
+
+    @Value("${sslcommerz.store-id:test}")
+    private String storeId;
+
+    @Value("${sslcommerz.store-password:test}")
+    private String storePassword;
+
+    @Value("${sslcommerz.api-url:https://sandbox.sslcommerz.com/gwprocess/v4/api.php}")
+    private String apiUrl;
+
+    @Value("${sslcommerz.validation-url:https://sandbox.sslcommerz.com/validator/api/validationserverAPI.php}")
+    private String validationUrl;
+
+    @Value("${sslcommerz.transaction-query-url:https://sandbox.sslcommerz.com/validator/api/merchantTransIDvalidationAPI.php}")
+    private String transactionQueryUrl;
+
+    public SslCommerzClient(CloseableHttpAsyncClient paymentGatewayHttpClient,
+                            PoolingAsyncClientConnectionManager paymentGatewayConnectionManager,
+                            ObjectMapper objectMapper,
+                            @Value("${sslcommerz.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                            @Value("${sslcommerz.circuit-breaker.open-ms:30000}") long openMillis) {
+        this.httpClient = paymentGatewayHttpClient;
+        this.connectionManager = paymentGatewayConnectionManager;
+        this.objectMapper = objectMapper;
+        this.circuitBreaker = new GatewayCircuitBreaker(failureThreshold, openMillis);
+    }
+
+    /**
+     * Create a gateway session. Store credentials are added here; the returned map is the raw gateway response.
+     */
+    public CompletableFuture<Map<String, Object>> initiateSessionAsync(Map<String, String> params) {
+        List<NameValuePair> form = new ArrayList<>();
+        form.add(new BasicNameValuePair("store_id", storeId));
+        form.add(new BasicNameValuePair("store_passwd", storePassword));
+        params.forEach((name, value) -> form.add(new BasicNameValuePair(name, value)));
+
+        SimpleHttpRequest request = SimpleRequestBuilder.post(apiUrl)
+                .setBody(WWWFormCodec.format(form, StandardCharsets.UTF_8), ContentType.APPLICATION_FORM_URLENCODED)
+                .build();
+        return execute(request, "session");
+    }
+
+    public Map<String, Object> initiateSession(Map<String, String> params) {
+        return join(initiateSessionAsync(params));
+    }
+
+    /**
+     * Ask the validation API whether a val_id belongs to a valid payment.
+     */
+    public CompletableFuture<Boolean> validateAsync(String valId) {
+        if (valId == null || valId.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        SimpleHttpRequest request;
+        try {
+            request = SimpleRequestBuilder.get(new URIBuilder(validationUrl)
+                            .addParameter("val_id", valId)
+                            .addParameter("store_id", storeId)
+                            .addParameter("store_passwd", storePassword)
+                            .addParameter("format", "json")
+                            .build())
+                    .build();
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new PaymentException("Invalid validation URL", e));
+        }
+        return execute(request, "validation")
+                .thenApply(response -> "VALID".equals(response.get("status")));
+    }
+
+    public boolean validate(String valId) {
+        return join(validateAsync(valId));
+    }
+
+    /**
+     * Look up the gateway's records for a tran_id. The response lists every attempt under "element".
+     */
+    public CompletableFuture<Map<String, Object>> queryTransactionAsync(String transactionId) {
+        SimpleHttpRequest request;
+        try {
+            request = SimpleRequestBuilder.get(new URIBuilder(transactionQueryUrl)
+                            .addParameter("tran_id", transactionId)
+                            .addParameter("store_id", storeId)
+                            .addParameter("store_passwd", storePassword)
+                            .addParameter("format", "json")
+                            .build())
+                    .build();
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(new PaymentException("Invalid transaction query URL", e));
+        }
+        return execute(request, "transaction query");
+    }
+
+    public Map<String, Object> queryTransaction(String transactionId) {
+        return join(queryTransactionAsync(transactionId));
+    }
+
+    public Map<String, Object> getStats() {
+        PoolStats pool = connectionManager.getTotalStats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("circuitState", circuitBreaker.getState().name());
+        stats.put("consecutiveFailures", circuitBreaker.getConsecutiveFailures());
+        stats.put("leasedConnections", pool.getLeased());
+        stats.put("availableConnections", pool.getAvailable());
+        stats.put("pendingConnections", pool.getPending());
+        stats.put("maxConnections", pool.getMax());
+        return stats;
+    }
+
+    private CompletableFuture<Map<String, Object>> execute(SimpleHttpRequest request, String operation) {
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new PaymentException("Payment gateway is temporarily unavailable, please try again shortly"));
+        }
+
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        httpClient.execute(request, new FutureCallback<>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                if (response.getCode() >= 500) {
+                    circuitBreaker.onFailure();
+                    result.completeExceptionally(new PaymentException(
+                            "Payment gateway " + operation + " failed with HTTP " + response.getCode()));
+                    return;
+                }
+                circuitBreaker.onSuccess();
+                try {
+                    result.complete(objectMapper.readValue(response.getBodyText(), JSON_MAP));
+                } catch (Exception e) {
+                    result.completeExceptionally(new PaymentException(
+                            "Unreadable payment gateway " + operation + " response", e));
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                circuitBreaker.onFailure();
+                log.error("Payment gateway {} call failed: {}", operation, ex.getMessage());
+                result.completeExceptionally(new PaymentException(
+                        "Payment gateway " + operation + " failed: " + ex.getMessage(), ex));
+            }
+
+            @Override
+            public void cancelled() {
+                circuitBreaker.onFailure();
+                result.completeExceptionally(new PaymentException("Payment gateway " + operation + " call was cancelled"));
+            }
+        });
+        return result;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -30,6 +30,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final CurrentUser currentUser;
+    private final AdherenceRollupService adherenceRollups;
     
     @Transactional(readOnly = true)
     public UserResponse getCurrentUser() {
@@ -191,6 +192,8 @@ public class UserService {
         }
         
         String email = user.getEmail();
+        // Dose logs go with the user's medications; their rollups are not linked to the user
+        adherenceRollups.deleteForUser(user.getId());
         userRepository.delete(user);
         
         log.info("User account deleted: {}", email);
@@ -0,0 +1,87 @@
+package com.pilltrack.service;
+
+import com.pilltrack.repository.UserPreferencesRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time zones of users, from UserPreferences.timezone.
+ * Dose times are wall-clock times in the user's zone; users without preferences or with an
+ * unknown zone id fall back to app.default-timezone.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserTimeZones {
+    
+    private final UserPreferencesRepository preferencesRepository;
+    
+    @Value("${app.default-timezone:Asia/Dhaka}")
+    private String defaultTimezone;
+    
+    public ZoneId defaultZone() {
+        return parse(defaultTimezone, ZoneId.systemDefault());
+    }
+    
+    public ZoneId zoneOf(Long userId) {
+        return zonesOf(List.of(userId)).get(userId);
+    }
+    
+    /**
+     * Zone of each given user, in one query.
+     */
+    public Map<Long, ZoneId> zonesOf(Collection<Long> userIds) {
+        ZoneId fallback = defaultZone();
+        Map<Long, ZoneId> zones = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            for (Object[] row : preferencesRepository.findTimezonesByUserIdIn(userIds)) {
+                zones.put((Long) row[0], parse((String) row[1], fallback));
+            }
+        }
+        for (Long userId : userIds) {
+            zones.putIfAbsent(userId, fallback);
+        }
+        return zones;
+    }
+    
+    /**
+     * Every timezone value stored in preferences, with the zone it resolves to.
+     */
+    public Map<String, ZoneId> zonesInUse() {
+        ZoneId fallback = defaultZone();
+        Map<String, ZoneId> zones = new HashMap<>();
+        for (String timezone : preferencesRepository.findDistinctTimezones()) {
+            zones.put(timezone, parse(timezone, fallback));
+        }
+        return zones;
+    }
+    
+    /**
+     * Current wall-clock time of a user.
+     */
+    public LocalDateTime now(Long userId) {
+        return LocalDateTime.now(zoneOf(userId));
+    }
+    
+    private ZoneId parse(String timezone, ZoneId fallback) {
+        if (timezone == null || timezone.isBlank()) {
+            return fallback;
+        }
+        try {
+            return ZoneId.of(timezone);
+        } catch (DateTimeException e) {
+            log.warn("Unknown timezone {}, using {}", timezone, fallback);
+            return fallback;
+        }
+    }
+}
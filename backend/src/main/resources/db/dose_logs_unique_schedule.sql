@@ -0,0 +1,30 @@
+-- One dose log per medication and scheduled time (uk_dose_logs_medication_scheduled).
+-- DoseLogPlanner relies on this index for its ON CONFLICT DO NOTHING inserts, but ddl-auto only
+-- logs a warning when the index cannot be created over existing duplicates. Run once against the
+-- application database, before deploying the planner. Safe to re-run.
+--
+-- Of each duplicate group the settled row (TAKEN, SKIPPED or MISSED) is kept over PENDING ones,
+-- then the most recently updated. The weekly adherence rollup backfill recounts the rollups.
+
+BEGIN;
+
+LOCK TABLE dose_logs IN SHARE ROW EXCLUSIVE MODE;
+
+DELETE FROM dose_logs
+WHERE id IN (
+  SELECT id
+  FROM (
+    SELECT id,
+           ROW_NUMBER() OVER (
+             PARTITION BY medication_id, scheduled_time
+             ORDER BY CASE WHEN status = 'PENDING' THEN 1 ELSE 0 END, updated_at DESC, id
+           ) AS duplicate_rank
+    FROM dose_logs
+  ) ranked
+  WHERE duplicate_rank > 1
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_dose_logs_medication_scheduled
+  ON dose_logs (medication_id, scheduled_time);
+
+COMMIT;
@@ -151,16 +151,17 @@ const Cart = () => {
     setOrderError("");
 
     try {
-      // Create order from cart
-      const orderData = {
-        shippingAddress: `${shippingInfo.address}, ${shippingInfo.city} ${shippingInfo.zipCode}`,
+      // One order per shop in the cart, with a single combined payment
+      const checkoutData = {
         shippingName: shippingInfo.name,
         shippingPhone: shippingInfo.phone,
-        paymentMethod: paymentMethod.toUpperCase(),
-        notes: promoApplied ? "PROMO: SAVE10 applied" : "",
+        shippingAddress: shippingInfo.address,
+        shippingCity: shippingInfo.city,
+        shippingPostalCode: shippingInfo.zipCode,
+        customerNotes: promoApplied ? "PROMO: SAVE10 applied" : "",
       };
 
-      const response = await orderService.createFromCart(orderData);
+      const response = await orderService.checkout(checkoutData);
 
       if (response.success) {
         setConfirmedOrder(response.data);
@@ -192,6 +193,8 @@ const Cart = () => {
   if (step === "confirmation") {
     const estimatedDelivery = new Date();
     estimatedDelivery.setDate(estimatedDelivery.getDate() + 5);
+    const orderNumbers =
+      confirmedOrder?.orders?.map((order) => `#${order.orderNumber}`) ?? [];
 
     return (
       <div className="min-h-screen bg-slate-50 dark:bg-slate-900 flex items-center justify-center p-4">
@@ -212,8 +215,10 @@ const Cart = () => {
             Order Confirmed!
           </h2>
           <p className="text-slate-500 dark:text-slate-400 mb-6">
-            Your order #{confirmedOrder?.id || "NEW"} has been placed
-            successfully. You'll receive a confirmation email shortly.
+            {orderNumbers.length > 1 ? "Your orders" : "Your order"}{" "}
+            {orderNumbers.join(", ") || "#NEW"}{" "}
+            {orderNumbers.length > 1 ? "have" : "has"} been placed successfully.
+            You'll receive a confirmation email shortly.
           </p>
           <div className="bg-slate-50 dark:bg-slate-700/50 rounded-xl p-4 mb-6">
             <div className="flex items-center justify-between mb-2">
@@ -611,8 +611,10 @@ export const orderService = {
     const response = await api.get(`/orders/number/${orderNumber}`);
     return { success: true, data: response.data.data };
   },
-  getByStatus: async (status) => {
-    const response = await api.get(`/orders/status/${status}`);
+  getByStatus: async (status, page = 0, size = 10) => {
+    const response = await api.get(`/orders/status/${status}`, {
+      params: { page, size },
+    });
     return { success: true, data: response.data.data };
   },
   create: async (data) => {
@@ -623,6 +625,11 @@ export const orderService = {
     const response = await api.post("/orders/from-cart", shippingData);
     return { success: true, data: response.data.data };
   },
+  // One order per shop in the cart, paid with a single combined payment
+  checkout: async (shippingData) => {
+    const response = await api.post("/orders/checkout", shippingData);
+    return { success: true, data: response.data.data };
+  },
   cancel: async (id) => {
     const response = await api.post(`/orders/${id}/cancel`);
     return { success: true, data: response.data.data };
@@ -632,14 +639,27 @@ export const orderService = {
     const response = await api.get("/orders/shop", { params: { page, size } });
     return response.data.data;
   },
-  getShopOrdersByStatus: async (status) => {
-    const response = await api.get(`/orders/shop/status/${status}`);
+  getShopOrdersByStatus: async (status, page = 0, size = 10) => {
+    const response = await api.get(`/orders/shop/status/${status}`, {
+      params: { page, size },
+    });
     return response.data.data;
   },
   updateStatus: async (id, status) => {
     const response = await api.patch(`/orders/${id}/status`, { status });
     return response.data.data;
   },
+  bulkUpdateStatus: async (orderIds, status) => {
+    const response = await api.patch('/orders/status', { orderIds, status });
+    return response.data.data;
+  },
+  exportShopOrders: async (startDate, endDate, type = 'ORDERS') => {
+    const response = await api.get('/orders/shop/export', {
+      params: { startDate, endDate, type },
+      responseType: 'blob',
+    });
+    return response.data;
+  },
 };
 
 // ==================== NOTIFICATION SERVICE ====================